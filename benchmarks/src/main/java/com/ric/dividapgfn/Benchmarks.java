@@ -0,0 +1,35 @@
+package com.ric.dividapgfn;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.openjdk.jmh.Main;
+
+//Ponto de entrada do benchmarks.jar: repassa os argumentos ao JMH e inclui o profiler gc (bytes alocados por operação e
+//tempo de coleta) em todas as execuções. As opções de listagem e ajuda são repassadas sem alteração.
+public final class Benchmarks {
+	private static final Set<String> LISTAGENS = Set.of("-h", "-l", "-lp", "-lprof", "-lrf");
+
+	private Benchmarks() { }
+
+	public static void main(String[] args) throws IOException {
+		List<String> argumentos = new ArrayList<>(Arrays.asList(args));
+		if (argumentos.stream().noneMatch(LISTAGENS::contains) && !profilerGC(argumentos)) {
+			argumentos.add("-prof");
+			argumentos.add("gc");
+		}
+		Main.main(argumentos.toArray(String[]::new));
+	}
+
+	private static boolean profilerGC(List<String> argumentos) {
+		for (int i = 0; i + 1 < argumentos.size(); i++) {
+			if (argumentos.get(i).equals("-prof") && argumentos.get(i + 1).startsWith("gc")) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,145 @@
+package com.ric.dividapgfn;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sqlite.SQLiteConnection;
+
+import picocli.CommandLine;
+
+//Etapas do filtro sobre bases geradas na preparação: a seleção das dívidas (tabela divida) por cada caminho e a
+//exportação de cada arquivo de análise. O tempo é por execução da etapa.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+//O log de cada etapa fica desligado durante as medições
+@Fork(value = 1, jvmArgsAppend = "-Dtinylog.writer.level=warn")
+public class FiltroBenchmark {
+	//Natureza jurídica de quase metade das empresas geradas
+	private static final String CONSULTA = "select cnpj_basico from empresas where natureza_juridica = '2062'";
+
+	//Base da PGFN criada pela carga a partir dos arquivos sintéticos, com a tabela de corresponsáveis, e base do CNPJ
+	@State(Scope.Benchmark)
+	public static class Bases {
+		@Param({ "300000" })
+		private int linhas;
+
+		private Path dirBase;
+		private Path baseCNPJ;
+
+		@Setup
+		public void prepara() throws IOException, SQLException {
+			this.dirBase = Files.createTempDirectory("dividapgfn-benchmark");
+			this.baseCNPJ = this.dirBase.resolve("cnpj.db");
+			int codigo = new CommandLine(new GeraDados()).execute("-d", this.dirBase.toString(), "-n", Integer.toString(this.linhas), "-e", Integer.toString(this.linhas / 10));
+			if (codigo != CommandLine.ExitCode.OK) {
+				throw new IllegalStateException("Dados sintéticos não foram gerados");
+			}
+			new CommandLine(new BasePGFN()).execute("-d", this.dirBase.toString(), "-r");
+			if (Files.notExists(this.dirBase.resolve("entrada").resolve("pgfn.sqlite"))) {
+				throw new IllegalStateException("Base da PGFN não foi criada");
+			}
+		}
+
+		@TearDown
+		public void remove() throws IOException {
+			try (Stream<Path> arquivos = Files.walk(this.dirBase)) {
+				for (Path arquivo : arquivos.sorted(Comparator.reverseOrder()).toList()) {
+					Files.delete(arquivo);
+				}
+			}
+		}
+
+		SQLiteConnection conecta(FiltraDivida filtro) throws SQLException {
+			return filtro.conectaSessao(FiltraDivida.basesPGFN(this.dirBase), 64 * 1024);
+		}
+
+		FiltraDivida filtro(String... opcoes) {
+			FiltraDivida filtro = new FiltraDivida();
+			String[] args = new String[opcoes.length + 7];
+			System.arraycopy(new String[] { "-d", this.dirBase.toString(), "-b", this.baseCNPJ.toString(), "-c", "consulta.sql", "--sem-cache" }, 0, args, 0, 7);
+			System.arraycopy(opcoes, 0, args, 7, opcoes.length);
+			new CommandLine(filtro).parseArgs(args);
+			return filtro;
+		}
+	}
+
+	//juncao: tabelas temporárias e junções pelos índices; memoria: conjuntos em memória (--memoria); rede: grafo com --profundidade=2
+	@State(Scope.Thread)
+	public static class Selecao {
+		@Param({ "juncao", "memoria", "rede" })
+		private String caminho;
+
+		private FiltraDivida filtro;
+		private SQLiteConnection conn;
+
+		@Setup
+		public void prepara(Bases bases) throws SQLException {
+			this.filtro = this.caminho.equals("memoria") ? bases.filtro("--memoria") : bases.filtro();
+			this.conn = bases.conecta(this.filtro);
+		}
+
+		//As tabelas temporárias da seleção são descartadas pelo rollback
+		@TearDown(Level.Invocation)
+		public void descarta() throws SQLException {
+			this.conn.rollback();
+		}
+
+		@TearDown
+		public void fecha() throws SQLException {
+			this.conn.close();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Exportacao {
+		@Param({ "divida", "cnpj", "socios", "corresponsaveis" })
+		private String arquivo;
+
+		private FiltraDivida filtro;
+		private SQLiteConnection conn;
+
+		@Setup
+		public void prepara(Bases bases) throws SQLException {
+			this.filtro = bases.filtro();
+			this.conn = bases.conecta(this.filtro);
+			this.filtro.selecionaDividas(this.conn, CONSULTA, 1);
+		}
+
+		@TearDown
+		public void fecha() throws SQLException {
+			this.conn.rollback();
+			this.conn.close();
+		}
+	}
+
+	@Benchmark
+	public void selecao(Selecao selecao) throws SQLException {
+		selecao.filtro.selecionaDividas(selecao.conn, CONSULTA, selecao.caminho.equals("rede") ? 2 : 1);
+	}
+
+	@Benchmark
+	public void exportacao(Exportacao exportacao) throws SQLException {
+		exportacao.filtro.exportaCSV(exportacao.conn, exportacao.arquivo + ".csv", Writer.nullWriter());
+	}
+}
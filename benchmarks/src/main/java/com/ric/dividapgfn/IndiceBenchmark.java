@@ -0,0 +1,117 @@
+package com.ric.dividapgfn;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sqlite.SQLiteConnection;
+
+import com.ric.dividapgfn.indice.FiltroBloom;
+import com.ric.dividapgfn.indice.IndiceCNPJ;
+import com.ric.dividapgfn.indice.LeitorIndiceCNPJ;
+
+import picocli.CommandLine;
+
+//Consulta pontual da dívida de uma raiz de CNPJ: pelo índice de CNPJ mapeado em memória e pela base SQLite, com o
+//índice sobre substr(cpf_cnpj,1,8), e o teste da raiz no filtro de Bloom da triagem. As raízes consultadas são metade
+//devedoras e metade sorteadas, quase todas ausentes.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dtinylog.writer.level=warn")
+@State(Scope.Benchmark)
+public class IndiceBenchmark {
+	private static final int RAIZES = 4096;
+
+	@Param({ "300000" })
+	private int linhas;
+
+	private Path dirBase;
+	private LeitorIndiceCNPJ indice;
+	private FiltroBloom filtro;
+	private SQLiteConnection conn;
+	private PreparedStatement stmt;
+	private final int[] raizes = new int[RAIZES];
+	private int proxima;
+
+	@Setup
+	public void prepara() throws IOException, SQLException {
+		this.dirBase = Files.createTempDirectory("dividapgfn-benchmark");
+		int codigo = new CommandLine(new GeraDados()).execute("-d", this.dirBase.toString(), "-n", Integer.toString(this.linhas), "--sem-cnpj");
+		if (codigo != CommandLine.ExitCode.OK) {
+			throw new IllegalStateException("Dados sintéticos não foram gerados");
+		}
+		new CommandLine(new BasePGFN()).execute("-d", this.dirBase.toString(), "-x");
+		Path base = this.dirBase.resolve("entrada").resolve("pgfn.sqlite");
+		if (Files.notExists(IndiceCNPJ.arquivo(base))) {
+			throw new IllegalStateException("Índice de CNPJ não foi criado");
+		}
+
+		this.indice = LeitorIndiceCNPJ.abre(IndiceCNPJ.arquivo(base));
+		this.conn = DriverManager.getConnection("jdbc:sqlite:file:///" + base.toAbsolutePath()).unwrap(SQLiteConnection.class);
+		Random random = new Random(1);
+		try (Statement consulta = this.conn.createStatement();
+				ResultSet rs = consulta.executeQuery("select distinct substr(cpf_cnpj,1,8) from pgfn_devedores where tipo_pessoa = 'PESSOA JURÍDICA' limit " + RAIZES / 2)) {
+			for (int i = 0; i < RAIZES; i++) {
+				this.raizes[i] = i % 2 == 0 && rs.next() ? Integer.parseInt(rs.getString(1)) : random.nextInt(100_000_000);
+			}
+		}
+		this.filtro = FiltroBloom.cria(this.conn, base, 0.01);
+		this.stmt = this.conn.prepareStatement("select total(valor_consolidado) from pgfn_devedores where substr(cpf_cnpj,1,8) = ? and tipo_pessoa = 'PESSOA JURÍDICA'");
+	}
+
+	@TearDown
+	public void remove() throws IOException, SQLException {
+		this.stmt.close();
+		this.conn.close();
+		try (Stream<Path> arquivos = Files.walk(this.dirBase)) {
+			for (Path arquivo : arquivos.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(arquivo);
+			}
+		}
+	}
+
+	private int raiz() {
+		return this.raizes[this.proxima++ & (RAIZES - 1)];
+	}
+
+	@Benchmark
+	public long indice() {
+		return this.indice.totalCentavos(raiz());
+	}
+
+	@Benchmark
+	public boolean filtro() {
+		return this.filtro.podeConter(raiz());
+	}
+
+	@Benchmark
+	public double sqlite() throws SQLException {
+		this.stmt.setString(1, String.format("%08d", raiz()));
+		try (ResultSet rs = this.stmt.executeQuery()) {
+			return rs.next() ? rs.getDouble(1) : 0;
+		}
+	}
+}
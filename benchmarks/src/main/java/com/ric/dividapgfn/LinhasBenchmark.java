@@ -0,0 +1,72 @@
+package com.ric.dividapgfn;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ric.dividapgfn.carga.Sistema;
+import com.ric.dividapgfn.geracao.GeradorPGFN;
+import com.ric.dividapgfn.geracao.Populacao;
+import com.ric.dividapgfn.linha.LeitorLinhas;
+import com.ric.dividapgfn.util.Common;
+
+//Leitura e conversão das linhas de cada sistema, a partir de um arquivo em memória; o tempo é por linha
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinhasBenchmark {
+	private static final int LINHAS = 100_000;
+	private static final long SEMENTE = 42;
+
+	@Param({ "FGTS", "PREVIDENCIARIO", "NAO_PREVIDENCIARIO" })
+	private Sistema sistema;
+
+	private byte[] arquivo;
+	private Function<LeitorLinhas,Object> mapeamento;
+
+	@Setup
+	public void prepara() {
+		this.arquivo = arquivo(this.sistema, LINHAS);
+		this.mapeamento = switch (this.sistema) {
+		case FGTS -> BasePGFN::linhaFGTS;
+		case PREVIDENCIARIO -> BasePGFN::linhaPrevidenciaria;
+		case NAO_PREVIDENCIARIO -> BasePGFN::linhaNaoPrevidenciaria;
+		};
+	}
+
+	//Arquivo sintético de SP em memória, com cabeçalho, gerado como no gera_dados com uma empresa para cada dez linhas
+	static byte[] arquivo(Sistema sistema, int linhas) {
+		GeradorPGFN gerador = new GeradorPGFN(new Populacao(linhas / 10, linhas / 10, SEMENTE));
+		ByteArrayOutputStream out = new ByteArrayOutputStream(linhas * 240);
+		out.writeBytes((GeradorPGFN.cabecalho(sistema) + "\r\n").getBytes(Common.CHARSET));
+		for (int bloco = 0; bloco * GeradorPGFN.LINHAS_BLOCO < linhas; bloco++) {
+			out.writeBytes(gerador.bloco(sistema, 0, bloco, Math.min(GeradorPGFN.LINHAS_BLOCO, linhas - bloco * GeradorPGFN.LINHAS_BLOCO)));
+		}
+		return out.toByteArray();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINHAS)
+	public long le(Blackhole blackhole) throws IOException {
+		return LeitorLinhas.le(new ByteArrayInputStream(this.arquivo), this.mapeamento, blackhole::consume);
+	}
+}
@@ -0,0 +1,123 @@
+package com.ric.dividapgfn;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sqlite.SQLiteConnection;
+
+import com.ric.dividapgfn.BasePGFN.BatchAux;
+import com.ric.dividapgfn.BasePGFN.Construcao;
+import com.ric.dividapgfn.carga.ControleLote;
+import com.ric.dividapgfn.carga.Dicionario;
+import com.ric.dividapgfn.carga.Esquema;
+import com.ric.dividapgfn.carga.Manifesto;
+import com.ric.dividapgfn.carga.Sistema;
+import com.ric.dividapgfn.linha.LeitorLinhas;
+import com.ric.dividapgfn.linha.LinhaFGTS;
+import com.ric.dividapgfn.linha.LinhaNaoPrevidenciaria;
+import com.ric.dividapgfn.linha.LinhaPrevidenciaria;
+
+//Associação dos parâmetros de cada linha à instrução de inserção da carga, com addBatch e executeBatch em lotes do
+//tamanho padrão, em uma base em memória. As linhas já convertidas são reaproveitadas; o tempo é por linha.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoteBenchmark {
+	private static final int LINHAS = 50_000;
+	private static final int TAMANHO_LOTE = 1000;
+
+	@Param({ "FGTS", "PREVIDENCIARIO", "NAO_PREVIDENCIARIO" })
+	private Sistema sistema;
+
+	@Param({ "padrao", "centavos", "compacto", "agrupado" })
+	private String esquema;
+
+	private SQLiteConnection conn;
+	private Dicionario dicionario;
+	private Construcao construcao;
+	private PreparedStatement stmt;
+	private final List<Object> linhas = new ArrayList<>();
+
+	@Setup
+	public void prepara() throws SQLException, IOException {
+		this.conn = DriverManager.getConnection("jdbc:sqlite::memory:").unwrap(SQLiteConnection.class);
+		this.conn.setAutoCommit(false);
+		Esquema esquema = new Esquema(this.esquema.equals("compacto"), this.esquema.equals("agrupado"), this.esquema.equals("centavos"));
+		esquema.criaTabelas(this.conn);
+		Manifesto.criaTabela(this.conn);
+		this.dicionario = esquema.compacto() ? new Dicionario(this.conn) : null;
+		this.construcao = new Construcao(this.conn, new ControleLote(TAMANHO_LOTE, false), new Manifesto(this.conn), null, esquema, this.dicionario, 1);
+		esquema.iniciaCarga(this.conn);
+		this.stmt = this.conn.prepareStatement(switch (this.sistema) {
+		case FGTS -> BasePGFN.insercaoFGTS(this.construcao);
+		case PREVIDENCIARIO -> BasePGFN.insercaoPrevidenciaria(this.construcao);
+		case NAO_PREVIDENCIARIO -> BasePGFN.insercaoNaoPrevidenciaria(this.construcao);
+		});
+
+		byte[] arquivo = LinhasBenchmark.arquivo(this.sistema, LINHAS);
+		LeitorLinhas.le(new ByteArrayInputStream(arquivo), switch (this.sistema) {
+		case FGTS -> BasePGFN::linhaFGTS;
+		case PREVIDENCIARIO -> BasePGFN::linhaPrevidenciaria;
+		case NAO_PREVIDENCIARIO -> BasePGFN::linhaNaoPrevidenciaria;
+		}, this.linhas::add);
+	}
+
+	@TearDown(Level.Iteration)
+	public void limpa() throws SQLException {
+		this.conn.commit();
+		try (PreparedStatement delete = this.conn.prepareStatement("delete from " + this.construcao.tabela())) {
+			delete.executeUpdate();
+		}
+		this.conn.commit();
+	}
+
+	@TearDown
+	public void fecha() throws SQLException {
+		this.stmt.close();
+		if (this.dicionario != null) {
+			this.dicionario.close();
+		}
+		this.conn.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINHAS)
+	public int grava() {
+		//O parâmetro id_arquivo vem logo depois das colunas do arquivo
+		int parametroArquivo = (this.sistema == Sistema.FGTS ? 15 : 13) + 1;
+		try (BatchAux aux = new BatchAux(this.construcao, this.stmt, parametroArquivo)) {
+			aux.arquivo(1);
+			for (Object linha : this.linhas) {
+				switch (this.sistema) {
+				case FGTS -> aux.appendLinhaFGTS((LinhaFGTS) linha);
+				case PREVIDENCIARIO -> aux.appendLinhaPrevidenciaria((LinhaPrevidenciaria) linha);
+				case NAO_PREVIDENCIARIO -> aux.appendLinhaNaoPrevidenciaria((LinhaNaoPrevidenciaria) linha);
+				}
+			}
+			return aux.linhas();
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package com.ric.dividapgfn.csv;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//Formatação das linhas no formato da exportação da tabela divida, a partir de um ResultSet sintético em memória, sem o
+//custo do SQLite. O ResultSet é um proxy dinâmico, com custo constante por chamada; o tempo é por linha.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CSVWriterBenchmark {
+	private static final int LINHAS = 50_000;
+	private static final String[] NOMES = { "cpf_cnpj", "tipo_pessoa", "tipo_devedor", "nome_devedor", "uf_unidade_responsavel",
+			"numero_inscricao", "situacao_inscricao", "data_inscricao", "indicador_ajuizado", "valor_consolidado", "id_arquivo" };
+	private static final int[] TIPOS = { Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+			Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.REAL, Types.INTEGER };
+
+	//Na base em centavos, valor_consolidado é um inteiro convertido em decimal na exportação
+	@Param({ "false", "true" })
+	private boolean centavos;
+
+	private Object[][] linhas;
+	private CSVWriter writer;
+
+	@Setup
+	public void prepara() {
+		SplittableRandom random = new SplittableRandom(42);
+		this.linhas = new Object[LINHAS][];
+		for (int i = 0; i < LINHAS; i++) {
+			long valor = random.nextLong(1_000_000_000L);
+			this.linhas[i] = new Object[] {
+					"%08d0001%02d".formatted(random.nextInt(100_000_000), random.nextInt(100)),
+					"PESSOA JURÍDICA",
+					random.nextBoolean() ? "PRINCIPAL" : "CORRESPONSAVEL",
+					i % 10 == 0 ? "Devedor \"" + i + "\"; ltda" : "Devedor " + i + " ltda",
+					"SP",
+					"FGSP%08d".formatted(i),
+					i % 7 == 0 ? null : "Em cobrança",
+					"%02d/%02d/%04d".formatted(1 + random.nextInt(28), 1 + random.nextInt(12), 1990 + random.nextInt(33)),
+					random.nextBoolean() ? "SIM" : "NAO",
+					this.centavos ? (Object) valor : (Object) (valor / 100.0),
+					random.nextInt(1000) };
+		}
+		this.writer = this.centavos ? new CSVWriter(';', Set.of("valor_consolidado")) : new CSVWriter(';');
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(LINHAS)
+	public void escreve() throws SQLException, IOException {
+		this.writer.write(resultSet(this.linhas), Writer.nullWriter(), true);
+	}
+
+	private ResultSet resultSet(Object[][] linhas) {
+		ResultSetMetaData metadata = (ResultSetMetaData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSetMetaData.class }, (proxy, metodo, args) -> switch (metodo.getName()) {
+		case "getColumnCount" -> NOMES.length;
+		case "getColumnName", "getColumnLabel" -> NOMES[(Integer) args[0] - 1];
+		case "getColumnType" -> this.centavos && (Integer) args[0] == 10 ? Types.INTEGER : TIPOS[(Integer) args[0] - 1];
+		default -> throw new UnsupportedOperationException(metodo.getName());
+		});
+		int[] linha = { -1 };
+		Object[] ultimo = { null };
+		return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSet.class }, (proxy, metodo, args) -> {
+			switch (metodo.getName()) {
+			case "next":
+				return ++linha[0] < linhas.length;
+			case "getMetaData":
+				return metadata;
+			case "wasNull":
+				return ultimo[0] == null;
+			case "close":
+				return null;
+			default:
+				break;
+			}
+			Object valor = linhas[linha[0]][(Integer) args[0] - 1];
+			ultimo[0] = valor;
+			return switch (metodo.getName()) {
+			case "getObject" -> valor;
+			case "getString" -> valor == null ? null : valor.toString();
+			case "getLong" -> valor == null ? 0L : ((Number) valor).longValue();
+			case "getInt" -> valor == null ? 0 : ((Number) valor).intValue();
+			case "getDouble" -> valor == null ? 0.0 : ((Number) valor).doubleValue();
+			case "getBigDecimal" -> valor == null ? null : new BigDecimal(valor.toString());
+			default -> throw new UnsupportedOperationException(metodo.getName());
+			};
+		});
+	}
+}
@@ -9,16 +9,45 @@ import java.nio.file.Path;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.function.Function;
-import java.util.stream.Stream;
+import java.util.stream.Collectors;
 
 import org.sqlite.SQLiteConnection;
 import org.tinylog.Logger;
 
+import com.ric.dividapgfn.carga.ArquivoEntrada;
+import com.ric.dividapgfn.carga.ControleLote;
+import com.ric.dividapgfn.carga.Corresponsaveis;
+import com.ric.dividapgfn.carga.DestinoCarga;
+import com.ric.dividapgfn.carga.Dicionario;
+import com.ric.dividapgfn.carga.Esquema;
+import com.ric.dividapgfn.carga.FonteEntrada;
+import com.ric.dividapgfn.carga.Fragmentacao;
+import com.ric.dividapgfn.carga.Fragmentos;
+import com.ric.dividapgfn.carga.LeituraArquivos;
+import com.ric.dividapgfn.carga.Manifesto;
+import com.ric.dividapgfn.carga.PerfilCarga;
+import com.ric.dividapgfn.carga.Retomada;
+import com.ric.dividapgfn.carga.Sistema;
+import com.ric.dividapgfn.indice.FiltroBloom;
+import com.ric.dividapgfn.indice.IndiceCNPJ;
+import com.ric.dividapgfn.linha.LeitorLinhas;
 import com.ric.dividapgfn.linha.LinhaFGTS;
 import com.ric.dividapgfn.linha.LinhaNaoPrevidenciaria;
 import com.ric.dividapgfn.linha.LinhaPrevidenciaria;
+import com.ric.dividapgfn.metricas.Etapa;
+import com.ric.dividapgfn.metricas.EventoFlush;
+import com.ric.dividapgfn.metricas.Metricas;
 import com.ric.dividapgfn.util.Common;
 
 import picocli.CommandLine;
@@ -33,76 +62,383 @@ public final class BasePGFN implements Callable<Integer> {
 	@Option(names = { "-s", "--batchsize" }, description = "Quantidade de linhas inseridas no banco de dados por batelada, possível alterar em caso de baixo desempenho")
 	private int batchSize = 1000;
 
+	@Option(names = { "-t", "--threads" }, description = "Quantidade de threads de leitura dos arquivos; acima de 1, as linhas lidas são gravadas por uma única thread (padrão=${DEFAULT-VALUE})")
+	private int threads = 1;
+
+	@Option(names = { "-a", "--adaptativo" }, description = "Ajusta automaticamente o tamanho das bateladas e o intervalo entre commits e usa configurações do SQLite próprias para carga em massa")
+	private boolean adaptativo;
+
+	@Option(names = { "-i", "--incremental" }, description = "Atualiza a base existente, recarregando apenas os arquivos novos ou alterados desde a última carga")
+	private boolean incremental;
+
+	@Option(names = { "--retomar" }, description = "Continua uma carga interrompida a partir do último commit, sem recarregar as linhas já gravadas nem os arquivos já concluídos")
+	private boolean retomar;
+
+	@Option(names = { "-f", "--fragmentos" }, description = "Cria uma base separada por sistema ou por UF, construídas em paralelo: ${COMPLETION-CANDIDATES} (padrão=${DEFAULT-VALUE})")
+	private Fragmentacao fragmentacao = Fragmentacao.NENHUMA;
+
+	@Option(names = { "-u", "--unifica" }, description = "Junta as bases fragmentadas em um único pgfn.sqlite ao final da carga")
+	private boolean unifica;
+
+	@Option(names = { "-c", "--compacto" }, description = "Grava as colunas com poucos valores distintos como códigos de um dicionário; a visão pgfn_devedores mantém as colunas originais")
+	private boolean compacto;
+
+	@Option(names = { "-m", "--centavos" }, description = "Grava valor_consolidado como número inteiro de centavos, o que torna exatas as somas dos valores")
+	private boolean centavos;
+
+	@Option(names = { "-g", "--agrupado" }, description = "Grava a tabela sem rowid, agrupada pela raiz do CNPJ (coluna cnpj_basico) e pelo número de inscrição")
+	private boolean agrupado;
+
+	@Option(names = { "-r", "--corresponsaveis" }, description = "Grava a tabela pgfn_corresponsaveis, com os pares devedor principal → corresponsável de toda a base, usada pelo filtro")
+	private boolean corresponsaveis;
+
+	@Option(names = { "-x", "--indice" }, description = "Grava ao lado da base o arquivo pgfn_cnpj.idx, com as inscrições das pessoas jurídicas ordenadas pela raiz do CNPJ, para consultas pontuais sem o SQLite")
+	private boolean indice;
+
+	@Option(names = { "--relatorio" }, description = "Grava em um arquivo JSON as métricas de cada etapa da carga: linhas, bytes, alocação, coletas de lixo, latência dos lotes e tempos dos comandos SQL")
+	private Path relatorio;
+
+	//Sem pontos de retomada (retomada nula) no esquema agrupado, em que as linhas só chegam à base ao final da carga
+	record Construcao(SQLiteConnection conn, ControleLote controle, Manifesto manifesto, Retomada retomada, Esquema esquema, Dicionario dicionario, int threads) {
+		String tabela() {
+			return this.esquema.tabelaCarga();
+		}
+
+		String colunasAgrupamento() {
+			return this.esquema.agrupado() ? ",\n\t\t\t\t\tcnpj_basico,\n\t\t\t\t\tsequencia" : "";
+		}
+
+		String parametrosAgrupamento() {
+			return this.esquema.agrupado() ? ",?,?" : "";
+		}
+
+		String origem(Sistema sistema) throws SQLException {
+			return this.dicionario == null ? "'" + sistema.origem() + "'" : Long.toString(this.dicionario.codigo(sistema.origem()));
+		}
+	}
+
 	@Override
 	public Integer call() {
 		long t0 = System.nanoTime();
+		Metricas.inicia("base_pgfn");
 
 		Path dirEntrada = this.dirBase.resolve("entrada");
 
-		Path dirFGTS = dirEntrada.resolve("FGTS");
-		Path dirPrevidenciaria = dirEntrada.resolve("Previdenciario");
-		Path dirNaoPrevidenciaria = dirEntrada.resolve("Nao_Previdenciario");
 		Path baseConsolidada = dirEntrada.resolve("pgfn.sqlite");
 
-		try {
-			Files.deleteIfExists(baseConsolidada);
+		//Os 27 fragmentos por UF não cabem nas bases anexadas pelo filtro e pelo servidor
+		if (this.fragmentacao == Fragmentacao.UF && !this.unifica) {
+			Logger.error("Erro: a opção --fragmentos=UF requer --unifica.");
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		try (FonteEntrada fonte = new FonteEntrada(dirEntrada);) {
+			IndiceCNPJ.remove(baseConsolidada);
+			FiltroBloom.remove(baseConsolidada);
+			if (this.fragmentacao == Fragmentacao.NENHUMA) {
+				Fragmentos.removeTodos(dirEntrada);
+				constroi(baseConsolidada, fonte::arquivos, this.threads, null);
+				if (this.indice) {
+					criaIndiceCNPJ(baseConsolidada);
+				}
+			} else {
+				if (this.corresponsaveis && !this.unifica) {
+					Logger.warn("A tabela de corresponsáveis só é criada na base unificada; use --unifica.");
+				}
+				if (this.indice && !this.unifica) {
+					Logger.warn("O índice de CNPJ só é criado para a base unificada; use --unifica.");
+				}
+				Map<String,Map<Sistema,List<ArquivoEntrada>>> fragmentos = Fragmentos.separa(fonte, this.fragmentacao);
+				Files.deleteIfExists(baseConsolidada);
+				constroiFragmentos(dirEntrada, fragmentos);
+				if (this.unifica) {
+					unificaFragmentos(baseConsolidada, dirEntrada);
+					if (this.indice) {
+						criaIndiceCNPJ(baseConsolidada);
+					}
+				}
+			}
+			if (this.relatorio != null) {
+				Metricas.gravaRelatorio(this.relatorio);
+			}
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
+		} catch (SQLException e) {
+			Logger.error("Erro SQL: {}", e.getLocalizedMessage());
+			return CommandLine.ExitCode.SOFTWARE;
 		}
 
-		Logger.info("Criando base em {}", baseConsolidada.toAbsolutePath());
+		Logger.info("Programa executado em {}", Common.formatDuration(System.nanoTime()-t0));
 
-		try (SQLiteConnection conn = DriverManager.getConnection("jdbc:sqlite:file:///" + baseConsolidada.toAbsolutePath()).unwrap(SQLiteConnection.class);) {
-			conn.setAutoCommit(false);
+		return CommandLine.ExitCode.USAGE;
+	}
 
-			criaTabelaGeral(conn);
-			carregaDadosFGTS(dirFGTS, conn);
-			carregaDadosPrevidenciarios(dirPrevidenciaria, conn);
-			carregaDadosNaoPrevidenciarios(dirNaoPrevidenciaria, conn);
-			criaIndicesTabelaGeral(conn);
+	private void constroi(Path base, Function<Sistema,List<ArquivoEntrada>> arquivos, int threadsLeitura, Etapa pai) throws IOException, SQLException {
+		boolean atualizacao = (this.incremental || this.retomar) && baseAtualizavel(base);
+		if (!atualizacao) {
+			Files.deleteIfExists(base);
+		}
+
+		Logger.info(atualizacao ? "Atualizando base em {}" : "Criando base em {}", base.toAbsolutePath());
+
+		//Os bytes gravados são o crescimento do arquivo da base
+		long tamanhoInicial = atualizacao ? Files.size(base) : 0;
+		try (Etapa etapa = Metricas.etapa(pai, "base " + base.getFileName());
+				SQLiteConnection conn = DriverManager.getConnection("jdbc:sqlite:file:///" + base.toAbsolutePath()).unwrap(SQLiteConnection.class);) {
+			//A carga interrompida continua com o perfil de carga, como se não tivesse parado
+			boolean interrompida = atualizacao && Retomada.existe(conn);
+			if (this.retomar) {
+				Logger.info(interrompida ? "Retomando carga interrompida de {}" : "Nenhuma carga interrompida de {} a retomar", base.getFileName());
+			}
+			boolean perfilCarga = this.adaptativo && (!atualizacao || interrompida);
+			if (perfilCarga) {
+				PerfilCarga.aplica(conn);
+			}
+			conn.setAutoCommit(false);
 
+			if (!atualizacao) {
+				criaTabelaGeral(conn);
+			}
+			Retomada.cria(conn);
 			conn.commit();
-		} catch (SQLException e) {
-			Logger.error("Erro SQL: {}", e.getLocalizedMessage());
-			return CommandLine.ExitCode.SOFTWARE;
+			try (Dicionario dicionario = this.compacto ? new Dicionario(conn) : null;
+					Retomada retomada = esquema().agrupado() ? null : new Retomada(conn);) {
+				Construcao construcao = new Construcao(conn, new ControleLote(this.batchSize, this.adaptativo), new Manifesto(conn), retomada, esquema(), dicionario, threadsLeitura);
+				if (atualizacao) {
+					removeArquivosAusentes(arquivos, construcao);
+				}
+				construcao.esquema().iniciaCarga(conn);
+				etapa.linhas(carregaDadosFGTS(selecionaArquivos(arquivos.apply(Sistema.FGTS), atualizacao, construcao), construcao));
+				etapa.linhas(carregaDadosPrevidenciarios(selecionaArquivos(arquivos.apply(Sistema.PREVIDENCIARIO), atualizacao, construcao), construcao));
+				etapa.linhas(carregaDadosNaoPrevidenciarios(selecionaArquivos(arquivos.apply(Sistema.NAO_PREVIDENCIARIO), atualizacao, construcao), construcao));
+				construcao.esquema().concluiCarga(conn);
+				criaIndicesTabelaGeral(conn);
+				if (this.fragmentacao == Fragmentacao.NENHUMA && this.corresponsaveis) {
+					criaTabelaCorresponsaveis(conn);
+				} else {
+					Corresponsaveis.remove(conn);
+				}
+
+				Retomada.remove(conn);
+				conn.commit();
+				construcao.controle().registraResumo();
+				if (dicionario != null) {
+					Logger.info("Dicionário com {} valores distintos", dicionario.tamanho());
+				}
+			}
+			if (perfilCarga) {
+				conn.setAutoCommit(true);
+				PerfilCarga.restaura(conn);
+			}
+			etapa.bytesGravados(Math.max(0, Files.size(base) - tamanhoInicial));
 		}
+	}
 
-		Logger.info("Programa executado em {}", Common.formatDuration(System.nanoTime()-t0));
+	//Cada fragmento é uma base independente, com sua própria conexão; as threads disponíveis são divididas entre os fragmentos
+	private void constroiFragmentos(Path dirEntrada, Map<String,Map<Sistema,List<ArquivoEntrada>>> fragmentos) throws IOException, SQLException {
+		long t0 = System.nanoTime();
+		Logger.info("Criando {} bases fragmentadas por {}...", fragmentos.size(), this.fragmentacao);
 
-		return CommandLine.ExitCode.USAGE;
+		for (Path arquivo : Fragmentos.lista(dirEntrada)) {
+			if (!fragmentos.containsKey(Fragmentos.nome(arquivo))) {
+				Files.delete(arquivo);
+			}
+		}
+
+		int simultaneos = Math.max(1, Math.min(this.threads, fragmentos.size()));
+		int threadsLeitura = Math.max(1, this.threads / simultaneos);
+		ExecutorService executor = Executors.newFixedThreadPool(simultaneos);
+		try (Etapa etapa = Metricas.etapa("fragmentos")) {
+			List<Future<?>> tarefas = new ArrayList<>();
+			for (Map.Entry<String,Map<Sistema,List<ArquivoEntrada>>> fragmento : fragmentos.entrySet()) {
+				tarefas.add(executor.submit(() -> {
+					long t1 = System.nanoTime();
+					constroi(Fragmentos.arquivo(dirEntrada, fragmento.getKey()), fragmento.getValue()::get, threadsLeitura, etapa);
+					Logger.info("Fragmento {} criado em {}", fragmento.getKey(), Common.formatDuration(System.nanoTime()-t1));
+					return null;
+				}));
+			}
+			for (Future<?> tarefa : tarefas) {
+				tarefa.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SQLException sqlException) {
+				throw sqlException;
+			} else if (e.getCause() instanceof IOException ioException) {
+				throw ioException;
+			} else if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		Logger.info("Bases fragmentadas criadas em {}", Common.formatDuration(System.nanoTime()-t0));
+	}
+
+	private void unificaFragmentos(Path baseConsolidada, Path dirEntrada) throws IOException, SQLException {
+		long t0 = System.nanoTime();
+		Logger.info("Unificando bases fragmentadas em {}...", baseConsolidada.toAbsolutePath());
+		List<Path> fragmentos = Fragmentos.lista(dirEntrada);
+		try (Etapa etapa = Metricas.etapa("unificacao");
+				SQLiteConnection conn = DriverManager.getConnection("jdbc:sqlite:file:///" + baseConsolidada.toAbsolutePath()).unwrap(SQLiteConnection.class);) {
+			if (this.adaptativo) {
+				PerfilCarga.aplica(conn);
+			}
+			criaTabelaGeral(conn);
+			Esquema esquema = esquema();
+			String colunas = esquema.colunas().stream()
+					.map(coluna -> coluna.equals("id_arquivo") ? "arq.id" : "dev." + coluna)
+					.collect(Collectors.joining(",\n\t\t\t\t\t\t\t"));
+			for (Path fragmento : fragmentos) {
+				etapa.bytesLidos(Files.size(fragmento));
+				Common.executeUpdateStatement(conn, "ATTACH 'file:///" + fragmento.toAbsolutePath() + "?mode=ro' AS `fragmento`");
+				conn.setAutoCommit(false);
+				Common.executeUpdateStatement(conn, """
+						insert into pgfn_arquivos (caminho, tamanho, hash, linhas, arquivo_origem)
+						select caminho, tamanho, hash, linhas, arquivo_origem from fragmento.pgfn_arquivos""");
+				etapa.linhas(Common.executeUpdateStatement(conn, """
+						insert into pgfn_devedores
+						select
+							%s
+						from fragmento.pgfn_devedores dev
+						join fragmento.pgfn_arquivos arq_fragmento
+							on dev.id_arquivo = arq_fragmento.id
+						join main.pgfn_arquivos arq
+							on arq_fragmento.caminho = arq.caminho
+						%s""".formatted(colunas, esquema.agrupado() ? "order by dev.cnpj_basico, dev.numero_inscricao" : "")));
+				conn.commit();
+				conn.setAutoCommit(true);
+				Common.executeUpdateStatement(conn, "DETACH `fragmento`");
+			}
+			conn.setAutoCommit(false);
+			criaIndicesTabelaGeral(conn);
+			if (this.corresponsaveis) {
+				criaTabelaCorresponsaveis(conn);
+			}
+			conn.commit();
+			if (this.adaptativo) {
+				conn.setAutoCommit(true);
+				PerfilCarga.restaura(conn);
+			}
+			etapa.bytesGravados(Files.size(baseConsolidada));
+		}
+		for (Path fragmento : fragmentos) {
+			Files.delete(fragmento);
+		}
+		Logger.info("Bases unificadas em {}", Common.formatDuration(System.nanoTime()-t0));
 	}
 
 	private void criaTabelaGeral(SQLiteConnection conn) throws SQLException {
 		long t0 = System.nanoTime();
 		Logger.info("Criando tabela pgfn_devedores...");
-		Common.executeUpdateStatement(conn, """
-				CREATE TABLE pgfn_devedores(
-					cpf_cnpj TEXT,
-					tipo_pessoa TEXT,
-					tipo_devedor TEXT,
-					nome_devedor TEXT,
-					uf_unidade_responsavel TEXT,
-					unidade_responsavel TEXT,
-					entidade_responsavel TEXT,
-					unidade_inscricao TEXT,
-					numero_inscricao TEXT,
-					tipo_situacao_inscricao TEXT,
-					situacao_inscricao TEXT,
-					receita_principal TEXT,
-					tipo_credito TEXT,
-					data_inscricao TEXT,
-					indicador_ajuizado TEXT,
-					valor_consolidado REAL,
-					arquivo_origem TEXT
-				)""");
+		esquema().criaTabelas(conn);
+		Manifesto.criaTabela(conn);
 		Logger.info("Tabela criada em {}", Common.formatDuration(System.nanoTime()-t0));
 	}
 
-	private void carregaDadosFGTS(Path diretorio, SQLiteConnection conn) throws SQLException {
+	private boolean baseAtualizavel(Path baseConsolidada) throws SQLException {
+		if (Files.notExists(baseConsolidada)) {
+			return false;
+		}
+		try (SQLiteConnection conn = DriverManager.getConnection("jdbc:sqlite:file:///" + baseConsolidada.toAbsolutePath()).unwrap(SQLiteConnection.class);) {
+			if (!Manifesto.existe(conn)) {
+				Logger.info("Base existente sem manifesto de arquivos, será recriada.");
+				return false;
+			}
+			if (!Esquema.da(conn).equals(esquema())) {
+				Logger.info("Base existente em outro formato, será recriada.");
+				return false;
+			}
+			//As linhas da carga agrupada ficam em uma tabela temporária, perdida na interrupção
+			if (esquema().agrupado() && Retomada.existe(conn)) {
+				Logger.info("Carga agrupada interrompida, a base será recriada.");
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void removeArquivosAusentes(Function<Sistema,List<ArquivoEntrada>> arquivos, Construcao construcao) throws SQLException {
+		List<ArquivoEntrada> todos = new ArrayList<>();
+		for (Sistema sistema : Sistema.values()) {
+			todos.addAll(arquivos.apply(sistema));
+		}
+		for (Manifesto.Registro registro : construcao.manifesto().ausentes(todos)) {
+			long removidas = construcao.manifesto().remove(registro.caminho());
+			Logger.info("Arquivo {} removido da entrada, {} linhas excluídas", registro.caminho(), removidas);
+		}
+		construcao.conn().commit();
+	}
+
+	//Na atualização, mantém apenas os arquivos novos ou com tamanho ou conteúdo diferente do registrado no manifesto
+	private List<ArquivoEntrada> selecionaArquivos(List<ArquivoEntrada> arquivos, boolean atualizacao, Construcao construcao) {
+		if (!atualizacao) {
+			return arquivos;
+		}
+
+		List<ArquivoEntrada> alterados = arquivos
+				.parallelStream()
+				.filter(arquivo -> {
+					try {
+						return !construcao.manifesto().contem(arquivo) || !construcao.manifesto().inalterado(arquivo);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				})
+				.toList();
+		Logger.info("{} de {} arquivos novos ou alterados", alterados.size(), arquivos.size());
+		return alterados;
+	}
+
+	private long carregaDadosFGTS(List<ArquivoEntrada> arquivos, Construcao construcao) throws SQLException {
 		long t0 = System.nanoTime();
 		Logger.info("Carregando dados do FGTS...");
-		try (PreparedStatement stmt = conn.prepareStatement("""
-				insert into pgfn_devedores
+		try (Etapa etapa = Metricas.etapa(Sistema.FGTS.name()).bytesLidos(tamanho(arquivos));
+				PreparedStatement stmt = construcao.conn().prepareStatement(insercaoFGTS(construcao));
+				BatchAux aux = new BatchAux(construcao, stmt, 16);) {
+			long alocados = carrega(construcao, arquivos, BasePGFN::linhaFGTS, aux, aux::appendLinhaFGTS);
+			Logger.info("{} linhas inseridas em {} ({} bytes alocados por linha)", aux.linhas(), Common.formatDuration(System.nanoTime()-t0), alocados / Math.max(aux.linhas(), 1));
+			etapa.linhas(aux.linhas());
+			construcao.conn().commit();
+			return aux.linhas();
+		}
+	}
+
+	private long carregaDadosPrevidenciarios(List<ArquivoEntrada> arquivos, Construcao construcao) throws SQLException {
+		long t0 = System.nanoTime();
+		Logger.info("Carregando dados previdenciários...");
+		try (Etapa etapa = Metricas.etapa(Sistema.PREVIDENCIARIO.name()).bytesLidos(tamanho(arquivos));
+				PreparedStatement stmt = construcao.conn().prepareStatement(insercaoPrevidenciaria(construcao));
+				BatchAux aux = new BatchAux(construcao, stmt, 14);) {
+			long alocados = carrega(construcao, arquivos, BasePGFN::linhaPrevidenciaria, aux, aux::appendLinhaPrevidenciaria);
+			Logger.info("{} linhas inseridas em {} ({} bytes alocados por linha)", aux.linhas(), Common.formatDuration(System.nanoTime()-t0), alocados / Math.max(aux.linhas(), 1));
+			etapa.linhas(aux.linhas());
+			construcao.conn().commit();
+			return aux.linhas();
+		}
+	}
+
+	private long carregaDadosNaoPrevidenciarios(List<ArquivoEntrada> arquivos, Construcao construcao) throws SQLException {
+		long t0 = System.nanoTime();
+		Logger.info("Carregando dados não previdenciários...");
+		try (Etapa etapa = Metricas.etapa(Sistema.NAO_PREVIDENCIARIO.name()).bytesLidos(tamanho(arquivos));
+				PreparedStatement stmt = construcao.conn().prepareStatement(insercaoNaoPrevidenciaria(construcao));
+				BatchAux aux = new BatchAux(construcao, stmt, 14);) {
+			long alocados = carrega(construcao, arquivos, BasePGFN::linhaNaoPrevidenciaria, aux, aux::appendLinhaNaoPrevidenciaria);
+			Logger.info("{} linhas inseridas em {} ({} bytes alocados por linha)", aux.linhas(), Common.formatDuration(System.nanoTime()-t0), alocados / Math.max(aux.linhas(), 1));
+			etapa.linhas(aux.linhas());
+			construcao.conn().commit();
+			return aux.linhas();
+		}
+	}
+
+	static String insercaoFGTS(Construcao construcao) throws SQLException {
+		return """
+				insert into %s
 					(cpf_cnpj,
 					tipo_pessoa,
 					tipo_devedor,
@@ -118,21 +454,14 @@ public final class BasePGFN implements Callable<Integer> {
 					data_inscricao,
 					indicador_ajuizado,
 					valor_consolidado,
-					arquivo_origem)
-				values (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,'FGTS')""");
-				BatchAux aux = new BatchAux(stmt);) {
-			leBase(diretorio, this::linhaFGTS).forEach(aux::appendLinhaFGTS);
-			Logger.info("Linhas inseridas em {}", Common.formatDuration(System.nanoTime()-t0));
-		} finally {
-			conn.commit();
-		}
+					arquivo_origem,
+					id_arquivo%s)
+				values (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,%s,?%s)""".formatted(construcao.tabela(), construcao.colunasAgrupamento(), construcao.origem(Sistema.FGTS), construcao.parametrosAgrupamento());
 	}
 
-	private void carregaDadosPrevidenciarios(Path diretorio, SQLiteConnection conn) throws SQLException {
-		long t0 = System.nanoTime();
-		Logger.info("Carregando dados previdenciários...");
-		try (PreparedStatement stmt = conn.prepareStatement("""
-				insert into pgfn_devedores
+	static String insercaoPrevidenciaria(Construcao construcao) throws SQLException {
+		return """
+				insert into %s
 					(cpf_cnpj,
 					tipo_pessoa,
 					tipo_devedor,
@@ -146,22 +475,14 @@ public final class BasePGFN implements Callable<Integer> {
 					data_inscricao,
 					indicador_ajuizado,
 					valor_consolidado,
-					arquivo_origem)
-				values (?,?,?,?,?,?,?,?,?,?,?,?,?,'PREVIDENCIARIO')""");
-				BatchAux aux = new BatchAux(stmt);) {
-			leBase(diretorio, this::linhaPrevidenciaria)
-					.forEach(aux::appendLinhaPrevidenciaria);
-			Logger.info("Linhas inseridas em {}", Common.formatDuration(System.nanoTime()-t0));
-		} finally {
-			conn.commit();
-		}
+					arquivo_origem,
+					id_arquivo%s)
+				values (?,?,?,?,?,?,?,?,?,?,?,?,?,%s,?%s)""".formatted(construcao.tabela(), construcao.colunasAgrupamento(), construcao.origem(Sistema.PREVIDENCIARIO), construcao.parametrosAgrupamento());
 	}
 
-	private void carregaDadosNaoPrevidenciarios(Path diretorio, SQLiteConnection conn) throws SQLException {
-		long t0 = System.nanoTime();
-		Logger.info("Carregando dados não previdenciários...");
-		try (PreparedStatement stmt = conn.prepareStatement("""
-				insert into pgfn_devedores
+	static String insercaoNaoPrevidenciaria(Construcao construcao) throws SQLException {
+		return """
+				insert into %s
 					(cpf_cnpj,
 					tipo_pessoa,
 					tipo_devedor,
@@ -175,152 +496,225 @@ public final class BasePGFN implements Callable<Integer> {
 					data_inscricao,
 					indicador_ajuizado,
 					valor_consolidado,
-					arquivo_origem)
-				values (?,?,?,?,?,?,?,?,?,?,?,?,?,'GERAL')""");
-				BatchAux aux = new BatchAux(stmt);) {
-			leBase(diretorio, this::linhaNaoPrevidenciaria)
-					.forEach(aux::appendLinhaNaoPrevidenciaria);
-			Logger.info("Linhas inseridas em {}", Common.formatDuration(System.nanoTime()-t0));
-		} finally {
-			conn.commit();
-		}
+					arquivo_origem,
+					id_arquivo%s)
+				values (?,?,?,?,?,?,?,?,?,?,?,?,?,%s,?%s)""".formatted(construcao.tabela(), construcao.colunasAgrupamento(), construcao.origem(Sistema.NAO_PREVIDENCIARIO), construcao.parametrosAgrupamento());
+	}
+
+	private static long tamanho(List<ArquivoEntrada> arquivos) {
+		return arquivos.stream().mapToLong(ArquivoEntrada::tamanho).sum();
+	}
+
+	private Esquema esquema() {
+		return new Esquema(this.compacto, this.agrupado, this.centavos);
 	}
 
+	@SuppressWarnings("try")
 	private void criaIndicesTabelaGeral(SQLiteConnection conn) throws SQLException {
 		long t0 = System.nanoTime();
 		Logger.info("Criando índices...");
-		Common.executeUpdateStatement(conn, "CREATE INDEX `idx_pgfn_devedores_cpf_cnpj` ON `pgfn_devedores` (`cpf_cnpj`)");
-		Common.executeUpdateStatement(conn, "CREATE INDEX `idx_pgfn_devedores_cnpj` ON `pgfn_devedores` (substr(`cpf_cnpj`,1,8))");
+		try (Etapa etapa = Metricas.etapa("indices")) {
+			Esquema.da(conn).criaIndices(conn);
+		}
 		Logger.info("Índices criado em {}", Common.formatDuration(System.nanoTime()-t0));
 	}
 
-	private <T> Stream<T> leBase(Path diretorio, Function<String,T> mapeamento) {
-		try {
-			return Files
-					.list(diretorio)
-					.flatMap(arquivo -> leArquivoIndividual(arquivo, mapeamento));
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
+	private void criaIndiceCNPJ(Path base) throws IOException, SQLException {
+		long t0 = System.nanoTime();
+		Path arquivo = IndiceCNPJ.arquivo(base);
+		Logger.info("Criando índice de CNPJ em {}...", arquivo);
+		long registros;
+		try (Etapa etapa = Metricas.etapa("indice cnpj");
+				SQLiteConnection conn = DriverManager.getConnection("jdbc:sqlite:file:///" + base.toAbsolutePath()).unwrap(SQLiteConnection.class);) {
+			registros = IndiceCNPJ.cria(conn, base);
+			etapa.linhas(registros).bytesGravados(Files.size(arquivo));
 		}
+		Logger.info("Índice criado com {} inscrições em {}", registros, Common.formatDuration(System.nanoTime()-t0));
 	}
 
-	private <T> Stream<T> leArquivoIndividual(Path entrada, Function<String,T> mapeamento) {
-		if (Files.isRegularFile(entrada)) {
-			try {
-				return Files
-						.lines(entrada, Common.CHARSET)
-						.skip(1)
-						.map(mapeamento);
-			} catch (IOException e) {
-				throw new UncheckedIOException(e);
+	private void criaTabelaCorresponsaveis(SQLiteConnection conn) throws SQLException {
+		long t0 = System.nanoTime();
+		Logger.info("Criando tabela de corresponsáveis...");
+		long pares;
+		try (Etapa etapa = Metricas.etapa("corresponsaveis")) {
+			Corresponsaveis.cria(conn);
+			pares = Corresponsaveis.tamanho(conn);
+			etapa.linhas(pares);
+		}
+		Logger.info("Tabela criada com {} pares em {}", pares, Common.formatDuration(System.nanoTime()-t0));
+	}
+
+	private <T> long carrega(Construcao construcao, List<ArquivoEntrada> arquivos, Function<LeitorLinhas,T> mapeamento, BatchAux aux, Consumer<T> insere) throws SQLException {
+		Map<String,Long> ids = new HashMap<>();
+		Map<String,Long> ignoradas = new HashMap<>();
+		for (ArquivoEntrada arquivo : arquivos) {
+			Manifesto.Registro interrompido = this.retomar && construcao.retomada() != null ? construcao.manifesto().interrompido(arquivo) : null;
+			if (interrompido == null) {
+				ids.put(arquivo.chave(), construcao.manifesto().registra(arquivo));
+				continue;
+			}
+			long linhas = construcao.retomada().linhas(interrompido.id());
+			ids.put(arquivo.chave(), interrompido.id());
+			if (linhas > 0) {
+				Logger.info("Retomando {} a partir da linha {}", arquivo.chave(), linhas + 1);
+				ignoradas.put(arquivo.chave(), linhas);
+				aux.retoma(interrompido.id(), linhas);
 			}
-		} else {
-			return Stream.empty();
 		}
+
+		long alocadosInicio = Common.bytesAlocadosThread();
+		LeituraArquivos<T> leitura = new LeituraArquivos<>(construcao.threads());
+		leitura.executa(arquivos, arquivo -> ignoradas.getOrDefault(arquivo.chave(), 0L), mapeamento, new DestinoCarga<T>() {
+			@Override
+			public void arquivo(ArquivoEntrada arquivo) {
+				aux.arquivo(ids.get(arquivo.chave()));
+			}
+
+			@Override
+			public void linha(T linha) {
+				insere.accept(linha);
+			}
+
+			@Override
+			public void fimArquivo(ArquivoEntrada arquivo, long crc, long linhas) {
+				aux.fimArquivo(arquivo, ids.get(arquivo.chave()), crc, linhas);
+			}
+		});
+		Metricas.alocados(leitura.bytesAlocados());
+		return Common.bytesAlocadosThread() - alocadosInicio + leitura.bytesAlocados();
 	}
 
-	private LinhaFGTS linhaFGTS(String linha) {
-		String[] componentes = linha.toUpperCase().split(";");
-		if (componentes.length != 15) {
+	static LinhaFGTS linhaFGTS(LeitorLinhas linha) {
+		if (linha.campos() != 15) {
 			throw new RuntimeException("Formato do arquivo FGTS diferente do esperado.");
 		}
 
 		return new LinhaFGTS(
-				componentes[0],  //CPF_CNPJ
-				componentes[1],  //TIPO_PESSOA
-				componentes[2],  //TIPO_DEVEDOR
-				componentes[3],  //NOME_DEVEDOR
-				componentes[4],  //UF_UNIDADE_RESPONSAVEL
-				componentes[5],  //UNIDADE_RESPONSAVEL
-				componentes[6],  //ENTIDADE_RESPONSAVEL
-				componentes[7],  //UNIDADE_INSCRICAO
-				componentes[8],  //NUMERO_INSCRICAO
-				componentes[9],  //TIPO_SITUACAO_INSCRICAO
-				componentes[10], //SITUACAO_INSCRICAO
-				componentes[11], //RECEITA_PRINCIPAL
-				componentes[12], //DATA_INSCRICAO
-				componentes[13], //INDICADOR_AJUIZADO
-				new BigDecimal(componentes[14])  //VALOR_CONSOLIDADO
+				linha.documento(0),      //CPF_CNPJ
+				linha.textoRepetido(1),  //TIPO_PESSOA
+				linha.textoRepetido(2),  //TIPO_DEVEDOR
+				linha.texto(3),          //NOME_DEVEDOR
+				linha.textoRepetido(4),  //UF_UNIDADE_RESPONSAVEL
+				linha.textoRepetido(5),  //UNIDADE_RESPONSAVEL
+				linha.textoRepetido(6),  //ENTIDADE_RESPONSAVEL
+				linha.textoRepetido(7),  //UNIDADE_INSCRICAO
+				linha.texto(8),          //NUMERO_INSCRICAO
+				linha.textoRepetido(9),  //TIPO_SITUACAO_INSCRICAO
+				linha.textoRepetido(10), //SITUACAO_INSCRICAO
+				linha.textoRepetido(11), //RECEITA_PRINCIPAL
+				linha.textoRepetido(12), //DATA_INSCRICAO
+				linha.textoRepetido(13), //INDICADOR_AJUIZADO
+				linha.centavos(14),      //VALOR_CONSOLIDADO
+				linha.valorExato(14)
 				);
 	}
 
-	private LinhaPrevidenciaria linhaPrevidenciaria(String linha) {
-		String[] componentes = linha.toUpperCase().split(";");
-		if (componentes.length != 13) {
+	static LinhaPrevidenciaria linhaPrevidenciaria(LeitorLinhas linha) {
+		if (linha.campos() != 13) {
 			throw new RuntimeException("Formato do arquivo previdenciário diferente do esperado.");
 		}
 
 		return new LinhaPrevidenciaria(
-				componentes[0],  //CPF_CNPJ
-				componentes[1],  //TIPO_PESSOA
-				componentes[2],  //TIPO_DEVEDOR
-				componentes[3],  //NOME_DEVEDOR
-				componentes[4],  //UF_UNIDADE_RESPONSAVEL
-				componentes[5],  //UNIDADE_RESPONSAVEL
-				componentes[6],  //NUMERO_INSCRICAO
-				componentes[7],  //TIPO_SITUACAO_INSCRICAO
-				componentes[8],  //SITUACAO_INSCRICAO
-				componentes[9],  //RECEITA_PRINCIPAL
-				componentes[10], //DATA_INSCRICAO
-				componentes[11], //INDICADOR_AJUIZADO
-				new BigDecimal(componentes[12])  //VALOR_CONSOLIDADO
+				linha.documento(0),      //CPF_CNPJ
+				linha.textoRepetido(1),  //TIPO_PESSOA
+				linha.textoRepetido(2),  //TIPO_DEVEDOR
+				linha.texto(3),          //NOME_DEVEDOR
+				linha.textoRepetido(4),  //UF_UNIDADE_RESPONSAVEL
+				linha.textoRepetido(5),  //UNIDADE_RESPONSAVEL
+				linha.texto(6),          //NUMERO_INSCRICAO
+				linha.textoRepetido(7),  //TIPO_SITUACAO_INSCRICAO
+				linha.textoRepetido(8),  //SITUACAO_INSCRICAO
+				linha.textoRepetido(9),  //RECEITA_PRINCIPAL
+				linha.textoRepetido(10), //DATA_INSCRICAO
+				linha.textoRepetido(11), //INDICADOR_AJUIZADO
+				linha.centavos(12),      //VALOR_CONSOLIDADO
+				linha.valorExato(12)
 				);
 	}
 
-	private LinhaNaoPrevidenciaria linhaNaoPrevidenciaria(String linha) {
-		String[] componentes = linha.toUpperCase().split(";");
-		if (componentes.length != 13) {
+	static LinhaNaoPrevidenciaria linhaNaoPrevidenciaria(LeitorLinhas linha) {
+		if (linha.campos() != 13) {
 			throw new RuntimeException("Formato do arquivo não previdenciário diferente do esperado.");
 		}
 
 		return new LinhaNaoPrevidenciaria(
-				componentes[0],  //CPF_CNPJ
-				componentes[1],  //TIPO_PESSOA
-				componentes[2],  //TIPO_DEVEDOR
-				componentes[3],  //NOME_DEVEDOR
-				componentes[4],  //UF_UNIDADE_RESPONSAVEL
-				componentes[5],  //UNIDADE_RESPONSAVEL
-				componentes[6],  //NUMERO_INSCRICAO
-				componentes[7],  //TIPO_SITUACAO_INSCRICAO
-				componentes[8],  //SITUACAO_INSCRICAO
-				componentes[9],  //TIPO_CREDITO
-				componentes[10], //DATA_INSCRICAO
-				componentes[11], //INDICADOR_AJUIZADO
-				new BigDecimal(componentes[12])  //VALOR_CONSOLIDADO
+				linha.documento(0),      //CPF_CNPJ
+				linha.textoRepetido(1),  //TIPO_PESSOA
+				linha.textoRepetido(2),  //TIPO_DEVEDOR
+				linha.texto(3),          //NOME_DEVEDOR
+				linha.textoRepetido(4),  //UF_UNIDADE_RESPONSAVEL
+				linha.textoRepetido(5),  //UNIDADE_RESPONSAVEL
+				linha.texto(6),          //NUMERO_INSCRICAO
+				linha.textoRepetido(7),  //TIPO_SITUACAO_INSCRICAO
+				linha.textoRepetido(8),  //SITUACAO_INSCRICAO
+				linha.textoRepetido(9),  //TIPO_CREDITO
+				linha.textoRepetido(10), //DATA_INSCRICAO
+				linha.textoRepetido(11), //INDICADOR_AJUIZADO
+				linha.centavos(12),      //VALOR_CONSOLIDADO
+				linha.valorExato(12)
 				);
 	}
 
-	private class BatchAux implements Closeable {
+	static final class BatchAux implements Closeable {
+		private final Construcao construcao;
 		private final PreparedStatement stmt;
+		private final int parametroArquivo;
+		private final Map<Long,long[]> linhasArquivos = new HashMap<>();
+		private long idArquivo;
+		private long[] linhasArquivo;
 		private int index;
+		private int pendentes;
+		private long linhasDesdeCommit;
 
-		public BatchAux(PreparedStatement stmt) {
+		public BatchAux(Construcao construcao, PreparedStatement stmt, int parametroArquivo) {
+			this.construcao = construcao;
 			this.stmt = stmt;
+			this.parametroArquivo = parametroArquivo;
+			this.construcao.controle().reinicia();
 		}
 
-		public void appendLinhaFGTS(LinhaFGTS linha) {
+		//Linhas do arquivo gravadas antes da interrupção, que não são lidas de novo
+		public void retoma(long id, long linhas) {
+			this.linhasArquivos.put(id, new long[] { linhas });
+		}
+
+		public void arquivo(long id) {
+			this.idArquivo = id;
+			this.linhasArquivo = this.linhasArquivos.computeIfAbsent(id, k -> new long[1]);
+		}
+
+		//Com leitura paralela, o arquivo concluído pode não ser o das últimas linhas recebidas
+		public void fimArquivo(ArquivoEntrada arquivo, long id, long crc, long linhas) {
 			try {
-				this.stmt.setString(1, linha.cpfCnpj().replace(".", "").replace("/", "").replace("-", "").strip());
-				this.stmt.setString(2, linha.tipoPessoa().strip());
-				this.stmt.setString(3, linha.tipoDevedor().strip());
-				this.stmt.setString(4, linha.nomeDevedor().strip());
-				this.stmt.setString(5, linha.ufUnidadeResponsavel().strip());
-				this.stmt.setString(6, linha.unidadeResponsavel().strip());
-				this.stmt.setString(7, linha.entidadeResponsavel().strip());
-				this.stmt.setString(8, linha.unidadeInscricao().strip());
-				this.stmt.setString(9, linha.numeroInscricao().strip());
-				this.stmt.setString(10, linha.tipoSituacaoInscricao().strip());
-				this.stmt.setString(11, linha.situacaoInscricao().strip());
-				this.stmt.setString(12, linha.receitaPrincipal().strip());
-				this.stmt.setString(13, linha.dataInscricao().strip());
-				this.stmt.setString(14, linha.indicadorAjuizado().strip());
-				this.stmt.setBigDecimal(15, linha.valor());
-				this.stmt.addBatch();
-
-				this.index += 1;
-				if (this.index % BasePGFN.this.batchSize == 0) {
-					this.stmt.executeBatch();
+				executaLote();
+				this.construcao.manifesto().conclui(arquivo, crc, linhas);
+				if (this.construcao.retomada() != null) {
+					this.construcao.retomada().conclui(id);
 				}
+				this.linhasArquivos.remove(id);
+			} catch (SQLException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		public void appendLinhaFGTS(LinhaFGTS linha) {
+			try {
+				this.stmt.setString(1, linha.cpfCnpj());
+				setRepetido(2, linha.tipoPessoa());
+				setRepetido(3, linha.tipoDevedor());
+				this.stmt.setString(4, linha.nomeDevedor());
+				setRepetido(5, linha.ufUnidadeResponsavel());
+				setRepetido(6, linha.unidadeResponsavel());
+				setRepetido(7, linha.entidadeResponsavel());
+				this.stmt.setString(8, linha.unidadeInscricao());
+				this.stmt.setString(9, linha.numeroInscricao());
+				setRepetido(10, linha.tipoSituacaoInscricao());
+				setRepetido(11, linha.situacaoInscricao());
+				setRepetido(12, linha.receitaPrincipal());
+				this.stmt.setString(13, linha.dataInscricao());
+				setRepetido(14, linha.indicadorAjuizado());
+				setValor(15, linha.valorCentavos(), linha.valorExato());
+				adicionaLote(linha.cpfCnpj());
 			} catch (SQLException e) {
 				throw new RuntimeException(e);
 			}
@@ -328,25 +722,20 @@ public final class BasePGFN implements Callable<Integer> {
 
 		public void appendLinhaPrevidenciaria(LinhaPrevidenciaria linha) {
 			try {
-				this.stmt.setString(1, linha.cpfCnpj().replace(".", "").replace("/", "").replace("-", "").strip());
-				this.stmt.setString(2, linha.tipoPessoa().strip());
-				this.stmt.setString(3, linha.tipoDevedor().strip());
-				this.stmt.setString(4, linha.nomeDevedor().strip());
-				this.stmt.setString(5, linha.ufUnidadeResponsavel().strip());
-				this.stmt.setString(6, linha.unidadeResponsavel().strip());
-				this.stmt.setString(7, linha.numeroInscricao().strip());
-				this.stmt.setString(8, linha.tipoSituacaoInscricao().strip());
-				this.stmt.setString(9, linha.situacaoInscricao().strip());
-				this.stmt.setString(10, linha.receitaPrincipal().strip());
-				this.stmt.setString(11, linha.dataInscricao().strip());
-				this.stmt.setString(12, linha.indicadorAjuizado().strip());
-				this.stmt.setBigDecimal(13, linha.valor());
-				this.stmt.addBatch();
-
-				this.index += 1;
-				if (this.index % BasePGFN.this.batchSize == 0) {
-					this.stmt.executeBatch();
-				}
+				this.stmt.setString(1, linha.cpfCnpj());
+				setRepetido(2, linha.tipoPessoa());
+				setRepetido(3, linha.tipoDevedor());
+				this.stmt.setString(4, linha.nomeDevedor());
+				setRepetido(5, linha.ufUnidadeResponsavel());
+				setRepetido(6, linha.unidadeResponsavel());
+				this.stmt.setString(7, linha.numeroInscricao());
+				setRepetido(8, linha.tipoSituacaoInscricao());
+				setRepetido(9, linha.situacaoInscricao());
+				setRepetido(10, linha.receitaPrincipal());
+				this.stmt.setString(11, linha.dataInscricao());
+				setRepetido(12, linha.indicadorAjuizado());
+				setValor(13, linha.valorCentavos(), linha.valorExato());
+				adicionaLote(linha.cpfCnpj());
 			} catch (SQLException e) {
 				throw new RuntimeException(e);
 			}
@@ -354,34 +743,104 @@ public final class BasePGFN implements Callable<Integer> {
 
 		public void appendLinhaNaoPrevidenciaria(LinhaNaoPrevidenciaria linha) {
 			try {
-				this.stmt.setString(1, linha.cpfCnpj().replace(".", "").replace("/", "").replace("-", "").strip());
-				this.stmt.setString(2, linha.tipoPessoa().strip());
-				this.stmt.setString(3, linha.tipoDevedor().strip());
-				this.stmt.setString(4, linha.nomeDevedor().strip());
-				this.stmt.setString(5, linha.ufUnidadeResponsavel().strip());
-				this.stmt.setString(6, linha.unidadeResponsavel().strip());
-				this.stmt.setString(7, linha.numeroInscricao().strip());
-				this.stmt.setString(8, linha.tipoSituacaoInscricao().strip());
-				this.stmt.setString(9, linha.situacaoInscricao().strip());
-				this.stmt.setString(10, linha.tipoCredito().strip());
-				this.stmt.setString(11, linha.dataInscricao().strip());
-				this.stmt.setString(12, linha.indicadorAjuizado().strip());
-				this.stmt.setBigDecimal(13, linha.valor());
-				this.stmt.addBatch();
-
-				this.index += 1;
-				if (this.index % BasePGFN.this.batchSize == 0) {
-					this.stmt.executeBatch();
-				}
+				this.stmt.setString(1, linha.cpfCnpj());
+				setRepetido(2, linha.tipoPessoa());
+				setRepetido(3, linha.tipoDevedor());
+				this.stmt.setString(4, linha.nomeDevedor());
+				setRepetido(5, linha.ufUnidadeResponsavel());
+				setRepetido(6, linha.unidadeResponsavel());
+				this.stmt.setString(7, linha.numeroInscricao());
+				setRepetido(8, linha.tipoSituacaoInscricao());
+				setRepetido(9, linha.situacaoInscricao());
+				setRepetido(10, linha.tipoCredito());
+				this.stmt.setString(11, linha.dataInscricao());
+				setRepetido(12, linha.indicadorAjuizado());
+				setValor(13, linha.valorCentavos(), linha.valorExato());
+				adicionaLote(linha.cpfCnpj());
 			} catch (SQLException e) {
 				throw new RuntimeException(e);
 			}
 		}
 
+		//Na base em centavos, o valor é gravado como inteiro, sem passar por ponto flutuante, e os valores com mais de duas
+		//casas são arredondados; na base padrão, esses valores são gravados como estão no arquivo
+		private void setValor(int parametro, long centavos, BigDecimal exato) throws SQLException {
+			if (this.construcao.esquema().centavos()) {
+				this.stmt.setLong(parametro, centavos);
+			} else if (exato != null) {
+				this.stmt.setBigDecimal(parametro, exato);
+			} else {
+				this.stmt.setDouble(parametro, centavos / 100.0);
+			}
+		}
+
+		//No esquema compacto, grava o código do valor no dicionário
+		private void setRepetido(int parametro, String valor) throws SQLException {
+			if (this.construcao.dicionario() == null || valor == null) {
+				this.stmt.setString(parametro, valor);
+			} else {
+				this.stmt.setLong(parametro, this.construcao.dicionario().codigo(valor));
+			}
+		}
+
+		private void adicionaLote(String cpfCnpj) throws SQLException {
+			this.stmt.setLong(this.parametroArquivo, this.idArquivo);
+			if (this.construcao.esquema().agrupado()) {
+				this.stmt.setLong(this.parametroArquivo + 1, Esquema.cnpjBasico(cpfCnpj));
+				this.stmt.setLong(this.parametroArquivo + 2, this.index);
+			}
+			this.stmt.addBatch();
+
+			this.linhasArquivo[0] += 1;
+			this.index += 1;
+			this.pendentes += 1;
+			if (this.pendentes >= this.construcao.controle().tamanhoLote()) {
+				executaLote();
+			}
+		}
+
+		private void executaLote() throws SQLException {
+			if (this.pendentes == 0) {
+				return;
+			}
+
+			EventoFlush evento = new EventoFlush();
+			evento.begin();
+			long t0 = System.nanoTime();
+			this.stmt.executeBatch();
+			long nanos = System.nanoTime()-t0;
+			evento.linhas = this.pendentes;
+			evento.commit();
+			this.construcao.controle().registraFlush(this.pendentes, nanos);
+			Metricas.registraFlush(nanos);
+
+			this.linhasDesdeCommit += this.pendentes;
+			this.pendentes = 0;
+			if (this.construcao.controle().commitNecessario(this.linhasDesdeCommit)) {
+				registraRetomada();
+				this.construcao.conn().commit();
+				this.linhasDesdeCommit = 0;
+			}
+		}
+
+		//Cada commit periódico grava, na mesma transação, as linhas já inseridas de cada arquivo em andamento
+		private void registraRetomada() throws SQLException {
+			if (this.construcao.retomada() == null) {
+				return;
+			}
+			for (Map.Entry<Long,long[]> arquivo : this.linhasArquivos.entrySet()) {
+				this.construcao.retomada().registra(arquivo.getKey(), arquivo.getValue()[0]);
+			}
+		}
+
+		public int linhas() {
+			return this.index;
+		}
+
 		@Override
 		public void close() {
 			try {
-				this.stmt.executeBatch();
+				executaLote();
 			} catch (SQLException e) {
 				throw new RuntimeException(e);
 			}
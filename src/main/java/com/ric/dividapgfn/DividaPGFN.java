@@ -3,7 +3,7 @@ package com.ric.dividapgfn;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 
-@Command(name = "dividapgfn", subcommands = { BasePGFN.class, FiltraDivida.class })
+@Command(name = "dividapgfn", subcommands = { BasePGFN.class, FiltraDivida.class, ServidorFiltro.class, TriagemCNPJ.class, GeraDados.class })
 public final class DividaPGFN {
 	public static void main(String... args) {
 		CommandLine cli = new CommandLine(new DividaPGFN());
@@ -1,23 +1,58 @@
 package com.ric.dividapgfn;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.sqlite.Function;
 import org.sqlite.SQLiteConfig;
 import org.sqlite.SQLiteConfig.TempStore;
 import org.sqlite.SQLiteConnection;
 import org.tinylog.Logger;
 
+import com.ric.dividapgfn.carga.Corresponsaveis;
+import com.ric.dividapgfn.carga.Esquema;
+import com.ric.dividapgfn.carga.Fragmentos;
+import com.ric.dividapgfn.csv.ArrowWriter;
 import com.ric.dividapgfn.csv.CSVWriter;
+import com.ric.dividapgfn.csv.Formato;
+import com.ric.dividapgfn.csv.GzipParalelo;
+import com.ric.dividapgfn.metricas.Etapa;
+import com.ric.dividapgfn.metricas.Metricas;
+import com.ric.dividapgfn.util.CacheConsultas;
 import com.ric.dividapgfn.util.Common;
+import com.ric.dividapgfn.util.ConjuntoBytes;
+import com.ric.dividapgfn.util.ConjuntoLong;
+import com.ric.dividapgfn.util.Grafo;
 
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -31,17 +66,92 @@ public final class FiltraDivida implements Callable<Integer> {
 	@Option(names = { "-b", "--basecnpj" }, required = true, description = "Arquivo sqlite com a base do CNPJ")
 	private Path baseCNPJ;
 
-	@Option(names = { "-c", "--consulta" }, required = true, description = "Consulta sql para determinar os CNPJs a serem buscados no arquivo da PGFN")
-	private Path arqConsulta;
+	@Option(names = { "-c", "--consulta" }, required = true, arity = "1..*", description = "Consulta sql para determinar os CNPJs a serem buscados no arquivo da PGFN; com vários arquivos ou um diretório de arquivos .sql, as consultas são filtradas juntas e cada uma é exportada em saida/<nome da consulta>")
+	private List<Path> arqConsultas;
 
 	@Option(names = { "-s", "--separador" }, description = "Separador a ser utilizado nos arquivos CSV exportados (padrão=${DEFAULT-VALUE})" )
 	private char separador = ';';
 
+	@Option(names = { "-p", "--paralelo" }, description = "Exporta os arquivos de análise simultaneamente, cada um em sua própria conexão")
+	private boolean paralelo;
+
+	@Option(names = { "-m", "--memoria" }, description = "Seleciona as inscrições com conjuntos em memória e duas leituras da base da PGFN, em vez de tabelas temporárias indexadas")
+	private boolean memoria;
+
+	@Option(names = { "--profundidade" }, description = "Quantidade de saltos devedor → inscrição → devedor a partir dos CNPJs da consulta; acima de 1, a rede é expandida em um grafo em memória (padrão=${DEFAULT-VALUE})")
+	private int profundidade = 1;
+
+	@Option(names = { "--sem-cache" }, description = "Executa a consulta na base do CNPJ sem usar nem gravar o cache de resultados")
+	private boolean semCache;
+
+	@Option(names = { "--limite-cache" }, description = "Tamanho máximo do cache de resultados da consulta, em MiB (padrão=${DEFAULT-VALUE})")
+	private long limiteCache = 1024;
+
+	@Option(names = { "-o", "--formato" }, description = "Formato dos arquivos de análise: ${COMPLETION-CANDIDATES} (padrão=${DEFAULT-VALUE})")
+	private Formato formato = Formato.CSV;
+
+	@Option(names = { "-z", "--gzip" }, description = "Grava os arquivos de análise comprimidos (.csv.gz), em blocos comprimidos em paralelo")
+	private boolean gzip;
+
+	@Option(names = { "--indice-gzip" }, description = "Com --gzip, grava também um índice (.csv.gz.idx) com a posição de cada bloco")
+	private boolean indiceGzip;
+
+	@Option(names = { "-t", "--threads" }, description = "Número de threads de compressão (padrão=número de processadores)")
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	@Option(names = { "--relatorio" }, description = "Grava em um arquivo JSON as métricas de cada etapa do filtro: linhas, bytes, alocação, coletas de lixo e tempos dos comandos SQL")
+	private Path relatorio;
+
+	private static final Set<String> COLUNAS_CENTAVOS = Set.of("valor_consolidado", "valor_corresponsabilidade", "divida_devedor_principal");
+	private static final String BASE_TRABALHO = "divida_trabalho.sqlite";
+	private static final String COLUNAS_DIVIDA = """
+				dev.cpf_cnpj,
+				dev.tipo_pessoa,
+				dev.tipo_devedor,
+				dev.nome_devedor,
+				dev.uf_unidade_responsavel,
+				dev.unidade_responsavel,
+				dev.entidade_responsavel,
+				dev.unidade_inscricao,
+				dev.numero_inscricao,
+				dev.tipo_situacao_inscricao,
+				dev.situacao_inscricao,
+				dev.receita_principal,
+				dev.tipo_credito,
+				dev.data_inscricao,
+				dev.indicador_ajuizado,
+				dev.valor_consolidado,
+				dev.arquivo_origem,
+				case when dev.tipo_pessoa = 'PESSOA JURÍDICA' then substr(dev.cpf_cnpj,1,8) else dev.cpf_cnpj end as cnpj_matriz""";
+
+	private interface Exportacao {
+		void exporta(SQLiteConnection conn, Destino destino) throws SQLException;
+	}
+
+	private interface Destino {
+		void grava(ResultSet rs) throws SQLException;
+	}
+
+	private interface DestinoCNPJ {
+		void aceita(String cnpjBasico) throws SQLException;
+	}
+
+	private record Consulta(String nome, String sql) { }
+
+	private record Rede(Grafo grafo, ConjuntoBytes inscricoes) { }
+
+	private final List<String> esquemasPGFN = new ArrayList<>();
+	private Esquema esquemaPGFN;
+	private Path basePGFNCorresponsaveis;
+	private ExecutorService executorCompressao;
+	private CacheConsultas cache;
+
 	@Override
 	public Integer call() {
 		long t0 = System.nanoTime();
+		Metricas.inicia("filtra_divida");
 
-		Path basePGFN = this.dirBase.resolve("entrada/pgfn.sqlite");
+		Path basePGFN = this.dirBase.resolve("entrada").resolve("pgfn.sqlite");
 		Path dirSaida = this.dirBase.resolve("saida");
 		try {
 			Files.createDirectories(dirSaida);
@@ -51,55 +161,108 @@ public final class FiltraDivida implements Callable<Integer> {
 
 		Logger.info("Criando arquivos de análise em {}", dirSaida.toAbsolutePath());
 
-		if (Files.notExists(basePGFN)) {
+		List<Path> basesPGFN = basesPGFN(this.dirBase);
+		if (basesPGFN.isEmpty()) {
 			Logger.error("Erro: arquivo {} não encontrado.", basePGFN.toAbsolutePath());
 			return CommandLine.ExitCode.USAGE;
 		}
+		if (basesPGFN.size() > Fragmentos.MAX_ANEXADOS) {
+			Logger.error("Erro: {} bases fragmentadas, acima do máximo de {}; unifique a base com --unifica.", basesPGFN.size(), Fragmentos.MAX_ANEXADOS);
+			return CommandLine.ExitCode.USAGE;
+		}
 
 		if (Files.notExists(this.baseCNPJ)) {
 			Logger.error("Erro: arquivo {} não encontrado.", this.baseCNPJ.toAbsolutePath());
 			return CommandLine.ExitCode.USAGE;
 		}
 
-		if (Files.notExists(this.arqConsulta)) {
-			Logger.error("Erro: arquivo {} não encontrado.", this.arqConsulta.toAbsolutePath());
-			return CommandLine.ExitCode.USAGE;
+		for (Path arqConsulta : this.arqConsultas) {
+			if (Files.notExists(arqConsulta)) {
+				Logger.error("Erro: arquivo {} não encontrado.", arqConsulta.toAbsolutePath());
+				return CommandLine.ExitCode.USAGE;
+			}
 		}
 
+		List<Consulta> consultas;
 		try {
-			SQLiteConfig config = new SQLiteConfig();
-			config.setReadOnly(true);
-			config.setTempStore(TempStore.MEMORY);
+			consultas = consultas();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (consultas.isEmpty()) {
+			Logger.error("Erro: nenhum arquivo .sql encontrado.");
+			return CommandLine.ExitCode.USAGE;
+		}
+		if (consultas.stream().map(Consulta::nome).distinct().count() < consultas.size()) {
+			Logger.error("Erro: há consultas com o mesmo nome de arquivo.");
+			return CommandLine.ExitCode.USAGE;
+		}
+		boolean lote = consultas.size() > 1 || this.arqConsultas.stream().anyMatch(Files::isDirectory);
+
+		if (lote && this.memoria) {
+			Logger.error("Erro: a opção --memoria se aplica apenas a uma consulta.");
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		if (this.profundidade < 1) {
+			Logger.error("Erro: a profundidade deve ser de pelo menos 1.");
+			return CommandLine.ExitCode.USAGE;
+		}
 
+		if (this.gzip && this.formato != Formato.CSV) {
+			Logger.error("Erro: a opção --gzip se aplica apenas ao formato CSV.");
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		if (!this.semCache) {
+			this.cache = new CacheConsultas(this.dirBase.resolve("cache"), this.limiteCache * 1024 * 1024);
+		}
+
+		//Em paralelo, a tabela divida é gravada em uma base de trabalho em disco, que as conexões de exportação anexam somente para leitura
+		Path baseTrabalho = dirSaida.resolve(BASE_TRABALHO);
+		if (this.gzip) {
+			this.executorCompressao = Executors.newFixedThreadPool(Math.max(1, this.threads));
+		}
+		try {
 			Logger.info("Conectando base CNPJ...");
-			SQLiteConnection conn = DriverManager
-					.getConnection("jdbc:sqlite:file:///" + this.baseCNPJ.toAbsolutePath() + "?mode=ro", config.toProperties())
-					.unwrap(SQLiteConnection.class);
-			conn.setReadOnly(true);
+			SQLiteConnection conn = conectaBaseCNPJ(!this.paralelo);
+			String bancoDivida = "temp";
+			if (this.paralelo) {
+				Files.deleteIfExists(baseTrabalho);
+				Common.executeUpdateStatement(conn, "ATTACH 'file:///" + baseTrabalho.toAbsolutePath() + "?mode=rwc' AS `trabalho`");
+				Common.executeUpdateStatement(conn, "PRAGMA trabalho.journal_mode = OFF");
+				Common.executeUpdateStatement(conn, "PRAGMA trabalho.synchronous = OFF");
+				bancoDivida = "trabalho";
+			}
 			conn.setAutoCommit(false);
 			Logger.info("Conectando base PGFN...");
-			Common.executeUpdateStatement(conn, "ATTACH 'file:///" + basePGFN.toAbsolutePath() + "?mode=ro' AS `pgfn` KEY ''");
-
-			try {
-				String consulta = Files.readString(this.arqConsulta, Common.CHARSET);
+			conectaBasesPGFN(conn, basesPGFN);
 
-				tabelaCNPJ(conn, consulta);
-			} catch (IOException e) {
-				throw new UncheckedIOException(e);
+			if (lote) {
+				filtraLote(conn, consultas, bancoDivida, baseTrabalho, dirSaida);
+			} else {
+				selecionaDividas(conn, consultas.get(0).sql(), bancoDivida, this.profundidade);
+				exportaArquivos(conn, baseTrabalho, dirSaida);
+			}
+			if (this.relatorio != null) {
+				Metricas.gravaRelatorio(this.relatorio);
 			}
-
-			indiceTabelaCNPJ(conn);
-			tabelaInscricoesDivida(conn);
-			indiceTabelaInscricoesDivida(conn);
-			tabelaDivida(conn);
-			indiceTabelaDivida(conn);
-			exportaBaseDivida(conn, dirSaida.resolve("divida.csv"));
-			exportaCadastroCNPJ(conn, dirSaida.resolve("cnpj.csv"));
-			exportaCadastroSocios(conn, dirSaida.resolve("socios.csv"));
-			exportaTabelaCorresponsaveis(conn, dirSaida.resolve("corresponsaveis.csv"));
 		} catch (SQLException e) {
 			Logger.error("Erro SQL: {}", e.getLocalizedMessage());
 			return CommandLine.ExitCode.SOFTWARE;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			if (this.executorCompressao != null) {
+				this.executorCompressao.shutdownNow();
+			}
+			if (this.paralelo) {
+				try {
+					Files.deleteIfExists(baseTrabalho);
+				} catch (IOException e) {
+					Logger.warn("Não foi possível remover {}: {}", baseTrabalho.toAbsolutePath(), e.getLocalizedMessage());
+				}
+			}
 		}
 
 		Logger.info("Programa executado em {}", Common.formatDuration(System.nanoTime()-t0));
@@ -107,76 +270,698 @@ public final class FiltraDivida implements Callable<Integer> {
 		return CommandLine.ExitCode.OK;
 	}
 
+	//Cada diretório informado contribui com seus arquivos .sql, em ordem de nome; o nome da consulta é o do arquivo, sem extensão
+	private List<Consulta> consultas() throws IOException {
+		List<Path> arquivos = new ArrayList<>();
+		for (Path arqConsulta : this.arqConsultas) {
+			if (Files.isDirectory(arqConsulta)) {
+				try (Stream<Path> lista = Files.list(arqConsulta)) {
+					lista.filter(arquivo -> arquivo.getFileName().toString().toLowerCase().endsWith(".sql")).sorted().forEach(arquivos::add);
+				}
+			} else {
+				arquivos.add(arqConsulta);
+			}
+		}
+		List<Consulta> consultas = new ArrayList<>();
+		for (Path arquivo : arquivos) {
+			String nome = arquivo.getFileName().toString().replaceFirst("(?i)\\.sql$", "");
+			consultas.add(new Consulta(nome, Files.readString(arquivo, Common.CHARSET)));
+		}
+		return consultas;
+	}
+
+	private void exportaArquivos(SQLiteConnection conn, Path baseTrabalho, Path dirSaida) throws SQLException {
+		if (this.paralelo) {
+			conn.commit();
+			exportaEmParalelo(baseTrabalho, dirSaida);
+		} else {
+			for (Map.Entry<String,Exportacao> exportacao : exportacoes().entrySet()) {
+				exporta(conn, exportacao, dirSaida, Metricas.atual());
+			}
+		}
+	}
+
+	@SuppressWarnings("try")
+	private void exporta(SQLiteConnection conn, Map.Entry<String,Exportacao> exportacao, Path dirSaida, Etapa pai) throws SQLException {
+		try (Etapa etapa = Metricas.etapa(pai, "exportacao " + exportacao.getKey())) {
+			exportacao.getValue().exporta(conn, rs -> exporta(rs, dirSaida.resolve(exportacao.getKey())));
+		}
+	}
+
+	//Várias consultas em uma única passagem pela base da PGFN: os CNPJs de cada consulta são marcados com o número dela, as
+	//inscrições da união são selecionadas com uma só junção e as dívidas da união são lidas uma vez. Cada consulta recebe
+	//então a sua tabela divida, extraída da união, e os seus arquivos em saida/<nome da consulta>.
+	@SuppressWarnings("try")
+	private void filtraLote(SQLiteConnection conn, List<Consulta> consultas, String banco, Path baseTrabalho, Path dirSaida) throws SQLException, IOException {
+		tabelaCNPJLote(conn, consultas);
+		if (this.profundidade > 1) {
+			tabelaInscricoesLotePorRede(conn, consultas);
+		} else {
+			tabelaInscricoesLote(conn);
+		}
+		long t0 = System.nanoTime();
+		Logger.info("Criando tabela temporária com inscrições da dívida relevantes");
+		try (Etapa etapa = Metricas.etapa("inscricoes")) {
+			Common.executeUpdateStatement(conn, "CREATE INDEX `temp.index_tmp_insc_consulta` ON `inscricao_consulta` (`consulta`, `numero_inscricao`)");
+			Common.executeUpdateStatement(conn, "create table temp.inscricao_divida as select distinct numero_inscricao from temp.inscricao_consulta");
+			etapa.linhas(contaLinhas(conn, "temp.inscricao_divida"));
+		}
+		Logger.info("Tabela criada em {}", Common.formatDuration(System.nanoTime()-t0));
+		indiceTabelaInscricoesDivida(conn);
+		tabelaDivida(conn, "temp.divida_lote");
+		Common.executeUpdateStatement(conn, "CREATE INDEX `temp.index_tmp_divida_lote_insc` ON `divida_lote` (`numero_inscricao`)");
+
+		for (int i = 0; i < consultas.size(); i++) {
+			long t1 = System.nanoTime();
+			Consulta consulta = consultas.get(i);
+			Logger.info("Exportando consulta {} ({} de {})...", consulta.nome(), i + 1, consultas.size());
+			Path dirConsulta = dirSaida.resolve(consulta.nome());
+			Files.createDirectories(dirConsulta);
+			try (Etapa etapa = Metricas.etapa("consulta " + consulta.nome())) {
+				Common.executeUpdateStatement(conn, """
+						create table %s.divida as
+						select * from temp.divida_lote
+						where numero_inscricao in (select numero_inscricao from temp.inscricao_consulta where consulta = %d)""".formatted(banco, i));
+				indiceTabelaDivida(conn, banco);
+				exportaArquivos(conn, baseTrabalho, dirConsulta);
+				Common.executeUpdateStatement(conn, "drop table " + banco + ".divida");
+			}
+			Logger.info("Consulta {} exportada em {}", consulta.nome(), Common.formatDuration(System.nanoTime()-t1));
+		}
+	}
+
+	@SuppressWarnings("try")
+	private void tabelaCNPJLote(SQLiteConnection conn, List<Consulta> consultas) throws SQLException {
+		long t0 = System.nanoTime();
+		Logger.info("Criando tabela temporária com CNPJs de {} consultas...", consultas.size());
+		try (Etapa etapa = Metricas.etapa("cnpj")) {
+			Common.executeUpdateStatement(conn, "create table temp.cnpj_consulta (consulta INTEGER, cnpj_basico TEXT)");
+			try (PreparedStatement stmt = conn.prepareStatement("insert into temp.cnpj_consulta values (?, ?)")) {
+				for (int i = 0; i < consultas.size(); i++) {
+					stmt.setInt(1, i);
+					leCNPJsConsulta(conn, consultas.get(i).sql(), cnpjBasico -> {
+						stmt.setString(2, cnpjBasico);
+						stmt.executeUpdate();
+					});
+				}
+			}
+			Common.executeUpdateStatement(conn, "CREATE INDEX `temp.index_tmp_cnpj_consulta` ON `cnpj_consulta` (`cnpj_basico`)");
+			Common.executeUpdateStatement(conn, "create table temp.cnpj as select distinct cnpj_basico from temp.cnpj_consulta");
+		}
+		Logger.info("Tabela criada em {}", Common.formatDuration(System.nanoTime()-t0));
+		indiceTabelaCNPJ(conn);
+	}
+
+	//A junção com pgfn_devedores é feita uma vez para a união dos CNPJs; cada inscrição vai para as consultas do seu CNPJ
+	private void tabelaInscricoesLote(SQLiteConnection conn) throws SQLException {
+		long t0 = System.nanoTime();
+		Logger.info("Criando tabela temporária com inscrições de cada consulta");
+		try (Etapa etapa = Metricas.etapa("inscricoes por consulta")) {
+			Common.executeUpdateStatement(conn, """
+					create table temp.inscricao_consulta as
+					select distinct c.consulta, i.numero_inscricao
+					from (
+					%s
+					) i
+					join temp.cnpj_consulta c
+						on c.cnpj_basico = i.cnpj_basico""".formatted(uniao("""
+					select distinct cnpj.cnpj_basico, dev.numero_inscricao
+					from temp.cnpj cnpj
+					join pgfn.pgfn_devedores dev
+						on %s""".formatted(juncaoCNPJ()), "union")));
+			etapa.linhas(contaLinhas(conn, "temp.inscricao_consulta"));
+		}
+		Logger.info("Tabela criada em {}", Common.formatDuration(System.nanoTime()-t0));
+	}
+
+	//O grafo é carregado uma vez e percorrido a partir das raízes de cada consulta
+	private void tabelaInscricoesLotePorRede(SQLiteConnection conn, List<Consulta> consultas) throws SQLException {
+		try (Etapa etapa = Metricas.etapa("inscricoes por rede")) {
+			Rede rede = carregaRede(conn);
+			Common.executeUpdateStatement(conn, "create table temp.inscricao_consulta (consulta INTEGER, numero_inscricao TEXT)");
+			try (PreparedStatement raizesConsulta = conn.prepareStatement("select cnpj_basico from temp.cnpj_consulta where consulta = ?");
+					PreparedStatement insere = conn.prepareStatement("insert into temp.inscricao_consulta values (?, ?)")) {
+				for (int i = 0; i < consultas.size(); i++) {
+					Logger.info("Consulta {}:", consultas.get(i).nome());
+					ConjuntoLong raizes = new ConjuntoLong();
+					raizesConsulta.setInt(1, i);
+					try (ResultSet rs = raizesConsulta.executeQuery()) {
+						while (rs.next()) {
+							long raiz = Esquema.cnpjBasico(rs.getString(1));
+							if (raiz >= 0) {
+								raizes.adiciona(raiz);
+							}
+						}
+					}
+					long[] alcancadas = expandeRede(rede, raizes, this.profundidade);
+					insere.setInt(1, i);
+					for (int palavra = 0; palavra < alcancadas.length; palavra++) {
+						for (long bits = alcancadas[palavra]; bits != 0; bits &= bits - 1) {
+							int inscricao = palavra * 64 + Long.numberOfTrailingZeros(bits);
+							insere.setString(2, new String(rede.inscricoes().elemento(inscricao), StandardCharsets.UTF_8));
+							insere.executeUpdate();
+						}
+					}
+				}
+			}
+			etapa.linhas(contaLinhas(conn, "temp.inscricao_consulta"));
+		}
+	}
+
+	//Base única (pgfn.sqlite) ou, na falta dela, os fragmentos
+	static List<Path> basesPGFN(Path dirBase) {
+		Path dirEntrada = dirBase.resolve("entrada");
+		Path basePGFN = dirEntrada.resolve("pgfn.sqlite");
+		return Files.exists(basePGFN) ? List.of(basePGFN) : Fragmentos.lista(dirEntrada);
+	}
+
+	private void selecionaDividas(SQLiteConnection conn, String consulta, String banco, int profundidade) throws SQLException {
+		if (profundidade > 1) {
+			tabelaDividaPorRede(conn, consulta, banco, profundidade);
+		} else if (this.memoria) {
+			tabelaDividaEmMemoria(conn, consulta, banco);
+		} else {
+			tabelaCNPJ(conn, consulta);
+			indiceTabelaCNPJ(conn);
+			tabelaInscricoesDivida(conn);
+			indiceTabelaInscricoesDivida(conn);
+			tabelaDivida(conn, banco + ".divida");
+		}
+		indiceTabelaDivida(conn, banco);
+	}
+
+	//Filtro usado pelo servidor: cada instância mantém sua conexão aberta entre as requisições
+	static FiltraDivida sessao(Path dirBase, Path baseCNPJ, char separador, CacheConsultas cache) {
+		FiltraDivida filtro = new FiltraDivida();
+		filtro.dirBase = dirBase;
+		filtro.baseCNPJ = baseCNPJ;
+		filtro.separador = separador;
+		filtro.cache = cache;
+		return filtro;
+	}
+
+	SQLiteConnection conectaSessao(List<Path> basesPGFN, int cacheKiB) throws SQLException {
+		SQLiteConnection conn = conectaBaseCNPJ(true);
+		Common.executeUpdateStatement(conn, "PRAGMA cache_size = -" + cacheKiB);
+		conn.setAutoCommit(false);
+		conectaBasesPGFN(conn, basesPGFN);
+		return conn;
+	}
+
+	//As tabelas temporárias ficam na transação da requisição e são descartadas pelo rollback feito pelo servidor
+	void selecionaDividas(SQLiteConnection conn, String consulta, int profundidade) throws SQLException {
+		selecionaDividas(conn, consulta, "temp", profundidade);
+	}
+
+	static boolean exportacaoValida(String arquivo) {
+		return new FiltraDivida().exportacoes().containsKey(arquivo);
+	}
+
+	void exportaCSV(SQLiteConnection conn, String arquivo, Writer out) throws SQLException {
+		exportacoes().get(arquivo).exporta(conn, rs -> {
+			try {
+				novoCSVWriter().write(rs, out, true);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	//Sem somenteLeitura, apenas a base do CNPJ é aberta para leitura, e bases anexadas depois podem ser gravadas
+	private SQLiteConnection conectaBaseCNPJ(boolean somenteLeitura) throws SQLException {
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(somenteLeitura);
+		config.setTempStore(TempStore.MEMORY);
+
+		SQLiteConnection conn = DriverManager
+				.getConnection("jdbc:sqlite:file:///" + this.baseCNPJ.toAbsolutePath() + "?mode=ro", config.toProperties())
+				.unwrap(SQLiteConnection.class);
+		if (somenteLeitura) {
+			conn.setReadOnly(true);
+		}
+		return conn;
+	}
+
+	//Os arquivos Arrow recebem a extensão .arrow no lugar de .csv
+	private void exporta(ResultSet rs, Path arquivo) throws SQLException {
+		try {
+			if (this.formato == Formato.ARROW) {
+				Path arquivoArrow = arquivo.resolveSibling(arquivo.getFileName().toString().replaceFirst("\\.csv$", ".arrow"));
+				try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(arquivoArrow), 64 * 1024)) {
+					Metricas.linhas(new ArrowWriter(this.esquemaPGFN.centavos() ? COLUNAS_CENTAVOS : Set.of()).write(rs, out));
+				}
+				Metricas.bytesGravados(Files.size(arquivoArrow));
+			} else {
+				try (BufferedWriter out = novaSaida(arquivo)) {
+					Metricas.linhas(novoCSVWriter().write(rs, out, true));
+				}
+				Metricas.bytesGravados(Files.size(this.gzip ? arquivoGzip(arquivo) : arquivo));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	//Com --gzip, a compressão dos blocos acontece nas threads do executor enquanto a exportação continua lendo o ResultSet
+	private BufferedWriter novaSaida(Path arquivo) throws IOException {
+		if (!this.gzip) {
+			return Files.newBufferedWriter(arquivo, Common.CHARSET);
+		}
+		Path arquivoGzip = arquivoGzip(arquivo);
+		Path arquivoIndice = this.indiceGzip ? arquivo.resolveSibling(arquivoGzip.getFileName() + ".idx") : null;
+		GzipParalelo saida = new GzipParalelo(Files.newOutputStream(arquivoGzip), this.executorCompressao, this.threads, arquivoIndice);
+		return new BufferedWriter(new OutputStreamWriter(saida, Common.CHARSET), 64 * 1024);
+	}
+
+	private static Path arquivoGzip(Path arquivo) {
+		return arquivo.resolveSibling(arquivo.getFileName() + ".gz");
+	}
+
+	private Map<String,Exportacao> exportacoes() {
+		Map<String,Exportacao> exportacoes = new LinkedHashMap<>();
+		exportacoes.put("divida.csv", this::exportaBaseDivida);
+		exportacoes.put("cnpj.csv", this::exportaCadastroCNPJ);
+		exportacoes.put("socios.csv", this::exportaCadastroSocios);
+		exportacoes.put("corresponsaveis.csv", this::exportaTabelaCorresponsaveis);
+		return exportacoes;
+	}
+
+	//Cada exportação usa sua própria conexão somente leitura, em que a visão temp.divida aponta para a base de trabalho.
+	//O tempo total fica próximo ao da exportação mais demorada, em vez da soma de todas.
+	private void exportaEmParalelo(Path baseTrabalho, Path dirSaida) throws SQLException {
+		long t0 = System.nanoTime();
+		Map<String,Exportacao> exportacoes = exportacoes();
+		Logger.info("Exportando {} arquivos em paralelo...", exportacoes.size());
+		ExecutorService executor = Executors.newFixedThreadPool(exportacoes.size());
+		Etapa pai = Metricas.atual();
+		try {
+			List<Future<?>> tarefas = new ArrayList<>();
+			for (Map.Entry<String,Exportacao> exportacao : exportacoes.entrySet()) {
+				tarefas.add(executor.submit(() -> {
+					try (SQLiteConnection conn = conectaBaseCNPJ(true)) {
+						Common.executeUpdateStatement(conn, "ATTACH 'file:///" + baseTrabalho.toAbsolutePath() + "?mode=ro' AS `trabalho`");
+						Common.executeUpdateStatement(conn, "create temp view divida as select * from trabalho.divida");
+						if (this.basePGFNCorresponsaveis != null) {
+							Common.executeUpdateStatement(conn, "ATTACH 'file:///" + this.basePGFNCorresponsaveis.toAbsolutePath() + "?mode=ro' AS `pgfn` KEY ''");
+						}
+						exporta(conn, exportacao, dirSaida, pai);
+					}
+					return null;
+				}));
+			}
+			for (Future<?> tarefa : tarefas) {
+				tarefa.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SQLException sqlException) {
+				throw sqlException;
+			} else if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		Logger.info("Arquivos exportados em {}", Common.formatDuration(System.nanoTime()-t0));
+	}
+
+	//Com bases fragmentadas, cada fragmento é anexado como pgfn_<n> e fica acessível em conjunto pela visão temp.pgfn_devedores
+	private void conectaBasesPGFN(SQLiteConnection conn, List<Path> bases) throws SQLException {
+		if (bases.size() == 1) {
+			Common.executeUpdateStatement(conn, "ATTACH 'file:///" + bases.get(0).toAbsolutePath() + "?mode=ro' AS `pgfn` KEY ''");
+			this.esquemasPGFN.add("pgfn");
+			this.esquemaPGFN = Esquema.da(conn, "pgfn");
+			if (Corresponsaveis.existe(conn, "pgfn")) {
+				this.basePGFNCorresponsaveis = bases.get(0);
+			}
+			return;
+		}
+		for (int i = 0; i < bases.size(); i++) {
+			String esquema = "pgfn_" + i;
+			Common.executeUpdateStatement(conn, "ATTACH 'file:///" + bases.get(i).toAbsolutePath() + "?mode=ro' AS `" + esquema + "` KEY ''");
+			this.esquemasPGFN.add(esquema);
+		}
+		Logger.info("{} bases fragmentadas conectadas", bases.size());
+		this.esquemaPGFN = Esquema.da(conn, this.esquemasPGFN.get(0));
+		Common.executeUpdateStatement(conn, "create temp view pgfn_devedores as " + uniao("select * from pgfn.pgfn_devedores", "union all"));
+	}
+
+	//Repete a consulta para cada base da PGFN: a visão unificada seria materializada pelo SQLite nas junções, sem usar os índices de cada fragmento
+	private String uniao(String consulta, String operador) {
+		return this.esquemasPGFN.stream()
+				.map(esquema -> consulta.replace("pgfn.", esquema + "."))
+				.collect(Collectors.joining("\n" + operador + "\n"));
+	}
+
+	//Na base em centavos, os valores e as somas são inteiros exatos, convertidos em decimais apenas na exportação
+	private CSVWriter novoCSVWriter() {
+		if (this.esquemaPGFN.centavos()) {
+			return new CSVWriter(this.separador, COLUNAS_CENTAVOS);
+		}
+		return new CSVWriter(this.separador);
+	}
+
 	private void tabelaCNPJ(SQLiteConnection conn, String consulta) throws SQLException {
 		long t0 = System.nanoTime();
 		Logger.info("Criando tabela temporária com CNPJs de acordo com consulta...");
-		Common.executeUpdateStatement(conn, "create table temp.cnpj as " + consulta);
+		try (Etapa etapa = Metricas.etapa("cnpj")) {
+			if (this.cache == null) {
+				Common.executeUpdateStatement(conn, "create table temp.cnpj as " + consulta);
+				etapa.linhas(contaLinhas(conn, "temp.cnpj"));
+			} else {
+				Common.executeUpdateStatement(conn, "create table temp.cnpj (cnpj_basico TEXT)");
+				try (PreparedStatement stmt = conn.prepareStatement("insert into temp.cnpj values (?)")) {
+					leCNPJsConsulta(conn, consulta, cnpjBasico -> {
+						stmt.setString(1, cnpjBasico);
+						stmt.executeUpdate();
+					});
+				}
+			}
+		}
 		Logger.info("Tabela criada em {}", Common.formatDuration(System.nanoTime()-t0));
 	}
 
+	@SuppressWarnings("try")
 	private void indiceTabelaCNPJ(SQLiteConnection conn) throws SQLException {
 		long t0 = System.nanoTime();
 		Logger.info("Criando índice...");
-		Common.executeUpdateStatement(conn, "CREATE INDEX `temp.index_tmp_cnpj` ON `cnpj` (`cnpj_basico`)");
+		try (Etapa etapa = Metricas.etapa("indice cnpj")) {
+			Common.executeUpdateStatement(conn, "CREATE INDEX `temp.index_tmp_cnpj` ON `cnpj` (`cnpj_basico`)");
+		}
 		Logger.info("Índice criado em {}", Common.formatDuration(System.nanoTime()-t0));
 	}
 
 	private void tabelaInscricoesDivida(SQLiteConnection conn) throws SQLException {
 		long t0 = System.nanoTime();
 		Logger.info("Criando tabela temporária com inscrições da dívida relevantes");
-		Common.executeUpdateStatement(conn, """
-				create table temp.inscricao_divida as
-				select distinct dev.numero_inscricao
-				from temp.cnpj cnpj
-				join pgfn.pgfn_devedores dev
-					on cnpj.cnpj_basico = substr(dev.cpf_cnpj,1,8)""");
+		try (Etapa etapa = Metricas.etapa("inscricoes")) {
+			Common.executeUpdateStatement(conn, "create table temp.inscricao_divida as\n" + uniao("""
+					select distinct dev.numero_inscricao
+					from temp.cnpj cnpj
+					join pgfn.pgfn_devedores dev
+						on %s""".formatted(juncaoCNPJ()), "union"));
+			etapa.linhas(contaLinhas(conn, "temp.inscricao_divida"));
+		}
 		Logger.info("Tabela criada em {}", Common.formatDuration(System.nanoTime()-t0));
 	}
 
+	//Na base agrupada, a raiz do CNPJ inteira percorre apenas o trecho da chave de cada devedor
+	private String juncaoCNPJ() {
+		return this.esquemaPGFN.agrupado()
+				? "dev.cnpj_basico = cast(cnpj.cnpj_basico as integer) and cnpj.cnpj_basico = +substr(dev.cpf_cnpj,1,8)"
+				: "cnpj.cnpj_basico = substr(dev.cpf_cnpj,1,8)";
+	}
+
+	@SuppressWarnings("try")
 	private void indiceTabelaInscricoesDivida(SQLiteConnection conn) throws SQLException {
 		long t0 = System.nanoTime();
 		Logger.info("Criando índice...");
-		Common.executeUpdateStatement(conn, "CREATE INDEX `temp.index_tmp_insc_divida` ON `inscricao_divida` (`numero_inscricao`)");
+		try (Etapa etapa = Metricas.etapa("indice inscricoes")) {
+			Common.executeUpdateStatement(conn, "CREATE INDEX `temp.index_tmp_insc_divida` ON `inscricao_divida` (`numero_inscricao`)");
+		}
 		Logger.info("Índice criado em {}", Common.formatDuration(System.nanoTime()-t0));
 	}
 
-	private void tabelaDivida(SQLiteConnection conn) throws SQLException {
+	private void tabelaDivida(SQLiteConnection conn, String tabela) throws SQLException {
 		long t0 = System.nanoTime();
 		Logger.info("Criando tabela temporária das dívidas");
-		Common.executeUpdateStatement(conn, """
-				create table temp.divida as
-				select
-					dev.*,
-					case when dev.tipo_pessoa = 'PESSOA JURÍDICA' then substr(dev.cpf_cnpj,1,8) else dev.cpf_cnpj end as cnpj_matriz
-				from temp.inscricao_divida div
-				join pgfn.pgfn_devedores dev
-				on div.numero_inscricao = dev.numero_inscricao""");
+		try (Etapa etapa = Metricas.etapa("divida")) {
+			Common.executeUpdateStatement(conn, "create table " + tabela + " as\n" + uniao("""
+					select
+					%s
+					from temp.inscricao_divida div
+					join pgfn.pgfn_devedores dev
+					on div.numero_inscricao = dev.numero_inscricao""".formatted(COLUNAS_DIVIDA), "union all"));
+			etapa.linhas(contaLinhas(conn, tabela));
+		}
 		Logger.info("Tabela criada em {}", Common.formatDuration(System.nanoTime()-t0));
 	}
 
-	private void indiceTabelaDivida(SQLiteConnection conn) throws SQLException {
+	//Alternativa às tabelas temporárias cnpj e inscricao_divida: as raízes de CNPJ da consulta e as inscrições em que elas
+	//aparecem ficam em conjuntos primitivos em memória, e a base da PGFN é lida duas vezes, sem junções nem índices temporários.
+	//As inscrições não são numéricas (ex.: FGSP201800123), por isso o segundo conjunto guarda os bytes do texto.
+	@SuppressWarnings("try")
+	private void tabelaDividaEmMemoria(SQLiteConnection conn, String consulta, String banco) throws SQLException {
+		long t0 = System.nanoTime();
+		Logger.info("Carregando em memória os CNPJs da consulta...");
+		ConjuntoLong raizes = new ConjuntoLong();
+		try (Etapa etapa = Metricas.etapa("cnpj")) {
+			leRaizesConsulta(conn, consulta, raizes::adiciona);
+		}
+		Logger.info("{} CNPJs carregados em {}", raizes.tamanho(), Common.formatDuration(System.nanoTime()-t0));
+
+		long t1 = System.nanoTime();
+		Logger.info("Selecionando inscrições da dívida em memória...");
+		ConjuntoBytes inscricoes = new ConjuntoBytes();
+		//Na base agrupada, a raiz já está gravada como inteiro
+		String colunaRaiz = this.esquemaPGFN.agrupado() ? "cnpj_basico" : "cpf_cnpj";
+		try (Etapa etapa = Metricas.etapa("inscricoes em memoria")) {
+			long lidas = 0;
+			for (String esquema : this.esquemasPGFN) {
+				try (Statement stmt = conn.createStatement();
+						ResultSet rs = stmt.executeQuery("select " + colunaRaiz + ", numero_inscricao from " + esquema + ".pgfn_devedores")) {
+					while (rs.next()) {
+						lidas++;
+						long raiz = this.esquemaPGFN.agrupado() ? rs.getLong(1) : cnpjBasico(rs.getBytes(1));
+						if (raiz >= 0 && raizes.contem(raiz)) {
+							byte[] inscricao = rs.getBytes(2);
+							if (inscricao != null) {
+								inscricoes.adiciona(inscricao);
+							}
+						}
+					}
+				}
+			}
+			etapa.linhas(lidas);
+		}
+		Logger.info("{} inscrições selecionadas em {}", inscricoes.tamanho(), Common.formatDuration(System.nanoTime()-t1));
+		Logger.info("Memória dos conjuntos: {} KiB", (raizes.bytes() + inscricoes.bytes()) / 1024);
+
+		tabelaDividaSelecionada(conn, banco, inscricoes::contem);
+	}
+
+	//Expansão da rede de devedores em mais de um salto. As ligações devedor ↔ inscrição de toda a base são lidas uma vez
+	//para um grafo em memória, percorrido em largura a partir das raízes da consulta; a tabela divida recebe todas as linhas
+	//das inscrições alcançadas. Com profundidade 1, o resultado é o mesmo da seleção por tabelas temporárias.
+	private void tabelaDividaPorRede(SQLiteConnection conn, String consulta, String banco, int profundidade) throws SQLException {
+		Rede rede = carregaRede(conn);
+		ConjuntoLong raizes = new ConjuntoLong();
+		leRaizesConsulta(conn, consulta, raizes::adiciona);
+		long[] alcancadas = expandeRede(rede, raizes, profundidade);
+		tabelaDividaSelecionada(conn, banco, inscricao -> {
+			int indice = rede.inscricoes().indice(inscricao);
+			return indice >= 0 && Grafo.contem(alcancadas, indice);
+		});
+	}
+
+	private Rede carregaRede(SQLiteConnection conn) throws SQLException {
+		long t0 = System.nanoTime();
+		Logger.info("Carregando o grafo de devedores e inscrições...");
+		ConjuntoBytes inscricoes = new ConjuntoBytes();
+		Grafo.Construtor construtor = new Grafo.Construtor();
+		String colunaRaiz = this.esquemaPGFN.agrupado() ? "cnpj_basico" : "cpf_cnpj";
+		Grafo grafo;
+		try (Etapa etapa = Metricas.etapa("rede")) {
+			long lidas = 0;
+			for (String esquema : this.esquemasPGFN) {
+				try (Statement stmt = conn.createStatement();
+						ResultSet rs = stmt.executeQuery("select " + colunaRaiz + ", numero_inscricao from " + esquema + ".pgfn_devedores")) {
+					while (rs.next()) {
+						lidas++;
+						//CPFs vêm mascarados na base da PGFN e não identificam o devedor; só as raízes de CNPJ ligam inscrições
+						long raiz = this.esquemaPGFN.agrupado() ? rs.getLong(1) : cnpjBasico(rs.getBytes(1));
+						byte[] inscricao = rs.getBytes(2);
+						if (raiz >= 0 && inscricao != null) {
+							construtor.adiciona((int) raiz, inscricoes.adicionaIndice(inscricao));
+						}
+					}
+				}
+			}
+			grafo = construtor.constroi();
+			etapa.linhas(lidas);
+		}
+		Logger.info("Grafo com {} devedores, {} inscrições e {} ligações carregado em {}", grafo.devedores(), grafo.inscricoes(), grafo.arestas(), Common.formatDuration(System.nanoTime()-t0));
+		Logger.info("Memória do grafo: {} KiB", (grafo.bytes() + inscricoes.bytes()) / 1024);
+		return new Rede(grafo, inscricoes);
+	}
+
+	//Mapa de bits das inscrições alcançadas a partir das raízes, indexado como o conjunto de inscrições da rede
+	private long[] expandeRede(Rede rede, ConjuntoLong raizes, int profundidade) {
+		long t0 = System.nanoTime();
+		Logger.info("Expandindo a rede até a profundidade {}...", profundidade);
+		int[] sementes = new int[raizes.tamanho()];
+		int quantidade = 0;
+		for (long raiz : raizes.elementos()) {
+			int devedor = rede.grafo().devedor((int) raiz);
+			if (devedor >= 0) {
+				sementes[quantidade++] = devedor;
+			}
+		}
+		Logger.info("{} CNPJs da consulta, {} com inscrições na dívida", raizes.tamanho(), quantidade);
+		long[] alcancadas;
+		try (Etapa etapa = Metricas.etapa("expansao")) {
+			alcancadas = rede.grafo().expande(Arrays.copyOf(sementes, quantidade), profundidade,
+					(n, novosDevedores, novasInscricoes) -> Logger.info("Profundidade {}: {} inscrições e {} devedores novos", n, novasInscricoes, novosDevedores));
+			etapa.linhas(quantidade);
+		}
+		Logger.info("Rede expandida em {}", Common.formatDuration(System.nanoTime()-t0));
+		return alcancadas;
+	}
+
+	private void leRaizesConsulta(SQLiteConnection conn, String consulta, LongConsumer destino) throws SQLException {
+		leCNPJsConsulta(conn, consulta, cnpjBasico -> {
+			long raiz = Esquema.cnpjBasico(cnpjBasico);
+			if (raiz >= 0) {
+				destino.accept(raiz);
+			}
+		});
+	}
+
+	//Nulo se outra execução removeu o arquivo do cache depois da busca, e a consulta é feita na base. Depois de aberto,
+	//o arquivo continua legível até o fim mesmo que seja removido.
+	private static BufferedReader abreCache(Path arquivo) throws IOException {
+		try {
+			return Files.newBufferedReader(arquivo, StandardCharsets.UTF_8);
+		} catch (NoSuchFileException e) {
+			Logger.info("Resultado {} removido do cache por outra execução", arquivo.getFileName());
+			return null;
+		}
+	}
+
+	//Com o cache habilitado, o resultado da consulta vem do cache ou é gravado nele à medida que é lido da base do CNPJ
+	private void leCNPJsConsulta(SQLiteConnection conn, String consulta, DestinoCNPJ destino) throws SQLException {
+		long t0 = System.nanoTime();
+		try {
+			String chave = this.cache == null ? null : CacheConsultas.chave(consulta, this.baseCNPJ);
+			Path arquivo = chave == null ? null : this.cache.busca(chave);
+			BufferedReader lido = arquivo == null ? null : abreCache(arquivo);
+			if (lido != null) {
+				long quantidade = 0;
+				long bytes = 0;
+				try (BufferedReader in = lido) {
+					String cnpjBasico;
+					while ((cnpjBasico = in.readLine()) != null) {
+						destino.aceita(cnpjBasico);
+						quantidade++;
+						bytes += cnpjBasico.length() + 1;
+					}
+				}
+				Metricas.linhas(quantidade);
+				Metricas.bytesLidos(bytes);
+				Logger.info("{} CNPJs lidos do cache da consulta em {}", quantidade, Common.formatDuration(System.nanoTime()-t0));
+				return;
+			}
+			Path temporario = chave == null ? null : this.cache.temporario(chave);
+			boolean gravado = false;
+			try {
+				try (BufferedWriter out = temporario == null ? null : Files.newBufferedWriter(temporario, StandardCharsets.UTF_8);
+						Statement stmt = conn.createStatement();
+						ResultSet rs = stmt.executeQuery("select cnpj_basico from (\n" + consulta.strip().replaceFirst(";+$", "") + "\n)")) {
+					long quantidade = 0;
+					while (rs.next()) {
+						String cnpjBasico = rs.getString(1);
+						if (cnpjBasico == null) {
+							continue;
+						}
+						destino.aceita(cnpjBasico);
+						quantidade++;
+						if (out != null) {
+							out.write(cnpjBasico);
+							out.write('\n');
+						}
+					}
+					Metricas.linhas(quantidade);
+				}
+				if (temporario != null) {
+					gravado = true;
+					if (this.cache.grava(temporario, chave)) {
+						Logger.info("Resultado da consulta gravado no cache");
+					} else {
+						Logger.warn("O resultado da consulta é maior que o limite do cache e não foi mantido");
+					}
+				}
+			} finally {
+				if (temporario != null && !gravado) {
+					Files.deleteIfExists(temporario);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	//A leitura fica dentro do SQLite: a função consulta a seleção em memória e só as linhas das inscrições selecionadas são gravadas
+	private void tabelaDividaSelecionada(SQLiteConnection conn, String banco, Predicate<byte[]> selecionada) throws SQLException {
+		long t0 = System.nanoTime();
+		Logger.info("Criando tabela das dívidas...");
+		Function.create(conn, "inscricao_selecionada", new Function() {
+			@Override
+			protected void xFunc() throws SQLException {
+				byte[] inscricao = value_blob(0);
+				result(inscricao != null && selecionada.test(inscricao) ? 1 : 0);
+			}
+		}, 1, Function.FLAG_DETERMINISTIC);
+		try (Etapa etapa = Metricas.etapa("divida")) {
+			Common.executeUpdateStatement(conn, "create table " + banco + ".divida as\n" + uniao("""
+					select
+					%s
+					from pgfn.pgfn_devedores dev
+					where inscricao_selecionada(dev.numero_inscricao)""".formatted(COLUNAS_DIVIDA), "union all"));
+			etapa.linhas(contaLinhas(conn, banco + ".divida"));
+			Logger.info("Tabela criada em {}", Common.formatDuration(System.nanoTime()-t0));
+		} finally {
+			Function.destroy(conn, "inscricao_selecionada");
+		}
+	}
+
+	private static long contaLinhas(SQLiteConnection conn, String tabela) throws SQLException {
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("select count(*) from " + tabela)) {
+			return rs.next() ? rs.getLong(1) : 0;
+		}
+	}
+
+	//Raiz do CNPJ a partir dos bytes do texto, sem criar uma String por linha
+	private static long cnpjBasico(byte[] cpfCnpj) {
+		if (cpfCnpj == null || cpfCnpj.length < 8) {
+			return -1;
+		}
+		long valor = 0;
+		for (int i = 0; i < 8; i++) {
+			byte c = cpfCnpj[i];
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			valor = valor * 10 + (c - '0');
+		}
+		return valor;
+	}
+
+	@SuppressWarnings("try")
+	private void indiceTabelaDivida(SQLiteConnection conn, String banco) throws SQLException {
 		long t0 = System.nanoTime();
 		Logger.info("Criando índices...");
-		Common.executeUpdateStatement(conn, "CREATE INDEX `temp.index_tmp_divida_cnpj` ON `divida` (`cnpj_matriz`)");
-		Common.executeUpdateStatement(conn, "CREATE INDEX `temp.index_tmp_divida_insc` ON `divida` (`numero_inscricao`)");
+		try (Etapa etapa = Metricas.etapa("indices divida")) {
+			Common.executeUpdateStatement(conn, "CREATE INDEX `" + banco + "`.`index_tmp_divida_cnpj` ON `divida` (`cnpj_matriz`)");
+			Common.executeUpdateStatement(conn, "CREATE INDEX `" + banco + "`.`index_tmp_divida_insc` ON `divida` (`numero_inscricao`)");
+		}
 		Logger.info("Índices criados em {}", Common.formatDuration(System.nanoTime()-t0));
 	}
 
-	private void exportaBaseDivida(SQLiteConnection conn, Path arquivo) throws SQLException {
+	private void exportaBaseDivida(SQLiteConnection conn, Destino destino) throws SQLException {
 		long t0 = System.nanoTime();
 		Logger.info("Exportando base da dívida...");
 		try (Statement stmt = conn.createStatement();
-				ResultSet rs = stmt.executeQuery("select * from temp.divida order by CPF_CNPJ, DATA_INSCRICAO, NUMERO_INSCRICAO");
-				BufferedWriter out = Files.newBufferedWriter(arquivo, Common.CHARSET);) {
-			CSVWriter writer = new CSVWriter(this.separador);
-			writer.write(rs, out, true);
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
+				ResultSet rs = stmt.executeQuery("select * from temp.divida order by CPF_CNPJ, DATA_INSCRICAO, NUMERO_INSCRICAO")) {
+			destino.grava(rs);
 		}
 		Logger.info("Base exportada em {}", Common.formatDuration(System.nanoTime()-t0));
 	}
 
-	private void exportaCadastroCNPJ(SQLiteConnection conn, Path arquivo) throws SQLException {
+	private void exportaCadastroCNPJ(SQLiteConnection conn, Destino destino) throws SQLException {
 		long t0 = System.nanoTime();
 		Logger.info("Exportando base de cadastro CNPJ...");
 		try (Statement stmt = conn.createStatement();
@@ -230,17 +1015,13 @@ public final class FiltraDivida implements Callable<Integer> {
 						left outer join pais pais
 							on est.pais = pais.codigo
 						where emp.cnpj_basico in (select distinct cnpj_matriz from temp.divida where tipo_pessoa = 'PESSOA JURÍDICA')
-						order by est.cnpj""");
-				BufferedWriter out = Files.newBufferedWriter(arquivo, Common.CHARSET);) {
-			CSVWriter writer = new CSVWriter(this.separador);
-			writer.write(rs, out, true);
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
+						order by est.cnpj""")) {
+			destino.grava(rs);
 		}
 		Logger.info("Base exportada em {}", Common.formatDuration(System.nanoTime()-t0));
 	}
 
-	private void exportaCadastroSocios(SQLiteConnection conn, Path arquivo) throws SQLException {
+	private void exportaCadastroSocios(SQLiteConnection conn, Destino destino) throws SQLException {
 		long t0 = System.nanoTime();
 		Logger.info("Exportando cadastro de sócios...");
 		try (Statement stmt = conn.createStatement();
@@ -270,17 +1051,17 @@ public final class FiltraDivida implements Callable<Integer> {
 							left outer join qualificacao_socio qs
 								on soc.qualificacao_socio = qs.codigo
 						where est.cnpj_basico in (select distinct cnpj_matriz from temp.divida)
-						order by soc.cnpj, soc.identificador_de_socio""");
-				BufferedWriter out = Files.newBufferedWriter(arquivo, Common.CHARSET);) {
-			CSVWriter writer = new CSVWriter(this.separador);
-			writer.write(rs, out, true);
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
+						order by soc.cnpj, soc.identificador_de_socio""")) {
+			destino.grava(rs);
 		}
 		Logger.info("Cadastro exportado em {}", Common.formatDuration(System.nanoTime()-t0));
 	}
 
-	private void exportaTabelaCorresponsaveis(SQLiteConnection conn, Path arquivo) throws SQLException {
+	private void exportaTabelaCorresponsaveis(SQLiteConnection conn, Destino destino) throws SQLException {
+		if (this.basePGFNCorresponsaveis != null) {
+			exportaTabelaCorresponsaveisPreCalculada(conn, destino);
+			return;
+		}
 		long t0 = System.nanoTime();
 		Logger.info("Exportando tabela de corresponsaveis...");
 		try (Statement stmt = conn.createStatement();
@@ -298,12 +1079,24 @@ public final class FiltraDivida implements Callable<Integer> {
 							on p.cnpj_matriz = t.cnpj_matriz
 						where p.tipo_devedor = 'PRINCIPAL' and s.tipo_devedor <> 'PRINCIPAL'
 						group by p.cnpj_matriz, p.nome_devedor, s.cnpj_matriz, s.nome_devedor
-						order by divida_devedor_principal desc, valor_corresponsabilidade desc, cpf_cnpj_secundario""");
-				BufferedWriter out = Files.newBufferedWriter(arquivo, Common.CHARSET);) {
-			CSVWriter writer = new CSVWriter(this.separador);
-			writer.write(rs, out, true);
-		} catch (IOException e) {
-			throw new UncheckedIOException(e);
+						order by divida_devedor_principal desc, valor_corresponsabilidade desc, cpf_cnpj_secundario""")) {
+			destino.grava(rs);
+		}
+		Logger.info("Tabela exportada em {}", Common.formatDuration(System.nanoTime()-t0));
+	}
+
+	//Busca pelo índice de pgfn_corresponsaveis os pares dos devedores principais da extração. Os valores abrangem toda a base da PGFN,
+	//inclusive inscrições do principal que não estão na tabela divida.
+	private void exportaTabelaCorresponsaveisPreCalculada(SQLiteConnection conn, Destino destino) throws SQLException {
+		long t0 = System.nanoTime();
+		Logger.info("Exportando tabela de corresponsaveis (pré-calculada na base da PGFN)...");
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("""
+						select cpf_cnpj_principal, nome_devedor_principal, cpf_cnpj_secundario, nome_devedor_secundario, valor_corresponsabilidade, divida_devedor_principal
+						from pgfn.%s
+						where cpf_cnpj_principal in (select distinct cnpj_matriz from temp.divida where tipo_devedor = 'PRINCIPAL')
+						order by divida_devedor_principal desc, valor_corresponsabilidade desc, cpf_cnpj_secundario""".formatted(Corresponsaveis.TABELA))) {
+			destino.grava(rs);
 		}
 		Logger.info("Tabela exportada em {}", Common.formatDuration(System.nanoTime()-t0));
 	}
@@ -0,0 +1,101 @@
+package com.ric.dividapgfn;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.tinylog.Logger;
+
+import com.ric.dividapgfn.geracao.GeradorCNPJ;
+import com.ric.dividapgfn.geracao.GeradorPGFN;
+import com.ric.dividapgfn.geracao.Populacao;
+import com.ric.dividapgfn.util.Common;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+//Dados sintéticos para testes e benchmarks: os arquivos da PGFN em <dir>/entrada, prontos para o base_pgfn, e uma base no
+//formato do cnpj-sqlite com as mesmas empresas, pronta para o filtro. A mesma semente gera sempre os mesmos arquivos,
+//qualquer que seja a quantidade de threads.
+@Command(name = "gera_dados", description = "Gera arquivos da PGFN e base do CNPJ sintéticos, determinados pela semente, para testes e benchmarks")
+public final class GeraDados implements Callable<Integer> {
+	private static final long MAX_LINHAS = 100_000_000L;
+
+	@Option(names = { "-d", "--dir" }, required = true, description = "Diretório base; os arquivos da PGFN são gravados em <dir>/entrada")
+	private Path dirBase;
+
+	@Option(names = { "-b", "--basecnpj" }, description = "Arquivo sqlite da base do CNPJ a ser criado (padrão=<dir>/cnpj.db)")
+	private Path baseCNPJ;
+
+	@Option(names = { "-n", "--linhas" }, description = "Quantidade total de linhas dos arquivos da PGFN, divididas entre os sistemas e as UFs, até 100 milhões (padrão=${DEFAULT-VALUE})")
+	private long linhas = 1_000_000;
+
+	@Option(names = { "-e", "--empresas" }, description = "Quantidade de empresas da base do CNPJ e de pessoas físicas devedoras (padrão=um quarto das linhas)")
+	private int empresas;
+
+	@Option(names = { "-s", "--semente" }, description = "Semente dos dados gerados (padrão=${DEFAULT-VALUE})")
+	private long semente = 42;
+
+	@Option(names = { "-t", "--threads" }, description = "Quantidade de threads de geração (padrão=quantidade de processadores)")
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	@Option(names = { "--sem-cnpj" }, description = "Gera apenas os arquivos da PGFN")
+	private boolean semCNPJ;
+
+	@Override
+	public Integer call() {
+		if (this.linhas < 1 || this.linhas > MAX_LINHAS) {
+			Logger.error("A quantidade de linhas deve estar entre 1 e {}", MAX_LINHAS);
+			return CommandLine.ExitCode.USAGE;
+		}
+		int quantidadeEmpresas = this.empresas > 0 ? this.empresas : (int) Math.max(1000, this.linhas / 4);
+		if (quantidadeEmpresas > MAX_LINHAS) {
+			Logger.error("A quantidade de empresas deve ser no máximo {}", MAX_LINHAS);
+			return CommandLine.ExitCode.USAGE;
+		}
+		if (this.threads < 1) {
+			Logger.error("A quantidade de threads deve ser positiva");
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		long t0 = System.nanoTime();
+		Populacao populacao = new Populacao(quantidadeEmpresas, quantidadeEmpresas, this.semente);
+		Path dirEntrada = this.dirBase.resolve("entrada");
+		Path arquivoCNPJ = this.baseCNPJ != null ? this.baseCNPJ : this.dirBase.resolve("cnpj.db");
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		try {
+			long t1 = System.nanoTime();
+			Logger.info("Gerando {} linhas da PGFN com {} empresas e semente {}...", this.linhas, quantidadeEmpresas, this.semente);
+			long bytes = new GeradorPGFN(populacao).gera(dirEntrada, this.linhas, executor, this.threads);
+			long duracao = System.nanoTime() - t1;
+			Logger.info("Arquivos da PGFN gerados em {} ({} MB, {} linhas/s)", Common.formatDuration(duracao), bytes >> 20,
+					this.linhas * 1_000_000_000L / Math.max(1, duracao));
+
+			if (!this.semCNPJ) {
+				t1 = System.nanoTime();
+				Logger.info("Gerando base do CNPJ em {}...", arquivoCNPJ);
+				Files.createDirectories(arquivoCNPJ.toAbsolutePath().getParent());
+				long estabelecimentos = new GeradorCNPJ(populacao).gera(arquivoCNPJ, executor, this.threads);
+				Logger.info("Base do CNPJ gerada com {} empresas e {} estabelecimentos em {}", quantidadeEmpresas, estabelecimentos,
+						Common.formatDuration(System.nanoTime() - t1));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (SQLException e) {
+			Logger.error("Erro SQL: {}", e.getLocalizedMessage());
+			return CommandLine.ExitCode.SOFTWARE;
+		} finally {
+			executor.shutdownNow();
+		}
+
+		Logger.info("Programa executado em {}", Common.formatDuration(System.nanoTime()-t0));
+
+		return CommandLine.ExitCode.OK;
+	}
+}
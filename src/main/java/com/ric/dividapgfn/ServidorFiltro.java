@@ -0,0 +1,378 @@
+package com.ric.dividapgfn;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.sqlite.SQLiteConnection;
+import org.tinylog.Logger;
+
+import com.ric.dividapgfn.carga.Esquema;
+import com.ric.dividapgfn.carga.Fragmentos;
+import com.ric.dividapgfn.csv.CSVWriter;
+import com.ric.dividapgfn.indice.IndiceCNPJ;
+import com.ric.dividapgfn.indice.LeitorIndiceCNPJ;
+import com.ric.dividapgfn.util.CacheConsultas;
+import com.ric.dividapgfn.util.Common;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+//Servidor HTTP que mantém abertas as conexões com a base do CNPJ e a base da PGFN anexada, evitando a abertura das bases
+//e o cache frio a cada filtro. Cada requisição recebe a consulta SQL no corpo, reserva uma das conexões, monta as
+//tabelas temporárias como o filtro e devolve um dos arquivos de análise em CSV, enviado em partes à medida que é gerado.
+//Se a base foi criada com --indice, as inscrições de um CNPJ são consultadas no índice de CNPJ, sem ocupar uma conexão.
+@Command(name = "servidor", description = "Mantém as bases abertas e atende filtros por HTTP, devolvendo os arquivos de análise em CSV")
+public final class ServidorFiltro implements Callable<Integer> {
+	@Option(names = { "-d", "--dir" }, required = true, description = "Diretório base")
+	private Path dirBase;
+
+	@Option(names = { "-b", "--basecnpj" }, required = true, description = "Arquivo sqlite com a base do CNPJ")
+	private Path baseCNPJ;
+
+	@Option(names = { "-s", "--separador" }, description = "Separador a ser utilizado nos arquivos CSV exportados (padrão=${DEFAULT-VALUE})" )
+	private char separador = ';';
+
+	@Option(names = { "-e", "--endereco" }, description = "Endereço em que o servidor atende (padrão=${DEFAULT-VALUE})")
+	private String endereco = "127.0.0.1";
+
+	@Option(names = { "-p", "--porta" }, description = "Porta HTTP (padrão=${DEFAULT-VALUE})")
+	private int porta = 8080;
+
+	@Option(names = { "-n", "--conexoes" }, description = "Conexões mantidas abertas, que limitam os filtros executados ao mesmo tempo (padrão=número de processadores)")
+	private int conexoes = Runtime.getRuntime().availableProcessors();
+
+	@Option(names = { "-f", "--fila" }, description = "Requisições que podem aguardar uma conexão livre; as demais são recusadas (padrão=${DEFAULT-VALUE})")
+	private int fila = 64;
+
+	@Option(names = { "-l", "--tempo-limite" }, description = "Tempo máximo de cada requisição, em segundos, incluindo a espera por uma conexão (padrão=${DEFAULT-VALUE})")
+	private int tempoLimite = 300;
+
+	@Option(names = { "--cache-conexao" }, description = "Cache de páginas do SQLite em cada conexão, em MiB (padrão=${DEFAULT-VALUE})")
+	private int cacheConexao = 64;
+
+	@Option(names = { "--sem-cache" }, description = "Executa as consultas na base do CNPJ sem usar nem gravar o cache de resultados")
+	private boolean semCache;
+
+	@Option(names = { "--limite-cache" }, description = "Tamanho máximo do cache de resultados das consultas, em MiB (padrão=${DEFAULT-VALUE})")
+	private long limiteCache = 1024;
+
+	private record Sessao(FiltraDivida filtro, SQLiteConnection conn) { }
+
+	//Falha depois do início do envio do CSV
+	private static final class RespostaInterrompida extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		RespostaInterrompida(String mensagem) {
+			super(mensagem);
+		}
+	}
+
+	private BlockingQueue<Sessao> sessoes;
+	private Semaphore espera;
+	private ScheduledExecutorService temporizador;
+	private LeitorIndiceCNPJ indice;
+
+	@Override
+	public Integer call() {
+		List<Path> basesPGFN = FiltraDivida.basesPGFN(this.dirBase);
+		if (basesPGFN.isEmpty()) {
+			Logger.error("Erro: arquivo {} não encontrado.", this.dirBase.resolve("entrada").resolve("pgfn.sqlite").toAbsolutePath());
+			return CommandLine.ExitCode.USAGE;
+		}
+		if (basesPGFN.size() > Fragmentos.MAX_ANEXADOS) {
+			Logger.error("Erro: {} bases fragmentadas, acima do máximo de {}; unifique a base com --unifica.", basesPGFN.size(), Fragmentos.MAX_ANEXADOS);
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		if (Files.notExists(this.baseCNPJ)) {
+			Logger.error("Erro: arquivo {} não encontrado.", this.baseCNPJ.toAbsolutePath());
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		if (this.conexoes < 1 || this.fila < 0 || this.tempoLimite < 1) {
+			Logger.error("Erro: conexões e tempo limite devem ser positivos, e a fila não pode ser negativa.");
+			return CommandLine.ExitCode.USAGE;
+		}
+
+		CacheConsultas cache = this.semCache ? null : new CacheConsultas(this.dirBase.resolve("cache"), this.limiteCache * 1024 * 1024);
+		this.sessoes = new ArrayBlockingQueue<>(this.conexoes);
+		this.espera = new Semaphore(this.conexoes + this.fila);
+		HttpServer servidor;
+		try {
+			long t0 = System.nanoTime();
+			Logger.info("Abrindo {} conexões...", this.conexoes);
+			for (int i = 0; i < this.conexoes; i++) {
+				FiltraDivida filtro = FiltraDivida.sessao(this.dirBase, this.baseCNPJ, this.separador, cache);
+				this.sessoes.add(new Sessao(filtro, filtro.conectaSessao(basesPGFN, this.cacheConexao * 1024)));
+			}
+			Logger.info("Conexões abertas em {}", Common.formatDuration(System.nanoTime()-t0));
+			Path arquivoIndice = IndiceCNPJ.arquivo(this.dirBase.resolve("entrada").resolve("pgfn.sqlite"));
+			if (Files.exists(arquivoIndice)) {
+				this.indice = LeitorIndiceCNPJ.abre(arquivoIndice);
+				Logger.info("Índice de CNPJ com {} raízes e {} inscrições", this.indice.raizes(), this.indice.registros());
+			}
+			servidor = HttpServer.create(new InetSocketAddress(this.endereco, this.porta), 0);
+		} catch (SQLException e) {
+			Logger.error("Erro SQL: {}", e.getLocalizedMessage());
+			return CommandLine.ExitCode.SOFTWARE;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		//As conexões é que limitam a concorrência; as threads das requisições passam a maior parte do tempo esperando por
+		//uma conexão livre ou pelo SQLite
+		ExecutorService executor = Executors.newCachedThreadPool();
+		this.temporizador = Executors.newSingleThreadScheduledExecutor();
+		servidor.setExecutor(executor);
+		servidor.createContext("/filtro/", this::filtro);
+		servidor.createContext("/status", this::status);
+		servidor.createContext("/devedor/", this::devedor);
+		CountDownLatch encerramento = new CountDownLatch(1);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			Logger.info("Encerrando servidor...");
+			servidor.stop(1);
+			executor.shutdownNow();
+			this.temporizador.shutdownNow();
+			for (Sessao sessao : this.sessoes) {
+				try {
+					sessao.conn().close();
+				} catch (SQLException e) {
+					Logger.warn("Erro ao fechar conexão: {}", e.getLocalizedMessage());
+				}
+			}
+			encerramento.countDown();
+		}));
+		servidor.start();
+		Logger.info("Servidor atendendo em http://{}:{}/filtro/<arquivo>, arquivos: divida, cnpj, socios, corresponsaveis", this.endereco, this.porta);
+
+		try {
+			encerramento.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return CommandLine.ExitCode.OK;
+	}
+
+	//Uma resposta interrompida não é fechada: o HttpServer fecha a conexão sem a parte final do envio em partes, e o
+	//cliente percebe que o arquivo está incompleto
+	private void filtro(HttpExchange exchange) throws IOException {
+		boolean interrompida = false;
+		try {
+			atende(exchange);
+		} catch (RespostaInterrompida e) {
+			interrompida = true;
+			throw e;
+		} finally {
+			if (!interrompida) {
+				exchange.close();
+			}
+		}
+	}
+
+	//POST /filtro/<arquivo>?profundidade=<n>, com a consulta SQL na base do CNPJ no corpo da requisição
+	private void atende(HttpExchange exchange) throws IOException {
+		long t0 = System.nanoTime();
+		long prazo = t0 + TimeUnit.SECONDS.toNanos(this.tempoLimite);
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			responde(exchange, 405, "Use POST, com a consulta SQL no corpo da requisição.");
+			return;
+		}
+		String nome = exchange.getRequestURI().getPath().substring("/filtro/".length());
+		String arquivo = nome + ".csv";
+		if (!FiltraDivida.exportacaoValida(arquivo)) {
+			responde(exchange, 404, "Arquivo desconhecido: " + nome);
+			return;
+		}
+		int profundidade;
+		try {
+			profundidade = Integer.parseInt(parametros(exchange).getOrDefault("profundidade", "1"));
+		} catch (NumberFormatException e) {
+			profundidade = 0;
+		}
+		if (profundidade < 1) {
+			responde(exchange, 400, "A profundidade deve ser um número inteiro de pelo menos 1.");
+			return;
+		}
+		String consulta = new String(exchange.getRequestBody().readAllBytes(), Common.CHARSET);
+		if (consulta.isBlank()) {
+			responde(exchange, 400, "Consulta SQL vazia.");
+			return;
+		}
+
+		if (!this.espera.tryAcquire()) {
+			responde(exchange, 503, "Servidor ocupado: limite de requisições em espera atingido.");
+			return;
+		}
+		try {
+			Sessao sessao;
+			try {
+				sessao = this.sessoes.poll(prazo - System.nanoTime(), TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (sessao == null) {
+				responde(exchange, 503, "Nenhuma conexão livre dentro do tempo limite.");
+				return;
+			}
+			try {
+				executa(exchange, sessao, consulta, arquivo, profundidade, prazo);
+			} finally {
+				this.sessoes.add(sessao);
+			}
+		} finally {
+			this.espera.release();
+		}
+		Logger.info("{} {} atendido em {}", exchange.getRequestMethod(), exchange.getRequestURI(), Common.formatDuration(System.nanoTime()-t0));
+	}
+
+	//Ao fim do prazo, o SQLite é interrompido e a instrução em andamento falha
+	private void executa(HttpExchange exchange, Sessao sessao, String consulta, String arquivo, int profundidade, long prazo) throws IOException {
+		AtomicBoolean expirou = new AtomicBoolean();
+		ScheduledFuture<?> alarme = this.temporizador.schedule(() -> {
+			expirou.set(true);
+			try {
+				sessao.conn().getDatabase().interrupt();
+			} catch (SQLException e) {
+				Logger.warn("Erro ao interromper consulta: {}", e.getLocalizedMessage());
+			}
+		}, prazo - System.nanoTime(), TimeUnit.NANOSECONDS);
+		boolean enviando = false;
+		try {
+			sessao.filtro().selecionaDividas(sessao.conn(), consulta, profundidade);
+			exchange.getResponseHeaders().set("Content-Type", "text/csv; charset=" + Common.CHARSET.name());
+			exchange.getResponseHeaders().set("Content-Disposition", "attachment; filename=\"" + arquivo + "\"");
+			exchange.sendResponseHeaders(200, 0);
+			enviando = true;
+			//Sem try-with-resources: fechar a saída após uma falha enviaria a parte final e daria a resposta por completa
+			Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), Common.CHARSET), 64 * 1024);
+			sessao.filtro().exportaCSV(sessao.conn(), arquivo, out);
+			out.close();
+		} catch (SQLException e) {
+			String mensagem = expirou.get() ? "Tempo limite esgotado." : "Erro SQL: " + e.getLocalizedMessage();
+			Logger.warn("{} {}: {}", exchange.getRequestMethod(), exchange.getRequestURI(), mensagem);
+			if (enviando) {
+				throw new RespostaInterrompida(mensagem);
+			}
+			responde(exchange, expirou.get() ? 504 : 400, mensagem);
+		} catch (UncheckedIOException e) {
+			//Cliente desconectado durante o envio, ou falha de E/S na seleção (por exemplo, ao ler ou gravar o cache)
+			String mensagem = "Erro de E/S: " + e.getCause().getLocalizedMessage();
+			Logger.warn("{} {}: {}", exchange.getRequestMethod(), exchange.getRequestURI(), mensagem);
+			if (enviando) {
+				throw new RespostaInterrompida(mensagem);
+			}
+			responde(exchange, 500, mensagem);
+		} finally {
+			alarme.cancel(false);
+			restaura(sessao);
+		}
+	}
+
+	//Descarta as tabelas temporárias da requisição
+	private static void restaura(Sessao sessao) {
+		try {
+			sessao.conn().rollback();
+		} catch (SQLException e) {
+			Logger.warn("Erro ao restaurar conexão: {}", e.getLocalizedMessage());
+		}
+	}
+
+	//GET /devedor/<cnpj>: inscrições da raiz do CNPJ, com 8 ou mais dígitos, em CSV; sem inscrições, só o cabeçalho
+	private void devedor(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (this.indice == null) {
+				responde(exchange, 404, "Índice de CNPJ não encontrado; crie a base com a opção --indice.");
+				return;
+			}
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				responde(exchange, 405, "Use GET.");
+				return;
+			}
+			String cnpj = exchange.getRequestURI().getPath().substring("/devedor/".length());
+			long raiz = cnpj.chars().allMatch(c -> c >= '0' && c <= '9') ? Esquema.cnpjBasico(cnpj) : -1;
+			if (raiz < 0) {
+				responde(exchange, 400, "Informe o CNPJ ou a sua raiz, com pelo menos 8 dígitos.");
+				return;
+			}
+
+			String separador = String.valueOf(this.separador);
+			StringBuilder csv = new StringBuilder(String.join(separador, "cnpj_basico", "numero_inscricao", "tipo_devedor", "situacao_inscricao", "valor_consolidado")).append('\n');
+			int posicao = this.indice.busca((int) raiz);
+			if (posicao >= 0) {
+				String raizTexto = cnpj.substring(0, 8);
+				for (int registro = this.indice.inicio(posicao); registro < this.indice.fim(posicao); registro++) {
+					csv.append(raizTexto).append(separador)
+							.append(this.indice.numeroInscricao(registro)).append(separador)
+							.append(this.indice.tipoDevedor(registro)).append(separador)
+							.append(this.indice.situacao(registro)).append(separador)
+							.append(CSVWriter.formatCentavos(this.indice.centavos(registro))).append('\n');
+				}
+			}
+			byte[] corpo = csv.toString().getBytes(Common.CHARSET);
+			exchange.getResponseHeaders().set("Content-Type", "text/csv; charset=" + Common.CHARSET.name());
+			exchange.sendResponseHeaders(200, corpo.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(corpo);
+			}
+		}
+	}
+
+	private void status(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			int livres = this.sessoes.size();
+			int aguardando = Math.max(0, this.conexoes + this.fila - this.espera.availablePermits() - (this.conexoes - livres));
+			responde(exchange, 200, "conexoes_livres=" + livres + "\nconexoes=" + this.conexoes + "\naguardando=" + aguardando + "\n");
+		}
+	}
+
+	private static Map<String,String> parametros(HttpExchange exchange) {
+		Map<String,String> parametros = new HashMap<>();
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query != null) {
+			for (String parametro : query.split("&")) {
+				int igual = parametro.indexOf('=');
+				if (igual > 0) {
+					parametros.put(URLDecoder.decode(parametro.substring(0, igual), StandardCharsets.UTF_8), URLDecoder.decode(parametro.substring(igual + 1), StandardCharsets.UTF_8));
+				}
+			}
+		}
+		return parametros;
+	}
+
+	private static void responde(HttpExchange exchange, int status, String mensagem) throws IOException {
+		byte[] corpo = (mensagem + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+		exchange.sendResponseHeaders(status, corpo.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(corpo);
+		}
+	}
+}
@@ -0,0 +1,379 @@
+package com.ric.dividapgfn;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
+import org.tinylog.Logger;
+
+import com.ric.dividapgfn.carga.Esquema;
+import com.ric.dividapgfn.csv.CSVWriter;
+import com.ric.dividapgfn.indice.FiltroBloom;
+import com.ric.dividapgfn.metricas.Etapa;
+import com.ric.dividapgfn.metricas.Metricas;
+import com.ric.dividapgfn.util.Common;
+
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+//Triagem de uma lista de CNPJs contra a base da PGFN, sem carregar a lista em uma base. O arquivo de entrada é dividido
+//em trechos lidos em paralelo; cada thread descarta pelo filtro de Bloom das raízes (pgfn_cnpj.bloom) os CNPJs que
+//certamente não têm inscrições e confirma os demais na base, em lotes, pela sua própria conexão somente leitura.
+//Os devedores são gravados no CSV de saída à medida que cada lote é confirmado, sem manter a ordem da entrada.
+@Command(name = "triagem", description = "Verifica quais CNPJs de uma lista têm inscrições na base da PGFN, com o total da dívida de cada raiz")
+public final class TriagemCNPJ implements Callable<Integer> {
+	@Option(names = { "-d", "--dir" }, required = true, description = "Diretório base")
+	private Path dirBase;
+
+	@Option(names = { "-e", "--entrada" }, required = true, description = "Arquivo com os CNPJs, um por linha, na primeira coluna: 14 dígitos ou a raiz com 8, com ou sem pontuação; as demais linhas são ignoradas")
+	private Path entrada;
+
+	@Option(names = { "-o", "--saida" }, description = "Arquivo CSV com os devedores encontrados (padrão=<dir>/saida/triagem.csv)")
+	private Path saida;
+
+	@Option(names = { "-s", "--separador" }, description = "Separador das colunas da entrada e do CSV de saída (padrão=${DEFAULT-VALUE})")
+	private char separador = ';';
+
+	@Option(names = { "-t", "--threads" }, description = "Número de threads de leitura e confirmação (padrão=número de processadores)")
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	@Option(names = { "-l", "--lote" }, description = "Quantidade de CNPJs candidatos confirmados na base por consulta (padrão=${DEFAULT-VALUE})")
+	private int lote = 500;
+
+	@Option(names = { "--falsos-positivos" }, description = "Taxa de falsos positivos do filtro de Bloom, usada quando o filtro é criado (padrão=${DEFAULT-VALUE})")
+	private double falsosPositivos = 0.01;
+
+	@Option(names = { "--relatorio" }, description = "Grava em um arquivo JSON as métricas de cada etapa da triagem")
+	private Path relatorio;
+
+	private static final int TAMANHO_BUFFER = 1 << 20;
+	//A raiz com 8 dígitos é aceita como CNPJ; na saída, ela é repetida na coluna cnpj
+	private static final int DIGITOS_CNPJ = 14;
+	private static final int DIGITOS_RAIZ = 8;
+
+	private record Contagem(long linhas, long ignoradas, long descartadas, long candidatos, long devedores) {
+		Contagem soma(Contagem outra) {
+			return new Contagem(this.linhas + outra.linhas, this.ignoradas + outra.ignoradas, this.descartadas + outra.descartadas,
+					this.candidatos + outra.candidatos, this.devedores + outra.devedores);
+		}
+	}
+
+	private FiltroBloom filtro;
+	private Esquema esquema;
+
+	@Override
+	public Integer call() {
+		long t0 = System.nanoTime();
+		Metricas.inicia("triagem");
+
+		Path base = this.dirBase.resolve("entrada").resolve("pgfn.sqlite");
+		if (Files.notExists(base)) {
+			Logger.error("Erro: arquivo {} não encontrado; com bases fragmentadas, a triagem requer a base unificada (--unifica).", base.toAbsolutePath());
+			return CommandLine.ExitCode.USAGE;
+		}
+		if (Files.notExists(this.entrada)) {
+			Logger.error("Erro: arquivo {} não encontrado.", this.entrada.toAbsolutePath());
+			return CommandLine.ExitCode.USAGE;
+		}
+		if (this.threads < 1 || this.lote < 1) {
+			Logger.error("Erro: a quantidade de threads e o tamanho do lote devem ser positivos.");
+			return CommandLine.ExitCode.USAGE;
+		}
+		if (!(this.falsosPositivos > 0 && this.falsosPositivos < 1)) {
+			Logger.error("Erro: a taxa de falsos positivos deve estar entre 0 e 1.");
+			return CommandLine.ExitCode.USAGE;
+		}
+		Path arquivoSaida = this.saida != null ? this.saida : this.dirBase.resolve("saida").resolve("triagem.csv");
+
+		try {
+			try (SQLiteConnection conn = conecta(base)) {
+				this.esquema = Esquema.da(conn);
+				carregaFiltro(conn, base);
+			}
+
+			long t1 = System.nanoTime();
+			Logger.info("Triando {} em {} threads...", this.entrada.toAbsolutePath(), this.threads);
+			Contagem contagem;
+			try (Etapa etapa = Metricas.etapa("triagem")) {
+				Files.createDirectories(arquivoSaida.toAbsolutePath().getParent());
+				try (BufferedWriter out = Files.newBufferedWriter(arquivoSaida, Common.CHARSET)) {
+					out.write(String.join(String.valueOf(this.separador), "cnpj", "cnpj_basico", "inscricoes", "valor_consolidado"));
+					out.write('\n');
+					contagem = triaEmParalelo(base, out);
+				}
+				etapa.linhas(contagem.linhas()).bytesLidos(Files.size(this.entrada)).bytesGravados(Files.size(arquivoSaida));
+			}
+			Logger.info("{} CNPJs lidos ({} linhas ignoradas), {} descartados pelo filtro, {} confirmados na base em {}",
+					contagem.linhas(), contagem.ignoradas(), contagem.descartadas(), contagem.candidatos(), Common.formatDuration(System.nanoTime()-t1));
+			Logger.info("{} devedores gravados em {} ({} falsos positivos do filtro)", contagem.devedores(), arquivoSaida.toAbsolutePath(),
+					contagem.candidatos() - contagem.devedores());
+
+			if (this.relatorio != null) {
+				Metricas.gravaRelatorio(this.relatorio);
+			}
+		} catch (SQLException e) {
+			Logger.error("Erro SQL: {}", e.getLocalizedMessage());
+			return CommandLine.ExitCode.SOFTWARE;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		Logger.info("Programa executado em {}", Common.formatDuration(System.nanoTime()-t0));
+
+		return CommandLine.ExitCode.OK;
+	}
+
+	//O filtro gravado é reaproveitado enquanto a base não muda; senão, é recriado a partir do índice das raízes
+	private void carregaFiltro(SQLiteConnection conn, Path base) throws SQLException, IOException {
+		long t0 = System.nanoTime();
+		try (Etapa etapa = Metricas.etapa("filtro bloom")) {
+			this.filtro = FiltroBloom.carrega(base);
+			if (this.filtro != null) {
+				etapa.bytesLidos(this.filtro.bytes());
+				Logger.info("Filtro de Bloom carregado com {} raízes em {}", this.filtro.chaves(), Common.formatDuration(System.nanoTime()-t0));
+				return;
+			}
+			Logger.info("Criando filtro de Bloom em {}...", FiltroBloom.arquivo(base));
+			this.filtro = FiltroBloom.cria(conn, base, this.falsosPositivos);
+			etapa.linhas(this.filtro.chaves()).bytesGravados(this.filtro.bytes());
+		}
+		Logger.info("Filtro de Bloom criado com {} raízes ({} KiB) em {}", this.filtro.chaves(), this.filtro.bytes() / 1024,
+				Common.formatDuration(System.nanoTime()-t0));
+	}
+
+	//Cada thread lê as linhas que começam no seu trecho do arquivo; a última linha de um trecho pode terminar no seguinte
+	private Contagem triaEmParalelo(Path base, Writer out) throws SQLException, IOException {
+		long tamanho = Files.size(this.entrada);
+		int trechos = (int) Math.max(1, Math.min(this.threads, tamanho / TAMANHO_BUFFER + 1));
+		ExecutorService executor = Executors.newFixedThreadPool(trechos);
+		try {
+			List<Future<Contagem>> tarefas = new ArrayList<>();
+			for (int i = 0; i < trechos; i++) {
+				long inicio = tamanho * i / trechos;
+				long fim = tamanho * (i + 1) / trechos;
+				tarefas.add(executor.submit(() -> {
+					try (SQLiteConnection conn = conecta(base)) {
+						return new Trecho(conn, out).le(inicio, fim);
+					}
+				}));
+			}
+			Contagem contagem = new Contagem(0, 0, 0, 0, 0);
+			for (Future<Contagem> tarefa : tarefas) {
+				contagem = contagem.soma(tarefa.get());
+			}
+			return contagem;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SQLException sqlException) {
+				throw sqlException;
+			} else if (e.getCause() instanceof IOException ioException) {
+				throw ioException;
+			} else if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static SQLiteConnection conecta(Path base) throws SQLException {
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+		return DriverManager
+				.getConnection("jdbc:sqlite:file:///" + base.toAbsolutePath() + "?mode=ro", config.toProperties())
+				.unwrap(SQLiteConnection.class);
+	}
+
+	//Leitura de um trecho da entrada. A primeira coluna de cada linha é convertida em número byte a byte, sem criar
+	//Strings, e testada no filtro; só os candidatos são guardados para a confirmação do lote.
+	private final class Trecho {
+		private final Writer out;
+		private final PreparedStatement stmt;
+		private final long[] cnpjs = new long[TriagemCNPJ.this.lote];
+		private final boolean[] raizes = new boolean[TriagemCNPJ.this.lote];
+		private int candidatos;
+		private long linhas;
+		private long ignoradas;
+		private long descartadas;
+		private long confirmados;
+		private long devedores;
+
+		Trecho(SQLiteConnection conn, Writer out) throws SQLException {
+			this.out = out;
+			//No esquema agrupado, a raiz é a chave da tabela; nos demais, é usado o índice sobre substr(cpf_cnpj,1,8).
+			//O filtro inclui tudo que parece uma raiz, e a confirmação considera apenas as pessoas jurídicas.
+			String raiz = TriagemCNPJ.this.esquema.agrupado() ? "cnpj_basico" : "substr(cpf_cnpj,1,8)";
+			String parametros = String.join(",", Collections.nCopies(TriagemCNPJ.this.lote, "?"));
+			this.stmt = conn.prepareStatement("""
+					select %1$s, count(*), %2$s(valor_consolidado)
+					from pgfn_devedores
+					where %1$s in (%3$s) and tipo_pessoa = 'PESSOA JURÍDICA'
+					group by 1""".formatted(raiz, TriagemCNPJ.this.esquema.centavos() ? "sum" : "total", parametros));
+		}
+
+		Contagem le(long inicio, long fim) throws IOException, SQLException {
+			try (FileChannel canal = FileChannel.open(TriagemCNPJ.this.entrada, StandardOpenOption.READ)) {
+				ByteBuffer buffer = ByteBuffer.allocate(TAMANHO_BUFFER);
+				long posicao = inicio;
+				//Uma linha que começa antes do trecho pertence ao trecho anterior
+				boolean pulando = false;
+				if (inicio > 0) {
+					ByteBuffer anterior = ByteBuffer.allocate(1);
+					canal.read(anterior, inicio - 1);
+					pulando = anterior.get(0) != '\n';
+				}
+
+				long inicioLinha = inicio;
+				boolean primeiraColuna = true;
+				boolean invalida = false;
+				int digitos = 0;
+				long valor = 0;
+				int lidos;
+				leitura:
+				while ((lidos = canal.read(buffer.clear(), posicao)) > 0) {
+					byte[] bytes = buffer.array();
+					for (int i = 0; i < lidos; i++) {
+						byte b = bytes[i];
+						if (b == '\n') {
+							if (pulando) {
+								pulando = false;
+							} else {
+								linha(invalida, digitos, valor);
+							}
+							inicioLinha = posicao + i + 1;
+							if (inicioLinha >= fim) {
+								break leitura;
+							}
+							primeiraColuna = true;
+							invalida = false;
+							digitos = 0;
+							valor = 0;
+						} else if (pulando || !primeiraColuna) {
+							continue;
+						} else if (b == TriagemCNPJ.this.separador) {
+							primeiraColuna = false;
+						} else if (b >= '0' && b <= '9') {
+							if (++digitos <= DIGITOS_CNPJ) {
+								valor = valor * 10 + (b - '0');
+							}
+						} else if (b != '.' && b != '/' && b != '-' && b != '"' && b != ' ' && b != '\r' && b != '\t') {
+							invalida = true;
+						}
+					}
+					posicao += lidos;
+				}
+				//Última linha do arquivo, sem quebra de linha
+				if (!pulando && inicioLinha < fim) {
+					linha(invalida, digitos, valor);
+				}
+			}
+			confirma();
+			return new Contagem(this.linhas, this.ignoradas, this.descartadas, this.confirmados, this.devedores);
+		}
+
+		//Linhas em branco não são contadas
+		private void linha(boolean invalida, int digitos, long valor) throws SQLException, IOException {
+			if (!invalida && digitos == 0) {
+				return;
+			}
+			if (invalida || (digitos != DIGITOS_CNPJ && digitos != DIGITOS_RAIZ)) {
+				this.ignoradas++;
+				return;
+			}
+			this.linhas++;
+			boolean raiz = digitos == DIGITOS_RAIZ;
+			if (!TriagemCNPJ.this.filtro.podeConter(raiz ? valor : valor / 1_000_000)) {
+				this.descartadas++;
+				return;
+			}
+			this.cnpjs[this.candidatos] = valor;
+			this.raizes[this.candidatos] = raiz;
+			if (++this.candidatos == this.cnpjs.length) {
+				confirma();
+			}
+		}
+
+		//Uma consulta por lote, sempre com a mesma quantidade de parâmetros: as posições que sobram repetem a primeira raiz
+		private void confirma() throws SQLException, IOException {
+			if (this.candidatos == 0) {
+				return;
+			}
+			long[] consultadas = new long[this.candidatos];
+			for (int i = 0; i < this.candidatos; i++) {
+				consultadas[i] = raiz(i);
+			}
+			Arrays.sort(consultadas);
+			boolean agrupado = TriagemCNPJ.this.esquema.agrupado();
+			for (int i = 0; i < this.cnpjs.length; i++) {
+				long raiz = consultadas[Math.min(i, consultadas.length - 1)];
+				if (agrupado) {
+					this.stmt.setLong(i + 1, raiz);
+				} else {
+					this.stmt.setString(i + 1, String.format("%08d", raiz));
+				}
+			}
+
+			Map<Long,long[]> dividas = new HashMap<>();
+			try (ResultSet rs = this.stmt.executeQuery()) {
+				while (rs.next()) {
+					long raiz = agrupado ? rs.getLong(1) : Long.parseLong(rs.getString(1));
+					long centavos = TriagemCNPJ.this.esquema.centavos() ? rs.getLong(3) : Math.round(rs.getDouble(3) * 100);
+					dividas.put(raiz, new long[] { rs.getLong(2), centavos });
+				}
+			}
+
+			StringBuilder linhas = new StringBuilder();
+			char separador = TriagemCNPJ.this.separador;
+			for (int i = 0; i < this.candidatos; i++) {
+				long raiz = raiz(i);
+				long[] divida = dividas.get(raiz);
+				if (divida == null) {
+					continue;
+				}
+				this.devedores++;
+				linhas.append(this.raizes[i] ? String.format("%08d", raiz) : String.format("%014d", this.cnpjs[i])).append(separador)
+						.append(String.format("%08d", raiz)).append(separador)
+						.append(divida[0]).append(separador)
+						.append(CSVWriter.formatCentavos(divida[1])).append('\n');
+			}
+			if (!linhas.isEmpty()) {
+				synchronized (this.out) {
+					this.out.append(linhas);
+				}
+			}
+			this.confirmados += this.candidatos;
+			this.candidatos = 0;
+		}
+
+		private long raiz(int candidato) {
+			return this.raizes[candidato] ? this.cnpjs[candidato] : this.cnpjs[candidato] / 1_000_000;
+		}
+	}
+}
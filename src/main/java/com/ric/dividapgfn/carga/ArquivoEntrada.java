@@ -0,0 +1,77 @@
+package com.ric.dividapgfn.carga;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+//O CRC-32 do conteúdo é conhecido de antemão para as entradas de arquivos zip; para os demais arquivos vale -1.
+//Nesse caso, o CRC é calculado na primeira chamada de calculaCrc() e guardado para as seguintes.
+public final class ArquivoEntrada {
+	@FunctionalInterface
+	public interface Abertura {
+		InputStream abre() throws IOException;
+	}
+
+	private final Sistema sistema;
+	private final String nome;
+	private final long tamanho;
+	private final long crc;
+	private final Abertura abertura;
+	private volatile long crcCalculado = -1;
+
+	public ArquivoEntrada(Sistema sistema, String nome, long tamanho, long crc, Abertura abertura) {
+		this.sistema = sistema;
+		this.nome = nome;
+		this.tamanho = tamanho;
+		this.crc = crc;
+		this.abertura = abertura;
+	}
+
+	public Sistema sistema() {
+		return this.sistema;
+	}
+
+	public String nome() {
+		return this.nome;
+	}
+
+	public long tamanho() {
+		return this.tamanho;
+	}
+
+	public long crc() {
+		return this.crc;
+	}
+
+	public Abertura abertura() {
+		return this.abertura;
+	}
+
+	public InputStream abre() throws IOException {
+		return this.abertura.abre();
+	}
+
+	//Identificação do arquivo no manifesto da base, independente de estar compactado ou não
+	public String chave() {
+		int i = Math.max(this.nome.lastIndexOf('!'), Math.max(this.nome.lastIndexOf('/'), this.nome.lastIndexOf('\\')));
+		return this.sistema.diretorio() + "/" + this.nome.substring(i + 1);
+	}
+
+	public long calculaCrc() throws IOException {
+		if (this.crc >= 0) {
+			return this.crc;
+		}
+		if (this.crcCalculado >= 0) {
+			return this.crcCalculado;
+		}
+
+		CRC32 crc32 = new CRC32();
+		try (InputStream entrada = new CheckedInputStream(abre(), crc32)) {
+			entrada.transferTo(OutputStream.nullOutputStream());
+		}
+		this.crcCalculado = crc32.getValue();
+		return this.crcCalculado;
+	}
+}
@@ -0,0 +1,132 @@
+package com.ric.dividapgfn.carga;
+
+import org.tinylog.Logger;
+
+//Define a quantidade de linhas por executeBatch e por commit durante a carga.
+//No modo adaptativo, os dois valores são ajustados um de cada vez, pela vazão (linhas/s) medida em janelas de linhas gravadas:
+//o valor é multiplicado enquanto a vazão melhora e, quando piora, volta ao melhor valor e inverte o sentido com passo menor.
+//Os commits periódicos ocorrem também fora do modo adaptativo, porque cada um é um ponto de retomada da carga.
+public final class ControleLote {
+	private static final long JANELA_MINIMA = 100_000;
+
+	private final boolean adaptativo;
+	private final Ajuste lote;
+	private final Ajuste commit;
+
+	private long inicioJanela = System.nanoTime();
+	private long linhasJanela;
+	private long linhas;
+	private long flushes;
+	private long nanosFlush;
+	private long maiorFlush;
+	private long nanosCarga;
+
+	public ControleLote(int tamanhoLote, boolean adaptativo) {
+		this.adaptativo = adaptativo;
+		//Fora do modo adaptativo, o tamanho informado em --batchsize é usado como está
+		this.lote = new Ajuste("Tamanho do lote", tamanhoLote, 100, 100_000, adaptativo);
+		this.commit = new Ajuste("Intervalo entre commits", 100_000, 10_000, 10_000_000, true);
+	}
+
+	public boolean adaptativo() {
+		return this.adaptativo;
+	}
+
+	public int tamanhoLote() {
+		return (int) this.lote.valor();
+	}
+
+	public boolean commitNecessario(long linhasDesdeCommit) {
+		return linhasDesdeCommit >= this.commit.valor();
+	}
+
+	public void registraFlush(int linhas, long nanos) {
+		this.linhas += linhas;
+		this.flushes += 1;
+		this.nanosFlush += nanos;
+		this.maiorFlush = Math.max(this.maiorFlush, nanos);
+
+		if (!this.adaptativo) {
+			return;
+		}
+
+		this.linhasJanela += linhas;
+		Ajuste ajuste = !this.lote.estavel() ? this.lote : this.commit;
+		long janela = Math.max(JANELA_MINIMA, ajuste == this.commit ? 2 * this.commit.valor() : 20 * this.lote.valor());
+		if (!ajuste.estavel() && this.linhasJanela >= janela) {
+			long agora = System.nanoTime();
+			ajuste.avalia((double) (agora - this.inicioJanela) / this.linhasJanela);
+			this.nanosCarga += agora - this.inicioJanela;
+			this.inicioJanela = agora;
+			this.linhasJanela = 0;
+		}
+	}
+
+	//Início de uma nova etapa de carga, para não contar na janela o tempo entre as etapas
+	public void reinicia() {
+		this.nanosCarga += System.nanoTime() - this.inicioJanela;
+		this.inicioJanela = System.nanoTime();
+		this.linhasJanela = 0;
+	}
+
+	public void registraResumo() {
+		long nanos = this.nanosCarga + System.nanoTime() - this.inicioJanela;
+		Logger.info("Lote de {} linhas{}: {} linhas/s, flush médio de {} ms (máximo {} ms)",
+				tamanhoLote(),
+				", commit a cada " + this.commit.valor() + " linhas",
+				nanos > 0 ? this.linhas * 1_000_000_000L / nanos : 0,
+				this.flushes > 0 ? this.nanosFlush / this.flushes / 1_000_000 : 0,
+				this.maiorFlush / 1_000_000);
+	}
+
+	private static final class Ajuste {
+		private static final double MELHORA_MINIMA = 0.98;
+		private static final double PASSO_MINIMO = 1.2;
+
+		private final String nome;
+		private final long minimo;
+		private final long maximo;
+		private long valor;
+		private long melhorValor;
+		private double melhorCusto = Double.POSITIVE_INFINITY;
+		private double fator = 2;
+		private boolean estavel;
+
+		Ajuste(String nome, long inicial, long minimo, long maximo, boolean limitaInicial) {
+			this.nome = nome;
+			this.minimo = minimo;
+			this.maximo = maximo;
+			this.valor = limitaInicial ? limita(inicial) : inicial;
+			this.melhorValor = this.valor;
+		}
+
+		long valor() {
+			return this.valor;
+		}
+
+		boolean estavel() {
+			return this.estavel;
+		}
+
+		void avalia(double custo) {
+			if (custo < this.melhorCusto * MELHORA_MINIMA) {
+				this.melhorCusto = custo;
+				this.melhorValor = this.valor;
+			} else {
+				this.melhorCusto = Math.min(this.melhorCusto, custo);
+				this.fator = 1 / Math.sqrt(this.fator);
+				if (Math.max(this.fator, 1 / this.fator) < PASSO_MINIMO) {
+					this.estavel = true;
+					this.valor = this.melhorValor;
+					Logger.info("{} ajustado para {} linhas", this.nome, this.valor);
+					return;
+				}
+			}
+			this.valor = limita(Math.round(this.melhorValor * this.fator));
+		}
+
+		private long limita(long v) {
+			return Math.max(this.minimo, Math.min(this.maximo, v));
+		}
+	}
+}
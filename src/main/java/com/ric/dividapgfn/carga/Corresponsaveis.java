@@ -0,0 +1,73 @@
+package com.ric.dividapgfn.carga;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.sqlite.SQLiteConnection;
+
+import com.ric.dividapgfn.util.Common;
+
+//Tabela pgfn_corresponsaveis: pares devedor principal → corresponsável de toda a base, com o valor das inscrições em comum
+//e a dívida total do principal. Calculada uma vez na criação da base, é consultada pelo filtro no lugar da autojunção da
+//tabela divida. Principal e corresponsável são identificados como em cnpj_matriz: raiz do CNPJ ou CPF completo.
+public final class Corresponsaveis {
+	public static final String TABELA = "pgfn_corresponsaveis";
+	private static final String DEVEDOR = "case when tipo_pessoa = 'PESSOA JURÍDICA' then substr(cpf_cnpj,1,8) else cpf_cnpj end";
+
+	private Corresponsaveis() { }
+
+	public static void cria(SQLiteConnection conn) throws SQLException {
+		remove(conn);
+		Common.executeUpdateStatement(conn, """
+				CREATE TEMP TABLE corresponsaveis_secundarios AS
+				select numero_inscricao, %s as devedor, nome_devedor
+				from pgfn_devedores
+				where tipo_devedor <> 'PRINCIPAL'""".formatted(DEVEDOR));
+		Common.executeUpdateStatement(conn, "CREATE INDEX temp.idx_corresponsaveis_secundarios ON corresponsaveis_secundarios (numero_inscricao)");
+		Common.executeUpdateStatement(conn, """
+				CREATE TEMP TABLE corresponsaveis_totais AS
+				select %s as devedor, sum(valor_consolidado) as valor
+				from pgfn_devedores
+				where tipo_devedor = 'PRINCIPAL'
+				group by devedor""".formatted(DEVEDOR));
+		Common.executeUpdateStatement(conn, "CREATE INDEX temp.idx_corresponsaveis_totais ON corresponsaveis_totais (devedor)");
+		//Mesma agregação da exportação de corresponsáveis do filtro, aplicada à base inteira
+		Common.executeUpdateStatement(conn, """
+				CREATE TABLE %s AS
+				select
+					p.devedor as cpf_cnpj_principal, p.nome_devedor as nome_devedor_principal,
+					s.devedor as cpf_cnpj_secundario, s.nome_devedor as nome_devedor_secundario,
+					sum(p.valor_consolidado) as valor_corresponsabilidade,
+					t.valor as divida_devedor_principal
+				from (select numero_inscricao, %s as devedor, nome_devedor, valor_consolidado from pgfn_devedores where tipo_devedor = 'PRINCIPAL') p
+				join temp.corresponsaveis_secundarios s
+					on p.numero_inscricao = s.numero_inscricao
+				join temp.corresponsaveis_totais t
+					on p.devedor = t.devedor
+				group by p.devedor, p.nome_devedor, s.devedor, s.nome_devedor""".formatted(TABELA, DEVEDOR));
+		Common.executeUpdateStatement(conn, "CREATE INDEX idx_pgfn_corresponsaveis_principal ON " + TABELA + " (cpf_cnpj_principal)");
+		Common.executeUpdateStatement(conn, "CREATE INDEX idx_pgfn_corresponsaveis_secundario ON " + TABELA + " (cpf_cnpj_secundario)");
+		Common.executeUpdateStatement(conn, "DROP TABLE temp.corresponsaveis_secundarios");
+		Common.executeUpdateStatement(conn, "DROP TABLE temp.corresponsaveis_totais");
+	}
+
+	//Uma tabela calculada antes de uma atualização incremental ficaria desatualizada
+	public static void remove(SQLiteConnection conn) throws SQLException {
+		Common.executeUpdateStatement(conn, "DROP TABLE IF EXISTS main." + TABELA);
+	}
+
+	public static boolean existe(SQLiteConnection conn, String banco) throws SQLException {
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("select count(*) from " + banco + ".sqlite_master where type = 'table' and name = '" + TABELA + "'")) {
+			return rs.next() && rs.getInt(1) > 0;
+		}
+	}
+
+	public static long tamanho(SQLiteConnection conn) throws SQLException {
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("select count(*) from " + TABELA)) {
+			return rs.next() ? rs.getLong(1) : 0;
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package com.ric.dividapgfn.carga;
+
+public interface DestinoCarga<T> {
+	//Arquivo de origem das próximas linhas
+	void arquivo(ArquivoEntrada arquivo);
+
+	void linha(T linha);
+
+	void fimArquivo(ArquivoEntrada arquivo, long crc, long linhas);
+}
@@ -0,0 +1,49 @@
+package com.ric.dividapgfn.carga;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sqlite.SQLiteConnection;
+
+//Códigos dos valores das colunas repetidas no esquema compacto (tabela pgfn_dicionario), mantidos em memória durante a carga
+public final class Dicionario implements AutoCloseable {
+	private final PreparedStatement stmtInsere;
+	private final Map<String,Long> codigos = new HashMap<>();
+	private long proximo = 1;
+
+	public Dicionario(SQLiteConnection conn) throws SQLException {
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("select id, valor from pgfn_dicionario")) {
+			while (rs.next()) {
+				this.codigos.put(rs.getString(2), rs.getLong(1));
+				this.proximo = Math.max(this.proximo, rs.getLong(1) + 1);
+			}
+		}
+		this.stmtInsere = conn.prepareStatement("insert into pgfn_dicionario (id, valor) values (?,?)");
+	}
+
+	public long codigo(String valor) throws SQLException {
+		Long codigo = this.codigos.get(valor);
+		if (codigo == null) {
+			codigo = this.proximo++;
+			this.stmtInsere.setLong(1, codigo);
+			this.stmtInsere.setString(2, valor);
+			this.stmtInsere.executeUpdate();
+			this.codigos.put(valor, codigo);
+		}
+		return codigo;
+	}
+
+	public int tamanho() {
+		return this.codigos.size();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		this.stmtInsere.close();
+	}
+}
@@ -0,0 +1,196 @@
+package com.ric.dividapgfn.carga;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sqlite.SQLiteConnection;
+
+import com.ric.dividapgfn.util.Common;
+
+//Formato da tabela pgfn_devedores. No esquema compacto, as colunas com poucos valores distintos são gravadas em
+//pgfn_devedores_dados como códigos da tabela pgfn_dicionario, e a visão pgfn_devedores apresenta as colunas originais.
+//No esquema agrupado, a tabela é WITHOUT ROWID com chave (cnpj_basico, numero_inscricao), de modo que as linhas de um
+//mesmo devedor ficam em páginas vizinhas; as linhas são carregadas em uma tabela temporária e gravadas já ordenadas.
+//No esquema em centavos, valor_consolidado é um inteiro com o valor em centavos.
+public record Esquema(boolean compacto, boolean agrupado, boolean centavos) {
+	public static final String TABELA_DADOS = "pgfn_devedores_dados";
+	private static final String TABELA_CARGA = "pgfn_devedores_carga";
+	public static final List<String> COLUNAS_CODIFICADAS = List.of(
+			"tipo_pessoa",
+			"tipo_devedor",
+			"uf_unidade_responsavel",
+			"unidade_responsavel",
+			"entidade_responsavel",
+			"tipo_situacao_inscricao",
+			"situacao_inscricao",
+			"receita_principal",
+			"tipo_credito",
+			"indicador_ajuizado",
+			"arquivo_origem");
+	private static final List<String> COLUNAS = List.of(
+			"cpf_cnpj",
+			"tipo_pessoa",
+			"tipo_devedor",
+			"nome_devedor",
+			"uf_unidade_responsavel",
+			"unidade_responsavel",
+			"entidade_responsavel",
+			"unidade_inscricao",
+			"numero_inscricao",
+			"tipo_situacao_inscricao",
+			"situacao_inscricao",
+			"receita_principal",
+			"tipo_credito",
+			"data_inscricao",
+			"indicador_ajuizado",
+			"valor_consolidado",
+			"arquivo_origem",
+			"id_arquivo");
+	private static final List<String> COLUNAS_AGRUPAMENTO = List.of(
+			"cnpj_basico",
+			"sequencia");
+
+	public static Esquema da(SQLiteConnection conn) throws SQLException {
+		return da(conn, "main");
+	}
+
+	//Esquema de uma base existente, que pode estar anexada à conexão
+	public static Esquema da(SQLiteConnection conn, String banco) throws SQLException {
+		boolean compacto;
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("select count(*) from " + banco + ".sqlite_master where type = 'table' and name = '" + TABELA_DADOS + "'")) {
+			compacto = rs.next() && rs.getInt(1) > 0;
+		}
+		boolean agrupado = false;
+		boolean centavos = false;
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("pragma " + banco + ".table_info('" + (compacto ? TABELA_DADOS : "pgfn_devedores") + "')")) {
+			while (rs.next()) {
+				agrupado |= "cnpj_basico".equals(rs.getString("name"));
+				centavos |= "valor_consolidado".equals(rs.getString("name")) && "INTEGER".equalsIgnoreCase(rs.getString("type"));
+			}
+		}
+		return new Esquema(compacto, agrupado, centavos);
+	}
+
+	//Raiz do CNPJ como inteiro, ou -1 se o documento não começar com 8 dígitos
+	public static long cnpjBasico(String cpfCnpj) {
+		if (cpfCnpj == null || cpfCnpj.length() < 8) {
+			return -1;
+		}
+		long valor = 0;
+		for (int i = 0; i < 8; i++) {
+			char c = cpfCnpj.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			valor = valor * 10 + (c - '0');
+		}
+		return valor;
+	}
+
+	//Tabela que efetivamente guarda as linhas da base
+	public String tabela() {
+		return this.compacto ? TABELA_DADOS : "pgfn_devedores";
+	}
+
+	//Tabela em que as linhas são inseridas durante a carga
+	public String tabelaCarga() {
+		return this.agrupado ? "temp." + TABELA_CARGA : tabela();
+	}
+
+	public List<String> colunas() {
+		List<String> colunas = new ArrayList<>(COLUNAS);
+		if (this.agrupado) {
+			colunas.addAll(COLUNAS_AGRUPAMENTO);
+		}
+		return colunas;
+	}
+
+	public void criaTabelas(SQLiteConnection conn) throws SQLException {
+		List<String> colunas = colunas();
+		StringBuilder tabela = new StringBuilder("CREATE TABLE " + tabela() + "(\n");
+		for (String coluna : colunas) {
+			tabela.append("\t").append(coluna).append(" ").append(tipo(coluna)).append(",\n");
+		}
+		if (this.agrupado) {
+			tabela.append("\tPRIMARY KEY (cnpj_basico, numero_inscricao, id_arquivo, sequencia)\n) WITHOUT ROWID");
+		} else {
+			tabela.setLength(tabela.length() - 2);
+			tabela.append("\n)");
+		}
+		Common.executeUpdateStatement(conn, tabela.toString());
+
+		if (this.compacto) {
+			criaDicionario(conn, colunas);
+		}
+	}
+
+	private void criaDicionario(SQLiteConnection conn, List<String> colunas) throws SQLException {
+		Common.executeUpdateStatement(conn, """
+				CREATE TABLE pgfn_dicionario(
+					id INTEGER PRIMARY KEY,
+					valor TEXT NOT NULL UNIQUE
+				)""");
+
+		StringBuilder visao = new StringBuilder("CREATE VIEW pgfn_devedores AS\nselect\n");
+		StringBuilder valores = new StringBuilder();
+		for (int i = 0; i < colunas.size(); i++) {
+			String coluna = colunas.get(i);
+			String separador = i < colunas.size() - 1 ? ",\n" : "\n";
+			if (COLUNAS_CODIFICADAS.contains(coluna)) {
+				visao.append("\t(select valor from pgfn_dicionario where id = dev.").append(coluna).append(") as ").append(coluna).append(separador);
+				valores.append("\t(select id from pgfn_dicionario where valor = new.").append(coluna).append(")").append(separador);
+			} else {
+				visao.append("\tdev.").append(coluna).append(separador);
+				valores.append("\tnew.").append(coluna).append(separador);
+			}
+		}
+		//Subconsultas em vez de junções: só são avaliadas para as colunas usadas e não impedem o uso dos índices da tabela
+		Common.executeUpdateStatement(conn, visao.append("from ").append(TABELA_DADOS).append(" dev").toString());
+
+		//Permite inserir na visão como na tabela original, com os valores traduzidos pelo dicionário
+		StringBuilder gatilho = new StringBuilder("CREATE TRIGGER pgfn_devedores_insere INSTEAD OF INSERT ON pgfn_devedores\nBEGIN\n");
+		for (String coluna : COLUNAS_CODIFICADAS) {
+			gatilho.append("insert or ignore into pgfn_dicionario (valor) values (new.").append(coluna).append(");\n");
+		}
+		gatilho.append("insert into ").append(TABELA_DADOS).append(" values (\n").append(valores).append(");\nEND");
+		Common.executeUpdateStatement(conn, gatilho.toString());
+	}
+
+	public void iniciaCarga(SQLiteConnection conn) throws SQLException {
+		if (this.agrupado) {
+			Common.executeUpdateStatement(conn, "CREATE TEMP TABLE " + TABELA_CARGA + " AS SELECT * FROM main." + tabela() + " WHERE 0");
+		}
+	}
+
+	//Grava as linhas carregadas na ordem da chave, o que evita inserções espalhadas pela árvore da tabela
+	public void concluiCarga(SQLiteConnection conn) throws SQLException {
+		if (this.agrupado) {
+			Common.executeUpdateStatement(conn, "INSERT INTO main." + tabela() + " SELECT * FROM temp." + TABELA_CARGA
+					+ " ORDER BY cnpj_basico, numero_inscricao, id_arquivo, sequencia");
+			Common.executeUpdateStatement(conn, "DROP TABLE temp." + TABELA_CARGA);
+		}
+	}
+
+	public void criaIndices(SQLiteConnection conn) throws SQLException {
+		Common.executeUpdateStatement(conn, "CREATE INDEX IF NOT EXISTS `idx_pgfn_devedores_cpf_cnpj` ON `" + tabela() + "` (`cpf_cnpj`)");
+		Common.executeUpdateStatement(conn, "CREATE INDEX IF NOT EXISTS `idx_pgfn_devedores_cnpj` ON `" + tabela() + "` (substr(`cpf_cnpj`,1,8))");
+		Common.executeUpdateStatement(conn, "CREATE INDEX IF NOT EXISTS `idx_pgfn_devedores_arquivo` ON `" + tabela() + "` (`id_arquivo`)");
+	}
+
+	private String tipo(String coluna) {
+		if (this.compacto && COLUNAS_CODIFICADAS.contains(coluna)) {
+			return "INTEGER";
+		}
+		return switch (coluna) {
+		case "valor_consolidado" -> this.centavos ? "INTEGER" : "REAL";
+		case "id_arquivo", "sequencia" -> "INTEGER";
+		case "cnpj_basico" -> "INTEGER NOT NULL";
+		default -> "TEXT";
+		};
+	}
+}
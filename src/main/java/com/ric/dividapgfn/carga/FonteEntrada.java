@@ -0,0 +1,105 @@
+package com.ric.dividapgfn.carga;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.tinylog.Logger;
+
+//Arquivos de entrada de cada sistema, lidos dos diretórios de entrada ou diretamente dos arquivos compactados da PGFN.
+//As entradas dos arquivos zip são descompactadas diretamente para a leitura, sem arquivos temporários.
+public final class FonteEntrada implements Closeable {
+	private final Map<Sistema,List<ArquivoEntrada>> arquivos = new EnumMap<>(Sistema.class);
+	private final List<ZipFile> compactados = new ArrayList<>();
+
+	public FonteEntrada(Path dirEntrada) {
+		for (Sistema sistema : Sistema.values()) {
+			this.arquivos.put(sistema, new ArrayList<>());
+		}
+
+		try {
+			for (Path arquivo : lista(dirEntrada)) {
+				if (compactado(arquivo)) {
+					adicionaCompactado(arquivo, Optional.empty());
+				}
+			}
+
+			for (Sistema sistema : Sistema.values()) {
+				for (Path arquivo : lista(dirEntrada.resolve(sistema.diretorio()))) {
+					if (compactado(arquivo)) {
+						adicionaCompactado(arquivo, Optional.of(sistema));
+					} else {
+						this.arquivos.get(sistema).add(new ArquivoEntrada(sistema, arquivo.toString(), Files.size(arquivo), -1, () -> Files.newInputStream(arquivo)));
+					}
+				}
+			}
+		} catch (IOException e) {
+			close();
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public List<ArquivoEntrada> arquivos(Sistema sistema) {
+		return this.arquivos.get(sistema);
+	}
+
+	private void adicionaCompactado(Path arquivo, Optional<Sistema> sistemaDiretorio) throws IOException {
+		ZipFile zip = new ZipFile(arquivo.toFile(), ZipFile.OPEN_READ);
+		this.compactados.add(zip);
+
+		List<? extends ZipEntry> entradas = zip.stream()
+				.filter(entrada -> !entrada.isDirectory())
+				.filter(entrada -> entrada.getName().toLowerCase(Locale.ROOT).endsWith(".csv"))
+				.sorted(Comparator.comparing(ZipEntry::getName))
+				.toList();
+		for (ZipEntry entrada : entradas) {
+			Optional<Sistema> sistema = Sistema.identifica(entrada.getName())
+					.or(() -> sistemaDiretorio)
+					.or(() -> Sistema.identifica(arquivo.getFileName().toString()));
+			if (sistema.isPresent()) {
+				this.arquivos.get(sistema.get()).add(new ArquivoEntrada(sistema.get(), arquivo + "!" + entrada.getName(), entrada.getSize(), entrada.getCrc(), () -> zip.getInputStream(entrada)));
+			} else {
+				Logger.warn("Ignorando {} em {}: sistema não identificado pelo nome.", entrada.getName(), arquivo);
+			}
+		}
+	}
+
+	private static boolean compactado(Path arquivo) {
+		return arquivo.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip");
+	}
+
+	private static List<Path> lista(Path diretorio) throws IOException {
+		if (!Files.isDirectory(diretorio)) {
+			return List.of();
+		}
+		try (Stream<Path> arquivos = Files.list(diretorio)) {
+			return arquivos
+					.filter(Files::isRegularFile)
+					.sorted()
+					.toList();
+		}
+	}
+
+	@Override
+	public void close() {
+		for (ZipFile zip : this.compactados) {
+			try {
+				zip.close();
+			} catch (IOException e) {
+				Logger.warn("Erro ao fechar {}: {}", zip.getName(), e.getLocalizedMessage());
+			}
+		}
+	}
+}
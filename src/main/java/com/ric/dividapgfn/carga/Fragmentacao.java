@@ -0,0 +1,7 @@
+package com.ric.dividapgfn.carga;
+
+public enum Fragmentacao {
+	NENHUMA,
+	SISTEMA,
+	UF;
+}
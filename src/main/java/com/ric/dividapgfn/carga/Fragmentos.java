@@ -0,0 +1,100 @@
+package com.ric.dividapgfn.carga;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+//Bases fragmentadas: em vez de um único pgfn.sqlite, uma base pgfn_fragmento_<nome>.sqlite por sistema ou por UF,
+//cada uma com sua própria tabela pgfn_devedores, manifesto e índices.
+public final class Fragmentos {
+	//O SQLite anexa no máximo 10 bases a uma conexão (SQLITE_LIMIT_ATTACHED); o filtro em paralelo anexa também a base de trabalho
+	public static final int MAX_ANEXADOS = 9;
+	private static final String PREFIXO = "pgfn_fragmento_";
+	private static final String SUFIXO = ".sqlite";
+	private static final String SEM_UF = "OUTROS";
+	private static final Set<String> UFS = Set.of(
+			"AC", "AL", "AM", "AP", "BA", "CE", "DF", "ES", "GO", "MA", "MG", "MS", "MT", "PA", "PB", "PE", "PI",
+			"PR", "RJ", "RN", "RO", "RR", "RS", "SC", "SE", "SP", "TO");
+	private static final Pattern TRECHO_UF = Pattern.compile("(?<=[_\\-. ])([A-Z]{2})(?=[_\\-. ])");
+
+	private Fragmentos() { }
+
+	public static Path arquivo(Path dirEntrada, String nome) {
+		return dirEntrada.resolve(PREFIXO + nome + SUFIXO);
+	}
+
+	public static String nome(Path arquivo) {
+		String nome = arquivo.getFileName().toString();
+		return nome.substring(PREFIXO.length(), nome.length() - SUFIXO.length());
+	}
+
+	public static List<Path> lista(Path dirEntrada) {
+		if (!Files.isDirectory(dirEntrada)) {
+			return List.of();
+		}
+		try (Stream<Path> arquivos = Files.list(dirEntrada)) {
+			return arquivos
+					.filter(arquivo -> {
+						String nome = arquivo.getFileName().toString();
+						return nome.startsWith(PREFIXO) && nome.endsWith(SUFIXO);
+					})
+					.sorted()
+					.toList();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public static void removeTodos(Path dirEntrada) throws IOException {
+		for (Path arquivo : lista(dirEntrada)) {
+			Files.delete(arquivo);
+		}
+	}
+
+	//Arquivos de entrada de cada fragmento, pelo nome do fragmento
+	public static Map<String,Map<Sistema,List<ArquivoEntrada>>> separa(FonteEntrada fonte, Fragmentacao fragmentacao) {
+		Map<String,Map<Sistema,List<ArquivoEntrada>>> fragmentos = new TreeMap<>();
+		for (Sistema sistema : Sistema.values()) {
+			for (ArquivoEntrada arquivo : fonte.arquivos(sistema)) {
+				String nome = switch (fragmentacao) {
+				case SISTEMA -> sistema.name();
+				case UF -> uf(arquivo);
+				case NENHUMA -> throw new IllegalArgumentException();
+				};
+				fragmentos
+						.computeIfAbsent(nome, n -> {
+							Map<Sistema,List<ArquivoEntrada>> porSistema = new EnumMap<>(Sistema.class);
+							for (Sistema s : Sistema.values()) {
+								porSistema.put(s, new ArrayList<>());
+							}
+							return porSistema;
+						})
+						.get(sistema)
+						.add(arquivo);
+			}
+		}
+		return fragmentos;
+	}
+
+	//UF pelo nome do arquivo, como em arquivo_lai_FGTS_SP_202303.csv
+	private static String uf(ArquivoEntrada arquivo) {
+		Matcher m = TRECHO_UF.matcher(arquivo.chave().toUpperCase(Locale.ROOT));
+		while (m.find()) {
+			if (UFS.contains(m.group(1))) {
+				return m.group(1);
+			}
+		}
+		return SEM_UF;
+	}
+}
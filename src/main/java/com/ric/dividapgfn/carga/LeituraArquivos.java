@@ -0,0 +1,140 @@
+package com.ric.dividapgfn.carga;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import com.ric.dividapgfn.linha.LeitorLinhas;
+import com.ric.dividapgfn.util.Common;
+
+//Leitura dos arquivos de entrada. Com mais de uma thread, cada arquivo é lido e convertido por uma thread de leitura,
+//que repassa as linhas em lotes por uma fila limitada à thread que chamou executa, única a acessar o destino.
+public final class LeituraArquivos<T> {
+	private static final int TAMANHO_LOTE = 1024;
+	private static final int LOTES_POR_THREAD = 4;
+
+	private record Lote<T>(ArquivoEntrada arquivo, List<T> linhas, boolean fim, long crc, long total) { }
+
+	private final int threads;
+	private final BlockingQueue<Lote<T>> fila;
+	private final AtomicReference<Throwable> erro = new AtomicReference<>();
+	private final LongAdder alocados = new LongAdder();
+
+	public LeituraArquivos(int threads) {
+		this.threads = threads;
+		this.fila = new ArrayBlockingQueue<>(Math.max(threads, 1) * LOTES_POR_THREAD);
+	}
+
+	public void executa(List<ArquivoEntrada> arquivos, Function<LeitorLinhas,T> mapeamento, DestinoCarga<T> destino) {
+		executa(arquivos, arquivo -> 0, mapeamento, destino);
+	}
+
+	//Na retomada, as linhas já carregadas de cada arquivo são lidas, para o CRC do arquivo inteiro, mas não repassadas ao destino
+	public void executa(List<ArquivoEntrada> arquivos, ToLongFunction<ArquivoEntrada> ignoradas, Function<LeitorLinhas,T> mapeamento, DestinoCarga<T> destino) {
+		if (this.threads > 1) {
+			executaParalelo(arquivos, ignoradas, mapeamento, destino);
+		} else {
+			for (ArquivoEntrada arquivo : arquivos) {
+				CRC32 crc = new CRC32();
+				destino.arquivo(arquivo);
+				try {
+					long linhas = LeitorLinhas.le(new CheckedInputStream(arquivo.abre(), crc), ignoradas.applyAsLong(arquivo), mapeamento, destino::linha);
+					destino.fimArquivo(arquivo, crc.getValue(), linhas);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
+
+	//Bytes alocados pelas threads de leitura
+	public long bytesAlocados() {
+		return this.alocados.sum();
+	}
+
+	private void executaParalelo(List<ArquivoEntrada> arquivos, ToLongFunction<ArquivoEntrada> ignoradas, Function<LeitorLinhas,T> mapeamento, DestinoCarga<T> destino) {
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		try {
+			for (ArquivoEntrada arquivo : arquivos) {
+				long ignoradasArquivo = ignoradas.applyAsLong(arquivo);
+				executor.execute(() -> leArquivo(arquivo, ignoradasArquivo, mapeamento));
+			}
+
+			int pendentes = arquivos.size();
+			while (pendentes > 0) {
+				Lote<T> lote = this.fila.take();
+
+				Throwable t = this.erro.get();
+				if (t != null) {
+					throw t instanceof RuntimeException re ? re : new RuntimeException(t);
+				}
+
+				if (lote.fim()) {
+					destino.fimArquivo(lote.arquivo(), lote.crc(), lote.total());
+					pendentes -= 1;
+				} else {
+					destino.arquivo(lote.arquivo());
+					lote.linhas().forEach(destino::linha);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void leArquivo(ArquivoEntrada arquivo, long ignoradas, Function<LeitorLinhas,T> mapeamento) {
+		long alocadosInicio = Common.bytesAlocadosThread();
+		CRC32 crc = new CRC32();
+		long total = 0;
+		try (LeitorLinhas leitor = new LeitorLinhas(new CheckedInputStream(arquivo.abre(), crc))) {
+			List<T> linhas = new ArrayList<>(TAMANHO_LOTE);
+			if (leitor.proxima()) { //Cabeçalho
+				while (leitor.proxima()) {
+					if (total < ignoradas) {
+						total++;
+						continue;
+					}
+					linhas.add(mapeamento.apply(leitor));
+					if (linhas.size() == TAMANHO_LOTE) {
+						this.fila.put(new Lote<>(arquivo, linhas, false, 0, 0));
+						total += linhas.size();
+						linhas = new ArrayList<>(TAMANHO_LOTE);
+					}
+				}
+			}
+			if (!linhas.isEmpty()) {
+				this.fila.put(new Lote<>(arquivo, linhas, false, 0, 0));
+				total += linhas.size();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		} catch (IOException e) {
+			this.erro.compareAndSet(null, new UncheckedIOException(e));
+		} catch (RuntimeException | Error e) {
+			this.erro.compareAndSet(null, e);
+		} finally {
+			this.alocados.add(Common.bytesAlocadosThread() - alocadosInicio);
+		}
+
+		try {
+			this.fila.put(new Lote<>(arquivo, List.of(), true, crc.getValue(), total));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.ric.dividapgfn.carga;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sqlite.SQLiteConnection;
+
+import com.ric.dividapgfn.util.Common;
+
+//Manifesto dos arquivos carregados na base (tabela pgfn_arquivos). Cada linha de pgfn_devedores referencia o arquivo de
+//origem pela coluna id_arquivo, o que permite remover e recarregar apenas as linhas de arquivos alterados.
+public final class Manifesto {
+	public record Registro(long id, String caminho, long tamanho, String hash, long linhas, String origem) { }
+
+	private final SQLiteConnection conn;
+	private final String tabelaDevedores;
+	private final Map<String,Registro> registros = new HashMap<>();
+
+	public Manifesto(SQLiteConnection conn) throws SQLException {
+		this.conn = conn;
+		this.tabelaDevedores = Esquema.da(conn).tabela();
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("select id, caminho, tamanho, hash, linhas, arquivo_origem from pgfn_arquivos")) {
+			while (rs.next()) {
+				Registro registro = new Registro(rs.getLong(1), rs.getString(2), rs.getLong(3), rs.getString(4), rs.getLong(5), rs.getString(6));
+				this.registros.put(registro.caminho(), registro);
+			}
+		}
+	}
+
+	public static void criaTabela(SQLiteConnection conn) throws SQLException {
+		Common.executeUpdateStatement(conn, """
+				CREATE TABLE pgfn_arquivos(
+					id INTEGER PRIMARY KEY,
+					caminho TEXT UNIQUE,
+					tamanho INTEGER,
+					hash TEXT,
+					linhas INTEGER,
+					arquivo_origem TEXT
+				)""");
+	}
+
+	public static boolean existe(SQLiteConnection conn) throws SQLException {
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("select count(*) from sqlite_master where type = 'table' and name = 'pgfn_arquivos'")) {
+			return rs.next() && rs.getInt(1) > 0;
+		}
+	}
+
+	public static String hash(long crc) {
+		return String.format("crc32:%08x", crc);
+	}
+
+	//Arquivo carregado por completo com o mesmo tamanho e conteúdo; o CRC só é calculado se o tamanho coincide
+	public boolean inalterado(ArquivoEntrada arquivo) throws IOException {
+		Registro registro = this.registros.get(arquivo.chave());
+		return registro != null
+				&& registro.hash() != null
+				&& registro.tamanho() == arquivo.tamanho()
+				&& hash(arquivo.calculaCrc()).equals(registro.hash());
+	}
+
+	//Arquivo registrado e não concluído, com o mesmo tamanho: a carga foi interrompida no meio dele
+	public Registro interrompido(ArquivoEntrada arquivo) {
+		Registro registro = this.registros.get(arquivo.chave());
+		return registro != null && registro.hash() == null && registro.tamanho() == arquivo.tamanho() ? registro : null;
+	}
+
+	public boolean contem(ArquivoEntrada arquivo) {
+		return this.registros.containsKey(arquivo.chave());
+	}
+
+	//Arquivos registrados que não constam mais da entrada
+	public List<Registro> ausentes(List<ArquivoEntrada> arquivos) {
+		Map<String,Registro> restantes = new HashMap<>(this.registros);
+		for (ArquivoEntrada arquivo : arquivos) {
+			restantes.remove(arquivo.chave());
+		}
+		return new ArrayList<>(restantes.values());
+	}
+
+	//Remove o arquivo e todas as suas linhas da base
+	public long remove(String caminho) throws SQLException {
+		Registro registro = this.registros.remove(caminho);
+		if (registro == null) {
+			return 0;
+		}
+
+		try (PreparedStatement stmt = this.conn.prepareStatement("delete from " + this.tabelaDevedores + " where id_arquivo = ?");
+				PreparedStatement stmtArquivo = this.conn.prepareStatement("delete from pgfn_arquivos where id = ?")) {
+			stmt.setLong(1, registro.id());
+			long removidas = stmt.executeUpdate();
+			stmtArquivo.setLong(1, registro.id());
+			stmtArquivo.executeUpdate();
+			return removidas;
+		}
+	}
+
+	//Registra o arquivo antes da carga, ainda sem hash, e retorna o id usado nas linhas de pgfn_devedores
+	public long registra(ArquivoEntrada arquivo) throws SQLException {
+		remove(arquivo.chave());
+		try (PreparedStatement stmt = this.conn.prepareStatement("insert into pgfn_arquivos (caminho, tamanho, arquivo_origem) values (?,?,?)")) {
+			stmt.setString(1, arquivo.chave());
+			stmt.setLong(2, arquivo.tamanho());
+			stmt.setString(3, arquivo.sistema().origem());
+			stmt.executeUpdate();
+		}
+
+		long id;
+		try (Statement stmt = this.conn.createStatement();
+				ResultSet rs = stmt.executeQuery("select last_insert_rowid()")) {
+			rs.next();
+			id = rs.getLong(1);
+		}
+		this.registros.put(arquivo.chave(), new Registro(id, arquivo.chave(), arquivo.tamanho(), null, 0, arquivo.sistema().origem()));
+		return id;
+	}
+
+	public void conclui(ArquivoEntrada arquivo, long crc, long linhas) throws SQLException {
+		Registro registro = this.registros.get(arquivo.chave());
+		try (PreparedStatement stmt = this.conn.prepareStatement("update pgfn_arquivos set hash = ?, linhas = ? where id = ?")) {
+			stmt.setString(1, hash(crc));
+			stmt.setLong(2, linhas);
+			stmt.setLong(3, registro.id());
+			stmt.executeUpdate();
+		}
+		this.registros.put(registro.caminho(), new Registro(registro.id(), registro.caminho(), registro.tamanho(), hash(crc), linhas, registro.origem()));
+	}
+}
@@ -0,0 +1,43 @@
+package com.ric.dividapgfn.carga;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.sqlite.SQLiteConnection;
+import org.tinylog.Logger;
+
+//Configurações do SQLite para carga em massa. Com journal TRUNCATE e sem sincronização, a interrupção do processo desfaz
+//apenas a transação em andamento, o que permite retomar a carga a partir do último commit; só uma queda do sistema
+//operacional pode deixar a base inconsistente. As configurações seguras são restauradas ao final da carga.
+public final class PerfilCarga {
+	private static final int CACHE_CARGA_KB = 256 * 1024;
+
+	private PerfilCarga() { }
+
+	public static void aplica(SQLiteConnection conn) throws SQLException {
+		executa(conn,
+				"PRAGMA journal_mode = TRUNCATE",
+				"PRAGMA synchronous = OFF",
+				"PRAGMA cache_size = -" + CACHE_CARGA_KB,
+				"PRAGMA locking_mode = EXCLUSIVE");
+		Logger.info("Perfil de carga: journal_mode=TRUNCATE, synchronous=OFF, cache_size={} KB, locking_mode=EXCLUSIVE", CACHE_CARGA_KB);
+	}
+
+	public static void restaura(SQLiteConnection conn) throws SQLException {
+		executa(conn,
+				"PRAGMA journal_mode = DELETE",
+				"PRAGMA synchronous = FULL",
+				"PRAGMA cache_size = -2000",
+				"PRAGMA locking_mode = NORMAL",
+				"SELECT count(*) FROM sqlite_master"); //Libera o lock exclusivo
+		Logger.info("Perfil padrão restaurado: journal_mode=DELETE, synchronous=FULL, locking_mode=NORMAL");
+	}
+
+	private static void executa(SQLiteConnection conn, String... comandos) throws SQLException {
+		try (Statement stmt = conn.createStatement();) {
+			for (String comando : comandos) {
+				stmt.execute(comando);
+			}
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.ric.dividapgfn.carga;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sqlite.SQLiteConnection;
+
+import com.ric.dividapgfn.util.Common;
+
+//Pontos de retomada da carga (tabela pgfn_retomada). Para cada arquivo em carga, guarda a quantidade de linhas já gravadas
+//em transações confirmadas: a linha da tabela é atualizada em cada commit periódico, na mesma transação das linhas do
+//arquivo, e removida quando o arquivo é concluído no manifesto. A existência da tabela indica uma carga não terminada;
+//ela é removida no commit final.
+public final class Retomada implements AutoCloseable {
+	public static final String TABELA = "pgfn_retomada";
+
+	private final PreparedStatement stmtRegistra;
+	private final PreparedStatement stmtConclui;
+	private final Map<Long,Long> linhas = new HashMap<>();
+
+	public Retomada(SQLiteConnection conn) throws SQLException {
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("select id_arquivo, linhas from " + TABELA)) {
+			while (rs.next()) {
+				this.linhas.put(rs.getLong(1), rs.getLong(2));
+			}
+		}
+		this.stmtRegistra = conn.prepareStatement("insert or replace into " + TABELA + " (id_arquivo, linhas) values (?,?)");
+		this.stmtConclui = conn.prepareStatement("delete from " + TABELA + " where id_arquivo = ?");
+	}
+
+	public static void cria(SQLiteConnection conn) throws SQLException {
+		Common.executeUpdateStatement(conn, """
+				CREATE TABLE IF NOT EXISTS %s(
+					id_arquivo INTEGER PRIMARY KEY,
+					linhas INTEGER NOT NULL
+				)""".formatted(TABELA));
+	}
+
+	public static boolean existe(SQLiteConnection conn) throws SQLException {
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("select count(*) from sqlite_master where type = 'table' and name = '" + TABELA + "'")) {
+			return rs.next() && rs.getInt(1) > 0;
+		}
+	}
+
+	public static void remove(SQLiteConnection conn) throws SQLException {
+		Common.executeUpdateStatement(conn, "DROP TABLE IF EXISTS " + TABELA);
+	}
+
+	//Linhas do arquivo gravadas antes da interrupção; as seguintes foram desfeitas com a transação em andamento
+	public long linhas(long idArquivo) {
+		return this.linhas.getOrDefault(idArquivo, 0L);
+	}
+
+	public void registra(long idArquivo, long linhas) throws SQLException {
+		this.stmtRegistra.setLong(1, idArquivo);
+		this.stmtRegistra.setLong(2, linhas);
+		this.stmtRegistra.executeUpdate();
+	}
+
+	public void conclui(long idArquivo) throws SQLException {
+		this.stmtConclui.setLong(1, idArquivo);
+		this.stmtConclui.executeUpdate();
+	}
+
+	@Override
+	public void close() throws SQLException {
+		this.stmtRegistra.close();
+		this.stmtConclui.close();
+	}
+}
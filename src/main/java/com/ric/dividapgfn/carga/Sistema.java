@@ -0,0 +1,47 @@
+package com.ric.dividapgfn.carga;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Optional;
+
+public enum Sistema {
+	FGTS("FGTS", "FGTS"),
+	PREVIDENCIARIO("Previdenciario", "PREVIDENCIARIO"),
+	NAO_PREVIDENCIARIO("Nao_Previdenciario", "GERAL");
+
+	private final String diretorio;
+	private final String origem;
+
+	private Sistema(String diretorio, String origem) {
+		this.diretorio = diretorio;
+		this.origem = origem;
+	}
+
+	public String diretorio() {
+		return this.diretorio;
+	}
+
+	//Valor da coluna arquivo_origem
+	public String origem() {
+		return this.origem;
+	}
+
+	//Identifica o sistema pelo caminho de um arquivo, como os nomes usados pela PGFN
+	//(Dados_abertos_Nao_Previdenciario.zip, arquivo_lai_SIDA_SP_202303.csv, arquivo_lai_PREV_SP_202303.csv...)
+	public static Optional<Sistema> identifica(String caminho) {
+		String nome = Normalizer
+				.normalize(caminho, Normalizer.Form.NFD)
+				.replaceAll("\\p{M}", "")
+				.toUpperCase(Locale.ROOT)
+				.replace(' ', '_');
+		if (nome.contains("NAO_PREV") || nome.contains("SIDA")) {
+			return Optional.of(NAO_PREVIDENCIARIO);
+		} else if (nome.contains("PREV")) {
+			return Optional.of(PREVIDENCIARIO);
+		} else if (nome.contains("FGTS")) {
+			return Optional.of(FGTS);
+		} else {
+			return Optional.empty();
+		}
+	}
+}
@@ -0,0 +1,475 @@
+package com.ric.dividapgfn.csv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.tinylog.Logger;
+
+import com.ric.dividapgfn.csv.Flatbuffer.Tabela;
+
+//Exporta um ResultSet no formato de arquivo Arrow IPC (versão V5 dos metadados), lido diretamente por pyarrow, pandas, polars etc.
+//Os tipos das colunas são definidos pelo primeiro lote de linhas: inteiros como int64, reais como float64, colunas em centavos
+//como decimal(19,2), colunas data_* com datas dd/mm/aaaa ou aaaammdd como date32 e as demais como texto. Colunas de texto com
+//poucos valores distintos no primeiro lote são gravadas como dicionário, com os dicionários completos gravados ao final do arquivo.
+//Valores posteriores incompatíveis com o tipo da coluna são gravados como nulos, com aviso no log.
+public class ArrowWriter {
+	public static final int LINHAS_LOTE = 64 * 1024;
+
+	private static final byte[] MAGICO = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+	private static final int VERSAO_METADADOS = 4;
+	private static final int CABECALHO_ESQUEMA = 1;
+	private static final int CABECALHO_DICIONARIO = 2;
+	private static final int CABECALHO_LOTE = 3;
+	private static final int TIPO_INT = 2;
+	private static final int TIPO_FLOAT = 3;
+	private static final int TIPO_UTF8 = 5;
+	private static final int TIPO_DECIMAL = 7;
+	private static final int TIPO_DATA = 8;
+
+	private enum Tipo { INTEIRO, REAL, CENTAVOS, DATA, TEXTO, DICIONARIO }
+
+	private record Bloco(long deslocamento, int tamanhoMetadados, long tamanhoCorpo) { }
+
+	private final Set<String> colunasCentavos;
+
+	public ArrowWriter() {
+		this(Set.of());
+	}
+
+	//As colunas indicadas contêm valores inteiros em centavos e são exportadas como decimal(19,2)
+	public ArrowWriter(Set<String> colunasCentavos) {
+		this.colunasCentavos = colunasCentavos;
+	}
+
+	//Retorna a quantidade de linhas gravadas
+	public long write(ResultSet rs, OutputStream out) throws SQLException, IOException {
+		ResultSetMetaData metadata = rs.getMetaData();
+		int colCount = metadata.getColumnCount();
+		Saida saida = new Saida(out);
+
+		Object[][] lote = new Object[LINHAS_LOTE][];
+		int linhas = leLote(rs, lote, colCount);
+		Coluna[] colunas = new Coluna[colCount];
+		for (int col = 0; col < colCount; col++) {
+			String nome = metadata.getColumnName(col + 1);
+			colunas[col] = new Coluna(col, nome, tipo(lote, linhas, col, nome));
+		}
+
+		saida.bytes(MAGICO);
+		saida.bytes(new byte[2]);
+		Tabela esquema = esquema(colunas);
+		mensagem(saida, CABECALHO_ESQUEMA, esquema, new Corpo());
+
+		List<Bloco> lotes = new ArrayList<>();
+		long total = 0;
+		while (linhas > 0) {
+			total += linhas;
+			Corpo corpo = new Corpo();
+			for (Coluna coluna : colunas) {
+				coluna.codifica(lote, linhas, corpo);
+			}
+			lotes.add(mensagem(saida, CABECALHO_LOTE, corpo.lote(linhas), corpo));
+			linhas = linhas == LINHAS_LOTE ? leLote(rs, lote, colCount) : 0;
+		}
+
+		List<Bloco> dicionarios = new ArrayList<>();
+		for (Coluna coluna : colunas) {
+			if (coluna.tipo == Tipo.DICIONARIO) {
+				Corpo corpo = new Corpo();
+				coluna.codificaDicionario(corpo);
+				Tabela dicionario = new Tabela()
+						.int64(0, coluna.indice)
+						.tabela(1, corpo.lote(coluna.valores.size()));
+				dicionarios.add(mensagem(saida, CABECALHO_DICIONARIO, dicionario, corpo));
+			}
+		}
+
+		//Fim do fluxo, seguido do rodapé com a posição de cada mensagem
+		saida.int32(0xFFFFFFFF);
+		saida.int32(0);
+		byte[] rodape = Flatbuffer.codifica(new Tabela()
+				.int16(0, VERSAO_METADADOS)
+				.tabela(1, esquema(colunas))
+				.structs(2, dicionarios.size(), blocos(dicionarios))
+				.structs(3, lotes.size(), blocos(lotes)));
+		saida.bytes(rodape);
+		saida.int32(rodape.length);
+		saida.bytes(MAGICO);
+
+		for (Coluna coluna : colunas) {
+			if (coluna.incompativeis > 0) {
+				Logger.warn("Coluna {}: {} valores incompatíveis com o tipo {} gravados como nulos", coluna.nome, coluna.incompativeis, coluna.tipo);
+			}
+		}
+		return total;
+	}
+
+	private static int leLote(ResultSet rs, Object[][] lote, int colCount) throws SQLException {
+		int linhas = 0;
+		while (linhas < lote.length && rs.next()) {
+			Object[] linha = new Object[colCount];
+			for (int col = 0; col < colCount; col++) {
+				linha[col] = rs.getObject(col + 1);
+			}
+			lote[linhas++] = linha;
+		}
+		return linhas;
+	}
+
+	private Tipo tipo(Object[][] lote, int linhas, int col, String nome) {
+		boolean inteiros = true;
+		boolean numeros = true;
+		int naoNulos = 0;
+		for (int i = 0; i < linhas; i++) {
+			Object valor = lote[i][col];
+			if (valor == null) {
+				continue;
+			}
+			naoNulos++;
+			if (valor instanceof Double) {
+				inteiros = false;
+			} else if (!(valor instanceof Integer || valor instanceof Long)) {
+				inteiros = false;
+				numeros = false;
+			}
+		}
+		if (this.colunasCentavos.contains(nome.toLowerCase(Locale.ROOT)) && numeros) {
+			return Tipo.CENTAVOS;
+		} else if (naoNulos > 0 && inteiros) {
+			return Tipo.INTEIRO;
+		} else if (naoNulos > 0 && numeros) {
+			return Tipo.REAL;
+		}
+
+		boolean datas = nome.toLowerCase(Locale.ROOT).startsWith("data_");
+		Set<Object> distintos = new HashSet<>();
+		for (int i = 0; i < linhas; i++) {
+			Object valor = lote[i][col];
+			if (valor != null) {
+				datas &= data(valor.toString()) != null;
+				if (distintos.size() * 4 <= naoNulos) {
+					distintos.add(valor);
+				}
+			}
+		}
+		if (naoNulos > 0 && datas) {
+			return Tipo.DATA;
+		}
+		return naoNulos > 0 && distintos.size() * 4 <= naoNulos ? Tipo.DICIONARIO : Tipo.TEXTO;
+	}
+
+	//Dias desde 1970-01-01 de uma data dd/mm/aaaa ou aaaammdd, ou nulo se o texto não for uma data válida
+	private static Integer data(String texto) {
+		int dia;
+		int mes;
+		int ano;
+		if (texto.length() == 10 && texto.charAt(2) == '/' && texto.charAt(5) == '/') {
+			dia = digitos(texto, 0, 2);
+			mes = digitos(texto, 3, 5);
+			ano = digitos(texto, 6, 10);
+		} else if (texto.length() == 8) {
+			ano = digitos(texto, 0, 4);
+			mes = digitos(texto, 4, 6);
+			dia = digitos(texto, 6, 8);
+		} else {
+			return null;
+		}
+		if (dia < 0 || mes < 0 || ano < 0) {
+			return null;
+		}
+		try {
+			return (int) LocalDate.of(ano, mes, dia).toEpochDay();
+		} catch (DateTimeException e) {
+			return null;
+		}
+	}
+
+	private static int digitos(String texto, int inicio, int fim) {
+		int valor = 0;
+		for (int i = inicio; i < fim; i++) {
+			char c = texto.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			valor = valor * 10 + (c - '0');
+		}
+		return valor;
+	}
+
+	private static Tabela esquema(Coluna[] colunas) {
+		List<Tabela> campos = new ArrayList<>();
+		for (Coluna coluna : colunas) {
+			Tabela campo = new Tabela()
+					.texto(0, coluna.nome)
+					.int8(1, 1)
+					.tabelas(5, List.of());
+			switch (coluna.tipo) {
+			case INTEIRO -> campo.int8(2, TIPO_INT).tabela(3, new Tabela().int32(0, 64).int8(1, 1));
+			case REAL -> campo.int8(2, TIPO_FLOAT).tabela(3, new Tabela().int16(0, 2));
+			case CENTAVOS -> campo.int8(2, TIPO_DECIMAL).tabela(3, new Tabela().int32(0, 19).int32(1, 2).int32(2, 128));
+			case DATA -> campo.int8(2, TIPO_DATA).tabela(3, new Tabela().int16(0, 0));
+			case TEXTO -> campo.int8(2, TIPO_UTF8).tabela(3, new Tabela());
+			case DICIONARIO -> campo.int8(2, TIPO_UTF8).tabela(3, new Tabela())
+					.tabela(4, new Tabela().int64(0, coluna.indice).tabela(1, new Tabela().int32(0, 32).int8(1, 1)).int8(2, 0));
+			}
+			campos.add(campo);
+		}
+		return new Tabela().int16(0, 0).tabelas(1, campos);
+	}
+
+	//Mensagem encapsulada: marcador de continuação, tamanho dos metadados, metadados (Message) e corpo, todos alinhados em 8 bytes
+	private static Bloco mensagem(Saida saida, int tipoCabecalho, Tabela cabecalho, Corpo corpo) throws IOException {
+		byte[] metadados = Flatbuffer.codifica(new Tabela()
+				.int16(0, VERSAO_METADADOS)
+				.int8(1, tipoCabecalho)
+				.tabela(2, cabecalho)
+				.int64(3, corpo.tamanho));
+		long deslocamento = saida.posicao;
+		saida.int32(0xFFFFFFFF);
+		saida.int32(metadados.length);
+		saida.bytes(metadados);
+		saida.bytes(corpo.dados, corpo.tamanho);
+		return new Bloco(deslocamento, 8 + metadados.length, corpo.tamanho);
+	}
+
+	private static byte[] blocos(List<Bloco> blocos) {
+		Corpo dados = new Corpo();
+		for (Bloco bloco : blocos) {
+			dados.int64(bloco.deslocamento());
+			dados.int32(bloco.tamanhoMetadados());
+			dados.int32(0);
+			dados.int64(bloco.tamanhoCorpo());
+		}
+		return Arrays.copyOf(dados.dados, dados.tamanho);
+	}
+
+	private final class Coluna {
+		private final int indice;
+		private final String nome;
+		private final Tipo tipo;
+		private final Map<String,Integer> codigos = new HashMap<>();
+		private final List<String> valores = new ArrayList<>();
+		private long incompativeis;
+
+		Coluna(int indice, String nome, Tipo tipo) {
+			this.indice = indice;
+			this.nome = nome;
+			this.tipo = tipo;
+		}
+
+		//Buffers de cada coluna: validade e valores, ou validade, deslocamentos e bytes UTF-8 para texto
+		void codifica(Object[][] lote, int linhas, Corpo corpo) {
+			byte[] validade = new byte[(linhas + 7) / 8];
+			int nulos = 0;
+			Corpo valores = new Corpo();
+			Corpo textos = this.tipo == Tipo.TEXTO ? new Corpo() : null;
+			if (textos != null) {
+				valores.int32(0);
+			}
+			for (int i = 0; i < linhas; i++) {
+				Object valor = lote[i][this.indice];
+				lote[i][this.indice] = null;
+				boolean valido = valor != null && grava(valor, valores, textos);
+				if (valido) {
+					validade[i >> 3] |= (byte) (1 << (i & 7));
+				} else {
+					nulos++;
+					if (valor != null) {
+						this.incompativeis++;
+					}
+					if (textos == null) {
+						valores.zeros(largura());
+					}
+				}
+				if (textos != null) {
+					valores.int32(textos.tamanho);
+				}
+			}
+			corpo.no(linhas, nulos);
+			corpo.buffer(nulos > 0 ? validade : new byte[0], nulos > 0 ? validade.length : 0);
+			corpo.buffer(valores.dados, valores.tamanho);
+			if (textos != null) {
+				corpo.buffer(textos.dados, textos.tamanho);
+			}
+		}
+
+		private boolean grava(Object valor, Corpo valores, Corpo textos) {
+			switch (this.tipo) {
+			case INTEIRO, CENTAVOS -> {
+				long inteiro;
+				if (valor instanceof Integer || valor instanceof Long) {
+					inteiro = ((Number) valor).longValue();
+				} else if (valor instanceof Double d && d == Math.rint(d) && Math.abs(d) < 0x1p63) {
+					inteiro = d.longValue();
+				} else {
+					return false;
+				}
+				valores.int64(inteiro);
+				if (this.tipo == Tipo.CENTAVOS) {
+					valores.int64(inteiro < 0 ? -1 : 0);
+				}
+			}
+			case REAL -> {
+				if (!(valor instanceof Number numero)) {
+					return false;
+				}
+				valores.int64(Double.doubleToRawLongBits(numero.doubleValue()));
+			}
+			case DATA -> {
+				Integer dias = data(valor.toString());
+				if (dias == null) {
+					return false;
+				}
+				valores.int32(dias);
+			}
+			case TEXTO -> textos.bytes(valor.toString().getBytes(StandardCharsets.UTF_8));
+			case DICIONARIO -> {
+				String texto = valor.toString();
+				Integer codigo = this.codigos.get(texto);
+				if (codigo == null) {
+					codigo = this.valores.size();
+					this.codigos.put(texto, codigo);
+					this.valores.add(texto);
+				}
+				valores.int32(codigo);
+			}
+			}
+			return true;
+		}
+
+		private int largura() {
+			return switch (this.tipo) {
+			case INTEIRO, REAL -> 8;
+			case CENTAVOS -> 16;
+			default -> 4;
+			};
+		}
+
+		void codificaDicionario(Corpo corpo) {
+			Corpo deslocamentos = new Corpo();
+			Corpo textos = new Corpo();
+			deslocamentos.int32(0);
+			for (String valor : this.valores) {
+				textos.bytes(valor.getBytes(StandardCharsets.UTF_8));
+				deslocamentos.int32(textos.tamanho);
+			}
+			corpo.no(this.valores.size(), 0);
+			corpo.buffer(new byte[0], 0);
+			corpo.buffer(deslocamentos.dados, deslocamentos.tamanho);
+			corpo.buffer(textos.dados, textos.tamanho);
+		}
+	}
+
+	//Corpo de uma mensagem (buffers alinhados em 8 bytes) e a descrição dos nós e buffers para o RecordBatch
+	private static final class Corpo {
+		private byte[] dados = new byte[256];
+		private int tamanho;
+		private Corpo nos;
+		private Corpo buffers;
+		private int quantidadeNos;
+		private int quantidadeBuffers;
+
+		void no(long linhas, long nulos) {
+			if (this.nos == null) {
+				this.nos = new Corpo();
+			}
+			this.nos.int64(linhas);
+			this.nos.int64(nulos);
+			this.quantidadeNos++;
+		}
+
+		void buffer(byte[] bytes, int n) {
+			if (this.buffers == null) {
+				this.buffers = new Corpo();
+			}
+			this.buffers.int64(this.tamanho);
+			this.buffers.int64(n);
+			this.quantidadeBuffers++;
+			garante(n + 8);
+			System.arraycopy(bytes, 0, this.dados, this.tamanho, n);
+			this.tamanho += n;
+			while (this.tamanho % 8 != 0) {
+				this.dados[this.tamanho++] = 0;
+			}
+		}
+
+		Tabela lote(long linhas) {
+			return new Tabela()
+					.int64(0, linhas)
+					.structs(1, this.quantidadeNos, this.nos == null ? new byte[0] : Arrays.copyOf(this.nos.dados, this.nos.tamanho))
+					.structs(2, this.quantidadeBuffers, this.buffers == null ? new byte[0] : Arrays.copyOf(this.buffers.dados, this.buffers.tamanho));
+		}
+
+		void int32(int valor) {
+			garante(4);
+			for (int i = 0; i < 4; i++) {
+				this.dados[this.tamanho++] = (byte) (valor >>> (8 * i));
+			}
+		}
+
+		void int64(long valor) {
+			garante(8);
+			for (int i = 0; i < 8; i++) {
+				this.dados[this.tamanho++] = (byte) (valor >>> (8 * i));
+			}
+		}
+
+		void zeros(int n) {
+			garante(n);
+			Arrays.fill(this.dados, this.tamanho, this.tamanho + n, (byte) 0);
+			this.tamanho += n;
+		}
+
+		void bytes(byte[] bytes) {
+			garante(bytes.length);
+			System.arraycopy(bytes, 0, this.dados, this.tamanho, bytes.length);
+			this.tamanho += bytes.length;
+		}
+
+		private void garante(int adicional) {
+			if (this.tamanho + adicional > this.dados.length) {
+				this.dados = Arrays.copyOf(this.dados, Math.max(this.dados.length * 2, this.tamanho + adicional));
+			}
+		}
+	}
+
+	private static final class Saida {
+		private final OutputStream out;
+		private final byte[] int32 = new byte[4];
+		private long posicao;
+
+		Saida(OutputStream out) {
+			this.out = out;
+		}
+
+		void int32(int valor) throws IOException {
+			for (int i = 0; i < 4; i++) {
+				this.int32[i] = (byte) (valor >>> (8 * i));
+			}
+			bytes(this.int32);
+		}
+
+		void bytes(byte[] bytes) throws IOException {
+			bytes(bytes, bytes.length);
+		}
+
+		void bytes(byte[] bytes, int n) throws IOException {
+			this.out.write(bytes, 0, n);
+			this.posicao += n;
+		}
+	}
+}
@@ -1,7 +1,7 @@
 package com.ric.dividapgfn.csv;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.sql.ResultSet;
@@ -13,85 +13,202 @@ import java.sql.Types;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Objects;
-import java.util.StringJoiner;
+import java.util.Set;
 
+//Sem estado mutável compartilhado: uma mesma instância pode exportar vários ResultSets em paralelo
 public class CSVWriter {
 	private static final DecimalFormat NUMBER_FORMAT = new DecimalFormat("#.###", DecimalFormatSymbols.getInstance(Locale.of("pt", "BR")));
 	private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("dd-MMM-yyyy HH:mm:ss", Locale.of("pt", "BR"));
 	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MMM-yyyy", Locale.of("pt", "BR"));
 	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss", Locale.of("pt", "BR"));
+	private static final int NAO_RESOLVIDO = Integer.MIN_VALUE;
 
 	private final char separador;
+	private final Set<String> colunasCentavos;
 
 	public CSVWriter(char separador) {
-		this.separador = separador;
-	}
-
-	private boolean needsQuote(String str) {
-		return str.contains(Character.toString(this.separador))
-				|| str.contains("\"")
-				|| str.contains("\n")
-				|| str.contains("\r");
+		this(separador, Set.of());
 	}
 
-	private boolean needsEscape(String str) {
-		return str.contains("\"");
-	}
-
-	private String escape(String str) {
-		return str.replace("\"", "\"\"");
+	//As colunas indicadas contêm valores inteiros em centavos e são exportadas como decimais
+	public CSVWriter(char separador, Set<String> colunasCentavos) {
+		this.separador = separador;
+		this.colunasCentavos = colunasCentavos;
 	}
 
-	public void write(ResultSet rs, BufferedWriter out, boolean writeHeader) throws SQLException, IOException {
+	//Retorna a quantidade de linhas gravadas, sem contar o cabeçalho
+	public long write(ResultSet rs, Writer out, boolean writeHeader) throws SQLException, IOException {
 		ResultSetMetaData metadata = rs.getMetaData();
 		int colCount = metadata.getColumnCount();
+		DecimalFormat numberFormat = (DecimalFormat) NUMBER_FORMAT.clone();
+		Linha linha = new Linha(this.separador);
 
 		if (writeHeader) {
-			StringJoiner header = new StringJoiner(Character.toString(this.separador));
 			for (int col=0; col<colCount; ++col) {
-				String str = metadata.getColumnName(col+1);
-				if (needsEscape(str)) {
-					str = escape(str);
-				}
-				if (needsQuote(str)) {
-					str = new StringBuilder().append('"').append(str).append('"').toString();
-				}
-				header.add(str);
+				linha.campo(metadata.getColumnName(col+1));
 			}
-			out.append(header.toString());
-			out.append('\n');
+			linha.escreve(out);
+		}
+
+		Coluna[] colunas = new Coluna[colCount];
+		for (int col=0; col<colCount; ++col) {
+			colunas[col] = new Coluna(col+1, this.colunasCentavos.contains(metadata.getColumnLabel(col+1).toLowerCase(Locale.ROOT)));
 		}
 
+		long linhas = 0;
 		while (rs.next()) {
-			StringJoiner row = new StringJoiner(Character.toString(this.separador));
-			for (int col=0; col<colCount; ++col) {
-				int colType = metadata.getColumnType(col+1);
-				String str = columnToString(rs, col+1, colType);
-				if (needsEscape(str)) {
-					str = escape(str);
+			for (Coluna coluna : colunas) {
+				linha.campo(coluna.texto(rs, metadata, numberFormat));
+			}
+			linha.escreve(out);
+			linhas++;
+		}
+		return linhas;
+	}
+
+	//O tipo informado pelo sqlite-jdbc depende da classe de armazenamento do valor em cada linha. Cada coluna guarda o tipo
+	//já resolvido para cada classe, e o valor lido uma única vez com getObject é formatado diretamente nos casos comuns.
+	private static final class Coluna {
+		private static final int INTEIRO = 0;
+		private static final int LONGO = 1;
+		private static final int REAL = 2;
+		private static final int TEXTO = 3;
+		private static final int NULO = 4;
+		private static final int OUTRO = 5;
+
+		private final int col;
+		private final boolean centavos;
+		private final int[] tipos = new int[6];
+
+		Coluna(int col, boolean centavos) {
+			this.col = col;
+			this.centavos = centavos;
+			Arrays.fill(this.tipos, NAO_RESOLVIDO);
+		}
+
+		String texto(ResultSet rs, ResultSetMetaData metadata, DecimalFormat numberFormat) throws SQLException {
+			if (this.centavos) {
+				return handleCentavos(rs, this.col);
+			}
+
+			Object valor = rs.getObject(this.col);
+			int classe;
+			if (valor == null) {
+				classe = NULO;
+			} else if (valor instanceof String) {
+				classe = TEXTO;
+			} else if (valor instanceof Integer) {
+				classe = INTEIRO;
+			} else if (valor instanceof Double) {
+				classe = REAL;
+			} else if (valor instanceof Long) {
+				classe = LONGO;
+			} else {
+				classe = OUTRO;
+			}
+			int colType = this.tipos[classe];
+			if (colType == NAO_RESOLVIDO) {
+				colType = metadata.getColumnType(this.col);
+				this.tipos[classe] = colType;
+			}
+
+			String strVal;
+			if (classe == NULO && colType != Types.CLOB && colType != Types.NCLOB) {
+				return "";
+			} else if (classe == TEXTO && (colType == Types.VARCHAR || colType == Types.LONGVARCHAR || colType == Types.CHAR)) {
+				strVal = (String) valor;
+			} else if (classe == INTEIRO && (colType == Types.INTEGER || colType == Types.BIGINT)) {
+				strVal = Integer.toString((Integer) valor);
+			} else if (classe == LONGO && colType == Types.BIGINT) {
+				strVal = Long.toString((Long) valor);
+			} else if (classe == REAL && (colType == Types.DECIMAL || colType == Types.REAL || colType == Types.NUMERIC)) {
+				strVal = numberFormat.format(BigDecimal.valueOf((Double) valor));
+			} else {
+				return columnToString(rs, this.col, colType, numberFormat);
+			}
+			return strVal.trim();
+		}
+	}
+
+	//Monta a linha em um buffer reaproveitado, com aspas e escape decididos em uma única passada por valor
+	private static final class Linha {
+		private final char separador;
+		private char[] buffer = new char[4096];
+		private int tamanho;
+		private boolean primeiro = true;
+
+		Linha(char separador) {
+			this.separador = separador;
+		}
+
+		void campo(String str) {
+			int n = str.length();
+			boolean quote = false;
+			int aspas = 0;
+			for (int i=0; i<n; ++i) {
+				char c = str.charAt(i);
+				if (c == '"') {
+					quote = true;
+					aspas += 1;
+				} else if (c == this.separador || c == '\n' || c == '\r') {
+					quote = true;
 				}
-				if (needsQuote(str)) {
-					str = new StringBuilder().append('"').append(str).append('"').toString();
+			}
+
+			garante(n + aspas + 3);
+			if (!this.primeiro) {
+				this.buffer[this.tamanho++] = this.separador;
+			}
+			this.primeiro = false;
+
+			if (!quote) {
+				str.getChars(0, n, this.buffer, this.tamanho);
+				this.tamanho += n;
+				return;
+			}
+			this.buffer[this.tamanho++] = '"';
+			if (aspas == 0) {
+				str.getChars(0, n, this.buffer, this.tamanho);
+				this.tamanho += n;
+			} else {
+				for (int i=0; i<n; ++i) {
+					char c = str.charAt(i);
+					this.buffer[this.tamanho++] = c;
+					if (c == '"') {
+						this.buffer[this.tamanho++] = '"';
+					}
 				}
-				row.add(str);
 			}
+			this.buffer[this.tamanho++] = '"';
+		}
+
+		void escreve(Writer out) throws IOException {
+			garante(1);
+			this.buffer[this.tamanho++] = '\n';
+			out.write(this.buffer, 0, this.tamanho);
+			this.tamanho = 0;
+			this.primeiro = true;
+		}
 
-			out.append(row.toString());
-			out.append('\n');
+		private void garante(int adicional) {
+			if (this.tamanho + adicional > this.buffer.length) {
+				this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.tamanho + adicional));
+			}
 		}
 	}
 
-	private String columnToString(ResultSet rs, int col, int colType) throws SQLException {
+	private static String columnToString(ResultSet rs, int col, int colType, DecimalFormat numberFormat) throws SQLException {
 		String strVal = switch (colType) {
 		case Types.BOOLEAN -> Boolean.toString(rs.getBoolean(col));
 		case Types.NCLOB, Types.CLOB -> throw new RuntimeException("Unsupported");
-		case Types.DECIMAL, Types.REAL, Types.NUMERIC -> handleDecimal(rs, col);
+		case Types.DECIMAL, Types.REAL, Types.NUMERIC -> handleDecimal(rs, col, numberFormat);
 		case Types.BIGINT -> handleBigInt(rs, col);
 		case Types.INTEGER, Types.TINYINT, Types.SMALLINT -> Integer.toString(rs.getInt(col));
-		case Types.DOUBLE -> NUMBER_FORMAT.format(rs.getDouble(col));
-		case Types.FLOAT -> NUMBER_FORMAT.format(rs.getFloat(col));
+		case Types.DOUBLE -> numberFormat.format(rs.getDouble(col));
+		case Types.FLOAT -> numberFormat.format(rs.getFloat(col));
 		case Types.DATE -> handleDate(rs, col);
 		case Types.TIME -> handleTime(rs, col);
 		case Types.TIMESTAMP -> handleTimestamp(rs, col);
@@ -106,17 +223,40 @@ public class CSVWriter {
 		}
 	}
 
-	private String handleBigInt(ResultSet rs, int col) throws SQLException {
+	private static String handleBigInt(ResultSet rs, int col) throws SQLException {
 		BigDecimal d = rs.getBigDecimal(col);
 		return Objects.toString(d != null ? d.toBigInteger() : null);
 	}
 
-	private String handleDecimal(ResultSet rs, int col) throws SQLException {
+	private static String handleDecimal(ResultSet rs, int col, DecimalFormat numberFormat) throws SQLException {
 		BigDecimal d = rs.getBigDecimal(col);
-		return d != null ? NUMBER_FORMAT.format(d) : null;
+		return d != null ? numberFormat.format(d) : null;
+	}
+
+	private static String handleCentavos(ResultSet rs, int col) throws SQLException {
+		long centavos = rs.getLong(col);
+		return rs.wasNull() ? "" : formatCentavos(centavos);
+	}
+
+	//Mesmo formato de NUMBER_FORMAT (vírgula decimal, sem separador de milhar, sem zeros à direita), sem aritmética decimal
+	public static String formatCentavos(long centavos) {
+		long abs = Math.abs(centavos);
+		int fracao = (int) (abs % 100);
+		StringBuilder sb = new StringBuilder(24);
+		if (centavos < 0) {
+			sb.append('-');
+		}
+		sb.append(abs / 100);
+		if (fracao != 0) {
+			sb.append(',').append((char) ('0' + fracao / 10));
+			if (fracao % 10 != 0) {
+				sb.append((char) ('0' + fracao % 10));
+			}
+		}
+		return sb.toString();
 	}
 
-	private String handleDate(ResultSet rs, int col) throws SQLException {
+	private static String handleDate(ResultSet rs, int col) throws SQLException {
 		Date d = rs.getDate(col);
 		if (d != null) {
 			return d.toLocalDate().format(DATE_FORMAT);
@@ -125,7 +265,7 @@ public class CSVWriter {
 		}
 	}
 
-	private String handleTimestamp(ResultSet rs, int col) throws SQLException {
+	private static String handleTimestamp(ResultSet rs, int col) throws SQLException {
 		Timestamp t = rs.getTimestamp(col);
 		if (t != null) {
 			return t.toLocalDateTime().format(DATE_TIME_FORMAT);
@@ -134,7 +274,7 @@ public class CSVWriter {
 		}
 	}
 
-	private String handleTime(ResultSet rs, int col) throws SQLException {
+	private static String handleTime(ResultSet rs, int col) throws SQLException {
 		Time t = rs.getTime(col);
 		if (t != null) {
 			return t.toLocalTime().format(TIME_FORMAT);
@@ -0,0 +1,209 @@
+package com.ric.dividapgfn.csv;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//Codificação mínima de FlatBuffers, suficiente para os metadados do formato Arrow IPC. Cada objeto é gravado antes dos
+//objetos que referencia, de modo que as referências (deslocamentos sem sinal) sempre apontam para frente, como exige o formato.
+final class Flatbuffer {
+	private record Escalar(int tamanho, long valor) { }
+	private record Texto(String valor) { }
+	private record Tabelas(List<Tabela> valores) { }
+	private record Structs(int quantidade, byte[] dados) { }
+
+	//Campos indexados pela posição (slot) definida no esquema .fbs
+	static final class Tabela {
+		private final List<Object> campos = new ArrayList<>();
+
+		Tabela int8(int slot, int valor) {
+			return campo(slot, new Escalar(1, valor));
+		}
+
+		Tabela int16(int slot, int valor) {
+			return campo(slot, new Escalar(2, valor));
+		}
+
+		Tabela int32(int slot, int valor) {
+			return campo(slot, new Escalar(4, valor));
+		}
+
+		Tabela int64(int slot, long valor) {
+			return campo(slot, new Escalar(8, valor));
+		}
+
+		Tabela tabela(int slot, Tabela valor) {
+			return campo(slot, valor);
+		}
+
+		Tabela texto(int slot, String valor) {
+			return campo(slot, new Texto(valor));
+		}
+
+		Tabela tabelas(int slot, List<Tabela> valores) {
+			return campo(slot, new Tabelas(valores));
+		}
+
+		//Vetor de structs com alinhamento de 8 bytes, já codificados em little-endian
+		Tabela structs(int slot, int quantidade, byte[] dados) {
+			return campo(slot, new Structs(quantidade, dados));
+		}
+
+		private Tabela campo(int slot, Object valor) {
+			while (this.campos.size() <= slot) {
+				this.campos.add(null);
+			}
+			this.campos.set(slot, valor);
+			return this;
+		}
+	}
+
+	private byte[] buffer = new byte[1024];
+	private int posicao;
+
+	private Flatbuffer() { }
+
+	//O tamanho do resultado é múltiplo de 8
+	static byte[] codifica(Tabela raiz) {
+		Flatbuffer fb = new Flatbuffer();
+		fb.int32(0);
+		fb.grava32(0, fb.tabela(raiz));
+		fb.alinha(8, 0);
+		return Arrays.copyOf(fb.buffer, fb.posicao);
+	}
+
+	//A tabela começa em posição ≡ 4 (mod 8): após o deslocamento para a vtable, os campos de 8 bytes ficam alinhados.
+	//Os campos são dispostos em ordem decrescente de tamanho, o que mantém o alinhamento de todos.
+	private int tabela(Tabela t) {
+		int slots = t.campos.size();
+		List<Integer> ordem = new ArrayList<>();
+		for (int slot = 0; slot < slots; slot++) {
+			if (t.campos.get(slot) != null) {
+				ordem.add(slot);
+			}
+		}
+		ordem.sort((a, b) -> Integer.compare(tamanho(t.campos.get(b)), tamanho(t.campos.get(a))));
+		int[] deslocamentos = new int[slots];
+		int tamanhoTabela = 4;
+		for (int slot : ordem) {
+			deslocamentos[slot] = tamanhoTabela;
+			tamanhoTabela += tamanho(t.campos.get(slot));
+		}
+
+		alinha(2, 0);
+		int vtable = this.posicao;
+		int16(4 + 2 * slots);
+		int16(tamanhoTabela);
+		for (int slot = 0; slot < slots; slot++) {
+			int16(deslocamentos[slot]);
+		}
+		alinha(8, 4);
+		int inicio = this.posicao;
+		int32(inicio - vtable);
+
+		int[] referencias = new int[slots];
+		for (int slot : ordem) {
+			Object campo = t.campos.get(slot);
+			if (campo instanceof Escalar escalar) {
+				escalar(escalar.tamanho(), escalar.valor());
+			} else {
+				referencias[slot] = this.posicao;
+				int32(0);
+			}
+		}
+		for (int slot : ordem) {
+			Object campo = t.campos.get(slot);
+			int destino;
+			if (campo instanceof Tabela tabela) {
+				destino = tabela(tabela);
+			} else if (campo instanceof Texto texto) {
+				destino = texto(texto.valor());
+			} else if (campo instanceof Tabelas tabelas) {
+				destino = tabelas(tabelas.valores());
+			} else if (campo instanceof Structs structs) {
+				destino = structs(structs.quantidade(), structs.dados());
+			} else {
+				continue;
+			}
+			grava32(referencias[slot], destino - referencias[slot]);
+		}
+		return inicio;
+	}
+
+	private int texto(String valor) {
+		byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+		alinha(4, 0);
+		int inicio = this.posicao;
+		int32(bytes.length);
+		bytes(bytes);
+		escalar(1, 0);
+		return inicio;
+	}
+
+	private int tabelas(List<Tabela> valores) {
+		alinha(4, 0);
+		int inicio = this.posicao;
+		int32(valores.size());
+		int elementos = this.posicao;
+		for (int i = 0; i < valores.size(); i++) {
+			int32(0);
+		}
+		for (int i = 0; i < valores.size(); i++) {
+			int elemento = elementos + 4 * i;
+			grava32(elemento, tabela(valores.get(i)) - elemento);
+		}
+		return inicio;
+	}
+
+	private int structs(int quantidade, byte[] dados) {
+		alinha(8, 4);
+		int inicio = this.posicao;
+		int32(quantidade);
+		bytes(dados);
+		return inicio;
+	}
+
+	private static int tamanho(Object campo) {
+		return campo instanceof Escalar escalar ? escalar.tamanho() : 4;
+	}
+
+	private void alinha(int alinhamento, int resto) {
+		while (this.posicao % alinhamento != resto) {
+			escalar(1, 0);
+		}
+	}
+
+	private void int16(int valor) {
+		escalar(2, valor);
+	}
+
+	private void int32(int valor) {
+		escalar(4, valor);
+	}
+
+	private void escalar(int tamanho, long valor) {
+		garante(tamanho);
+		for (int i = 0; i < tamanho; i++) {
+			this.buffer[this.posicao++] = (byte) (valor >>> (8 * i));
+		}
+	}
+
+	private void bytes(byte[] bytes) {
+		garante(bytes.length);
+		System.arraycopy(bytes, 0, this.buffer, this.posicao, bytes.length);
+		this.posicao += bytes.length;
+	}
+
+	private void grava32(int posicao, int valor) {
+		for (int i = 0; i < 4; i++) {
+			this.buffer[posicao + i] = (byte) (valor >>> (8 * i));
+		}
+	}
+
+	private void garante(int adicional) {
+		if (this.posicao + adicional > this.buffer.length) {
+			this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.posicao + adicional));
+		}
+	}
+}
@@ -0,0 +1,6 @@
+package com.ric.dividapgfn.csv;
+
+public enum Formato {
+	CSV,
+	ARROW;
+}
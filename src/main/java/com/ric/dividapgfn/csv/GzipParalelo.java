@@ -0,0 +1,161 @@
+package com.ric.dividapgfn.csv;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import com.ric.dividapgfn.util.Common;
+
+//Gzip em blocos independentes, comprimidos em paralelo (como o pigz). Cada bloco é um membro gzip completo e o arquivo
+//resultante é um .gz comum, lido por qualquer descompactador. Os blocos terminam em fim de linha, e o índice opcional
+//guarda a posição de cada membro no arquivo comprimido e no original, para que leitores possam dividir o arquivo.
+public final class GzipParalelo extends OutputStream {
+	public static final int TAMANHO_BLOCO = 1 << 20;
+
+	private record Membro(long deslocamentoOriginal, int tamanhoOriginal, byte[] dados) { }
+
+	private final OutputStream out;
+	private final ExecutorService executor;
+	private final int maxPendentes;
+	private final Path arquivoIndice;
+	private final ArrayDeque<Future<Membro>> pendentes = new ArrayDeque<>();
+	private final List<long[]> indice = new ArrayList<>();
+	private byte[] bloco = new byte[TAMANHO_BLOCO];
+	private int tamanho;
+	private long deslocamentoOriginal;
+	private long deslocamentoComprimido;
+	private boolean fechado;
+
+	//arquivoIndice pode ser nulo. O executor é compartilhado e não é encerrado aqui.
+	public GzipParalelo(OutputStream out, ExecutorService executor, int threads, Path arquivoIndice) {
+		this.out = out;
+		this.executor = executor;
+		this.maxPendentes = Math.max(2, threads * 2);
+		this.arquivoIndice = arquivoIndice;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (this.tamanho == this.bloco.length) {
+			enviaBloco();
+		}
+		this.bloco[this.tamanho++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (this.tamanho == this.bloco.length) {
+				enviaBloco();
+			}
+			int n = Math.min(len, this.bloco.length - this.tamanho);
+			System.arraycopy(b, off, this.bloco, this.tamanho, n);
+			this.tamanho += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	//Não força o envio de um bloco parcial: cada flush criaria um membro pequeno
+	@Override
+	public void flush() throws IOException {
+		this.out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.fechado) {
+			return;
+		}
+		this.fechado = true;
+		try {
+			if (this.tamanho > 0) {
+				submete(Arrays.copyOf(this.bloco, this.tamanho), this.tamanho);
+				this.tamanho = 0;
+			}
+			while (!this.pendentes.isEmpty()) {
+				gravaProximo();
+			}
+			if (this.arquivoIndice != null) {
+				gravaIndice();
+			}
+		} finally {
+			for (Future<Membro> pendente : this.pendentes) {
+				pendente.cancel(true);
+			}
+			this.out.close();
+		}
+	}
+
+	//O bloco é cortado no último fim de linha; o restante passa para o bloco seguinte. Uma linha maior que o bloco é cortada no meio.
+	private void enviaBloco() throws IOException {
+		int corte = this.tamanho;
+		for (int i = this.tamanho - 1; i >= 0; i--) {
+			if (this.bloco[i] == '\n') {
+				corte = i + 1;
+				break;
+			}
+		}
+		byte[] proximo = new byte[TAMANHO_BLOCO];
+		System.arraycopy(this.bloco, corte, proximo, 0, this.tamanho - corte);
+		submete(this.bloco, corte);
+		this.tamanho -= corte;
+		this.bloco = proximo;
+	}
+
+	private void submete(byte[] dados, int n) throws IOException {
+		while (this.pendentes.size() >= this.maxPendentes || (!this.pendentes.isEmpty() && this.pendentes.peekFirst().isDone())) {
+			gravaProximo();
+		}
+		long deslocamento = this.deslocamentoOriginal;
+		this.deslocamentoOriginal += n;
+		this.pendentes.addLast(this.executor.submit(() -> new Membro(deslocamento, n, comprime(dados, n))));
+	}
+
+	//Os membros são gravados na ordem em que foram submetidos, esperando pelo mais antigo se necessário
+	private void gravaProximo() throws IOException {
+		Membro membro;
+		try {
+			membro = this.pendentes.removeFirst().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException ioException) {
+				throw ioException;
+			}
+			throw new IOException(e.getCause());
+		}
+		this.out.write(membro.dados());
+		this.indice.add(new long[] { this.deslocamentoComprimido, membro.dados().length, membro.deslocamentoOriginal(), membro.tamanhoOriginal() });
+		this.deslocamentoComprimido += membro.dados().length;
+	}
+
+	private static byte[] comprime(byte[] dados, int n) throws IOException {
+		ByteArrayOutputStream membro = new ByteArrayOutputStream(n / 4 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(membro, 64 * 1024)) {
+			gzip.write(dados, 0, n);
+		}
+		return membro.toByteArray();
+	}
+
+	private void gravaIndice() throws IOException {
+		try (BufferedWriter indice = Files.newBufferedWriter(this.arquivoIndice, Common.CHARSET)) {
+			indice.write("deslocamento_gzip;tamanho_gzip;deslocamento_csv;tamanho_csv\n");
+			for (long[] membro : this.indice) {
+				indice.write(membro[0] + ";" + membro[1] + ";" + membro[2] + ";" + membro[3] + "\n");
+			}
+		}
+	}
+}
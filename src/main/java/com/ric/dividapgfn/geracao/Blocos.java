@@ -0,0 +1,54 @@
+package com.ric.dividapgfn.geracao;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+//Executa tarefas numeradas em paralelo e entrega os resultados na ordem dos números, como os membros do GzipParalelo.
+//No máximo duas tarefas por thread ficam pendentes, para que a memória não cresça com a quantidade de blocos.
+final class Blocos {
+	interface Consumidor<T,E extends Exception> {
+		void aceita(T resultado) throws E;
+	}
+
+	private Blocos() { }
+
+	static <T,E extends Exception> void executa(ExecutorService executor, int threads, int tarefas, IntFunction<T> tarefa, Consumidor<T,E> consumidor) throws E {
+		int maxPendentes = Math.max(2, threads * 2);
+		ArrayDeque<Future<T>> pendentes = new ArrayDeque<>();
+		try {
+			for (int i = 0; i < tarefas; i++) {
+				while (pendentes.size() >= maxPendentes) {
+					consumidor.aceita(resultado(pendentes.removeFirst()));
+				}
+				int indice = i;
+				pendentes.addLast(executor.submit(() -> tarefa.apply(indice)));
+			}
+			while (!pendentes.isEmpty()) {
+				consumidor.aceita(resultado(pendentes.removeFirst()));
+			}
+		} finally {
+			for (Future<T> pendente : pendentes) {
+				pendente.cancel(true);
+			}
+		}
+	}
+
+	private static <T> T resultado(Future<T> futuro) {
+		try {
+			return futuro.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			} else if (e.getCause() instanceof Error error) {
+				throw error;
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+}
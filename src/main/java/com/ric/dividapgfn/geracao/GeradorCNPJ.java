@@ -0,0 +1,211 @@
+package com.ric.dividapgfn.geracao;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+
+import org.sqlite.SQLiteConnection;
+
+import com.ric.dividapgfn.carga.PerfilCarga;
+import com.ric.dividapgfn.util.Common;
+
+//Base sintética no formato do cnpj-sqlite, com as empresas da população: a matriz de cada empresa tem o CNPJ usado nos
+//arquivos da PGFN, parte das empresas tem filiais (as primeiras, que concentram as inscrições, têm dezenas) e os sócios
+//pessoas físicas e jurídicas são os mesmos que aparecem como corresponsáveis. As linhas são montadas em blocos de
+//empresas em paralelo e gravadas por uma única conexão, na ordem dos blocos.
+public final class GeradorCNPJ {
+	private static final int EMPRESAS_BLOCO = 10_000;
+
+	private static final String[][] PAISES = { { "105", "Brasil" }, { "249", "Estados Unidos" }, { "607", "Portugal" },
+			{ "063", "Argentina" }, { "023", "Alemanha" }, { "386", "Itália" }, { "245", "Espanha" }, { "160", "China" } };
+	private static final String[][] QUALIFICACOES = { { "05", "Administrador" }, { "10", "Diretor" }, { "16", "Presidente" },
+			{ "22", "Sócio" }, { "49", "Sócio-Administrador" }, { "50", "Empresário" },
+			{ "65", "Titular Pessoa Física Residente ou Domiciliado no Brasil" } };
+	//Situação cadastral (02 ativa, 03 suspensa, 04 inapta, 08 baixada) e o motivo correspondente
+	private static final String[][] SITUACOES = { { "02", "00" }, { "02", "00" }, { "02", "00" }, { "02", "00" },
+			{ "02", "00" }, { "02", "00" }, { "08", "01" }, { "08", "01" }, { "04", "63" }, { "03", "00" } };
+	private static final String[] LOGRADOUROS = { "RUA", "AVENIDA", "TRAVESSA", "ALAMEDA", "RODOVIA", "PRACA" };
+	private static final String[] PORTES = { "01", "01", "01", "03", "03", "05" };
+
+	private record Bloco(List<Object[]> empresas, List<Object[]> estabelecimentos, List<Object[]> socios) { }
+
+	private final Populacao populacao;
+
+	public GeradorCNPJ(Populacao populacao) {
+		this.populacao = populacao;
+	}
+
+	//Cria a base do zero e devolve a quantidade de estabelecimentos
+	public long gera(Path arquivo, ExecutorService executor, int threads) throws IOException, SQLException {
+		Files.deleteIfExists(arquivo);
+		long[] estabelecimentos = { 0 };
+		try (SQLiteConnection conn = DriverManager.getConnection("jdbc:sqlite:file:///" + arquivo.toAbsolutePath()).unwrap(SQLiteConnection.class)) {
+			PerfilCarga.aplica(conn);
+			conn.setAutoCommit(false);
+			criaTabelas(conn);
+			try (PreparedStatement empresa = conn.prepareStatement("insert into empresas values (" + parametros(7) + ")");
+					PreparedStatement estabelecimento = conn.prepareStatement("insert into estabelecimento values (" + parametros(29) + ")");
+					PreparedStatement socio = conn.prepareStatement("insert into socios values (" + parametros(12) + ")")) {
+				int blocos = (this.populacao.empresas() + EMPRESAS_BLOCO - 1) / EMPRESAS_BLOCO;
+				Blocos.executa(executor, threads, blocos, this::bloco, bloco -> {
+					insere(empresa, bloco.empresas());
+					insere(estabelecimento, bloco.estabelecimentos());
+					insere(socio, bloco.socios());
+					estabelecimentos[0] += bloco.estabelecimentos().size();
+				});
+			}
+			//Índices criados pelo cnpj-sqlite para as colunas de junção
+			Common.executeUpdateStatement(conn, "create index idx_empresas_cnpj_basico on empresas(cnpj_basico)");
+			Common.executeUpdateStatement(conn, "create index idx_estabelecimento_cnpj_basico on estabelecimento(cnpj_basico)");
+			Common.executeUpdateStatement(conn, "create index idx_estabelecimento_cnpj on estabelecimento(cnpj)");
+			Common.executeUpdateStatement(conn, "create index idx_socios_cnpj_basico on socios(cnpj_basico)");
+			Common.executeUpdateStatement(conn, "create index idx_socios_cnpj on socios(cnpj)");
+			Common.executeUpdateStatement(conn, "create index idx_socios_cnpj_cpf_socio on socios(cnpj_cpf_socio)");
+			conn.commit();
+			conn.setAutoCommit(true);
+			PerfilCarga.restaura(conn);
+		}
+		return estabelecimentos[0];
+	}
+
+	private static String parametros(int n) {
+		return "?,".repeat(n - 1) + "?";
+	}
+
+	private static void insere(PreparedStatement stmt, List<Object[]> linhas) throws SQLException {
+		for (Object[] linha : linhas) {
+			for (int i = 0; i < linha.length; i++) {
+				stmt.setObject(i + 1, linha[i]);
+			}
+			stmt.executeUpdate();
+		}
+	}
+
+	private static void criaTabelas(SQLiteConnection conn) throws SQLException {
+		Common.executeUpdateStatement(conn, "create table empresas(cnpj_basico text, razao_social text, natureza_juridica text, qualificacao_responsavel text, capital_social real, porte_empresa text, ente_federativo_responsavel text)");
+		Common.executeUpdateStatement(conn, "create table estabelecimento(cnpj text, cnpj_basico text, matriz_filial text, nome_fantasia text, situacao_cadastral text, data_situacao_cadastral text, motivo_situacao_cadastral text, nome_cidade_exterior text, pais text, data_inicio_atividades text, cnae_fiscal text, cnae_fiscal_secundaria text, tipo_logradouro text, logradouro text, numero text, complemento text, bairro text, cep text, uf text, municipio text, ddd1 text, telefone1 text, ddd2 text, telefone2 text, ddd_fax text, fax text, correio_eletronico text, situacao_especial text, data_situacao_especial text)");
+		Common.executeUpdateStatement(conn, "create table socios(cnpj text, cnpj_basico text, identificador_de_socio text, nome_socio text, cnpj_cpf_socio text, qualificacao_socio text, data_entrada_sociedade text, pais text, representante_legal text, nome_representante text, qualificacao_representante_legal text, faixa_etaria text)");
+		tabelaCodigos(conn, "cnae", Populacao.CNAES);
+		tabelaCodigos(conn, "natureza_juridica", Populacao.NATUREZAS);
+		tabelaCodigos(conn, "pais", PAISES);
+		tabelaCodigos(conn, "qualificacao_socio", QUALIFICACOES);
+	}
+
+	private static void tabelaCodigos(SQLiteConnection conn, String tabela, String[][] codigos) throws SQLException {
+		Common.executeUpdateStatement(conn, "create table " + tabela + "(codigo text, descricao text)");
+		try (PreparedStatement stmt = conn.prepareStatement("insert into " + tabela + " values (?,?)")) {
+			for (String[] codigo : codigos) {
+				stmt.setString(1, codigo[0]);
+				stmt.setString(2, codigo[1]);
+				stmt.executeUpdate();
+			}
+		}
+	}
+
+	private Bloco bloco(int bloco) {
+		SplittableRandom random = new SplittableRandom(this.populacao.hash(bloco, Populacao.BLOCO_CNPJ));
+		int inicio = bloco * EMPRESAS_BLOCO;
+		int fim = Math.min(this.populacao.empresas(), inicio + EMPRESAS_BLOCO);
+		Bloco linhas = new Bloco(new ArrayList<>(fim - inicio), new ArrayList<>((fim - inicio) * 5 / 4), new ArrayList<>((fim - inicio) * 2));
+		for (int e = inicio; e < fim; e++) {
+			empresa(e, random, linhas);
+		}
+		return linhas;
+	}
+
+	private void empresa(int e, SplittableRandom random, Bloco linhas) {
+		String matriz = Populacao.cnpj(e, 1);
+		String basico = matriz.substring(0, 8);
+		String natureza = this.populacao.codigoNatureza(e);
+		boolean associacao = this.populacao.associacao(e);
+		String razaoSocial = this.populacao.razaoSocial(e);
+		double capital = associacao ? 0 : Math.round(Math.exp(10 + 2 * random.nextGaussian()));
+		linhas.empresas().add(new Object[] { basico, razaoSocial, natureza, qualificacaoResponsavel(natureza), capital,
+				PORTES[random.nextInt(PORTES.length)], "" });
+
+		String cnae = Populacao.CNAES[this.populacao.cnae(e)][0];
+		String inicioAtividades = data(random, 1970);
+		int filiais = e < 100 ? 10 + random.nextInt(50) : random.nextInt(100) < 85 ? 0 : 1 + random.nextInt(4);
+		for (int ordem = 1; ordem <= filiais + 1; ordem++) {
+			int uf = ordem == 1 ? this.populacao.uf(e) : Populacao.ufPonderada(random);
+			String[] situacao = SITUACOES[random.nextInt(SITUACOES.length)];
+			boolean exterior = random.nextInt(1000) == 0;
+			linhas.estabelecimentos().add(new Object[] {
+					ordem == 1 ? matriz : Populacao.cnpj(e, ordem),
+					basico,
+					ordem == 1 ? "1" : "2",
+					random.nextInt(3) == 0 ? "" : razaoSocial.split(" ")[0] + " " + Populacao.UFS[uf],
+					situacao[0],
+					data(random, 2000),
+					situacao[1],
+					exterior ? "LISBOA" : "",
+					exterior ? "607" : "",
+					inicioAtividades,
+					cnae,
+					cnaesSecundarios(random, associacao),
+					LOGRADOUROS[random.nextInt(LOGRADOUROS.length)],
+					"PRINCIPAL " + (1 + random.nextInt(200)),
+					Integer.toString(1 + random.nextInt(3000)),
+					random.nextInt(4) == 0 ? "SALA " + (1 + random.nextInt(50)) : "",
+					"CENTRO",
+					Integer.toString(10_000_000 + random.nextInt(89_999_999)),
+					Populacao.UFS[uf],
+					Integer.toString(1000 + random.nextInt(9000)),
+					Integer.toString(11 + random.nextInt(89)),
+					Integer.toString(30_000_000 + random.nextInt(69_999_999)),
+					"", "", "", "",
+					random.nextInt(2) == 0 ? "" : "CONTATO" + basico + "@EMAIL.COM.BR",
+					"", "" });
+		}
+
+		String qualificacao = qualificacaoResponsavel(natureza);
+		for (int k = 0; k < this.populacao.socios(e); k++) {
+			int pessoa = this.populacao.socio(e, k);
+			linhas.socios().add(new Object[] { matriz, basico, "2", this.populacao.nomePessoa(pessoa), this.populacao.cpfSocio(pessoa),
+					k == 0 ? qualificacao : associacao ? "05" : "22", data(random, 1990), "", "***000000**", "", "00",
+					Integer.toString(2 + random.nextInt(7)) });
+		}
+		if (this.populacao.temSociaPJ(e)) {
+			int socia = this.populacao.relacionada(e, 0);
+			linhas.socios().add(new Object[] { matriz, basico, "1", this.populacao.razaoSocial(socia), Populacao.cnpj(socia, 1),
+					"22", data(random, 1990), "", "***000000**", "", "00", "0" });
+		}
+	}
+
+	private static String qualificacaoResponsavel(String natureza) {
+		return switch (natureza) {
+		case "3999" -> "16";
+		case "2135" -> "50";
+		case "2046", "2054" -> "10";
+		default -> "49";
+		};
+	}
+
+	//Até três CNAEs secundários separados por vírgula, como no cnpj-sqlite; só associações têm os das associações
+	private static String cnaesSecundarios(SplittableRandom random, boolean associacao) {
+		int n = random.nextInt(4);
+		StringBuilder sb = new StringBuilder();
+		int inicio = associacao ? Populacao.CNAES.length - Populacao.CNAES_ASSOCIACAO : 0;
+		int quantidade = associacao ? Populacao.CNAES_ASSOCIACAO : Populacao.CNAES.length - Populacao.CNAES_ASSOCIACAO;
+		for (int i = 0; i < n; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(Populacao.CNAES[inicio + random.nextInt(quantidade)][0]);
+		}
+		return sb.toString();
+	}
+
+	//Data no formato AAAAMMDD do cnpj-sqlite
+	private static String data(SplittableRandom random, int anoInicial) {
+		int ano = anoInicial + random.nextInt(2024 - anoInicial);
+		return Integer.toString(ano * 10_000 + (1 + random.nextInt(12)) * 100 + 1 + random.nextInt(28));
+	}
+}
@@ -0,0 +1,270 @@
+package com.ric.dividapgfn.geracao;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+
+import com.ric.dividapgfn.carga.Sistema;
+import com.ric.dividapgfn.util.Common;
+
+//Arquivos da PGFN sintéticos, nos layouts lidos pela carga: um arquivo por sistema e UF, com as linhas divididas pelo
+//peso de cada um. Cada arquivo é gerado em blocos de linhas independentes, cada um com o seu gerador aleatório derivado
+//da semente, do arquivo e do número do bloco, de modo que o resultado não depende da quantidade de threads.
+public final class GeradorPGFN {
+	public static final int LINHAS_BLOCO = 50_000;
+	private static final String REFERENCIA = "202303";
+	//Participação de cada sistema, em centésimos, na ordem de Sistema
+	private static final int[] PESOS_SISTEMA = { 10, 20, 70 };
+
+	//Tipo e situação da inscrição, com o peso em centésimos
+	private static final String[][] SITUACOES = {
+			{ "Em cobrança", "ATIVA EM COBRANCA", "40" },
+			{ "Em cobrança", "ATIVA AJUIZADA", "20" },
+			{ "Em cobrança", "ATIVA A SER AJUIZADA", "5" },
+			{ "Benefício fiscal", "ATIVA AJUIZADA - PARCELAMENTO SISPAR", "12" },
+			{ "Garantia", "ATIVA AJUIZADA - GARANTIA - PENHORA", "8" },
+			{ "Suspenso por decisão judicial", "ATIVA - SUSPENSA POR DECISAO JUDICIAL", "10" },
+			{ "Em negociação", "ATIVA EM NEGOCIACAO", "5" } };
+	private static final int[] PESOS_SITUACAO = new int[SITUACOES.length];
+	static {
+		for (int i = 0; i < SITUACOES.length; i++) {
+			PESOS_SITUACAO[i] = Integer.parseInt(SITUACOES[i][2]);
+		}
+	}
+	private static final String[] RECEITAS_FGTS = { "CONTRIBUIÇÃO AO FGTS", "MULTA POR INFRAÇÃO À LEGISLAÇÃO DO FGTS",
+			"CONTRIBUIÇÃO SOCIAL - LC 110/01" };
+	private static final String[] RECEITAS_PREVIDENCIARIAS = { "CONTRIBUIÇÃO PREVIDENCIÁRIA - EMPRESA",
+			"CONTRIBUIÇÃO PREVIDENCIÁRIA - SEGURADOS", "CONTRIBUIÇÕES DE TERCEIROS",
+			"MULTA POR DESCUMPRIMENTO DE OBRIGAÇÃO ACESSÓRIA" };
+	private static final String[] TIPOS_CREDITO = { "IRPJ", "CSLL", "COFINS", "PIS", "IRPF", "IPI", "SIMPLES NACIONAL",
+			"MULTA ELEITORAL", "MULTA TRABALHISTA", "TAXAS" };
+
+	private record Arquivo(Sistema sistema, int uf, long linhas, int primeiroBloco) {
+		int blocos() {
+			return (int) ((this.linhas + LINHAS_BLOCO - 1) / LINHAS_BLOCO);
+		}
+
+		Path caminho(Path dirEntrada) {
+			return dirEntrada.resolve(this.sistema.diretorio()).resolve(nomeArquivo(this.sistema, this.uf));
+		}
+	}
+
+	private record Bloco(int arquivo, byte[] dados) { }
+
+	private final Populacao populacao;
+
+	public GeradorPGFN(Populacao populacao) {
+		this.populacao = populacao;
+	}
+
+	public static String cabecalho(Sistema sistema) {
+		return switch (sistema) {
+		case FGTS -> "CPF_CNPJ;TIPO_PESSOA;TIPO_DEVEDOR;NOME_DEVEDOR;UF_UNIDADE_RESPONSAVEL;UNIDADE_RESPONSAVEL;ENTIDADE_RESPONSAVEL;UNIDADE_INSCRICAO;NUMERO_INSCRICAO;TIPO_SITUACAO_INSCRICAO;SITUACAO_INSCRICAO;RECEITA_PRINCIPAL;DATA_INSCRICAO;INDICADOR_AJUIZADO;VALOR_CONSOLIDADO";
+		case PREVIDENCIARIO -> "CPF_CNPJ;TIPO_PESSOA;TIPO_DEVEDOR;NOME_DEVEDOR;UF_UNIDADE_RESPONSAVEL;UNIDADE_RESPONSAVEL;NUMERO_INSCRICAO;TIPO_SITUACAO_INSCRICAO;SITUACAO_INSCRICAO;RECEITA_PRINCIPAL;DATA_INSCRICAO;INDICADOR_AJUIZADO;VALOR_CONSOLIDADO";
+		case NAO_PREVIDENCIARIO -> "CPF_CNPJ;TIPO_PESSOA;TIPO_DEVEDOR;NOME_DEVEDOR;UF_UNIDADE_RESPONSAVEL;UNIDADE_RESPONSAVEL;NUMERO_INSCRICAO;TIPO_SITUACAO_INSCRICAO;SITUACAO_INSCRICAO;TIPO_CREDITO;DATA_INSCRICAO;INDICADOR_AJUIZADO;VALOR_CONSOLIDADO";
+		};
+	}
+
+	//Nomes usados pela PGFN (arquivo_lai_SIDA_SP_202303.csv)
+	static String nomeArquivo(Sistema sistema, int uf) {
+		String prefixo = switch (sistema) {
+		case FGTS -> "FGTS";
+		case PREVIDENCIARIO -> "PREV";
+		case NAO_PREVIDENCIARIO -> "SIDA";
+		};
+		return "arquivo_lai_" + prefixo + "_" + Populacao.UFS[uf] + "_" + REFERENCIA + ".csv";
+	}
+
+	//Grava os arquivos de todos os sistemas e UFs no diretório de entrada e devolve a quantidade de bytes gravados
+	public long gera(Path dirEntrada, long linhas, ExecutorService executor, int threads) throws IOException {
+		List<Arquivo> arquivos = arquivos(linhas);
+		for (Sistema sistema : Sistema.values()) {
+			Files.createDirectories(dirEntrada.resolve(sistema.diretorio()));
+		}
+		Arquivo ultimo = arquivos.get(arquivos.size() - 1);
+		int tarefas = ultimo.primeiroBloco() + ultimo.blocos();
+		int[] arquivoTarefa = new int[tarefas];
+		for (int i = 0; i < arquivos.size(); i++) {
+			Arquivo arquivo = arquivos.get(i);
+			for (int b = 0; b < arquivo.blocos(); b++) {
+				arquivoTarefa[arquivo.primeiroBloco() + b] = i;
+			}
+		}
+		try (Gravacao gravacao = new Gravacao(dirEntrada, arquivos)) {
+			Blocos.executa(executor, threads, tarefas, tarefa -> {
+				Arquivo arquivo = arquivos.get(arquivoTarefa[tarefa]);
+				int bloco = tarefa - arquivo.primeiroBloco();
+				int linhasBloco = (int) Math.min(LINHAS_BLOCO, arquivo.linhas() - (long) bloco * LINHAS_BLOCO);
+				return new Bloco(arquivoTarefa[tarefa], bloco(arquivo.sistema(), arquivo.uf(), bloco, linhasBloco));
+			}, gravacao::grava);
+			gravacao.abreAte(arquivos.size());
+			return gravacao.bytes;
+		}
+	}
+
+	//Linhas de cada arquivo pelo peso acumulado do sistema e da UF, para que a soma seja exatamente o total
+	private static List<Arquivo> arquivos(long linhas) {
+		List<Arquivo> arquivos = new ArrayList<>();
+		long acumulado = 0;
+		long anterior = 0;
+		int blocos = 0;
+		for (Sistema sistema : Sistema.values()) {
+			for (int uf = 0; uf < Populacao.UFS.length; uf++) {
+				acumulado += (long) PESOS_SISTEMA[sistema.ordinal()] * Populacao.pesoUF(uf);
+				long atual = linhas * acumulado / 100_000;
+				Arquivo arquivo = new Arquivo(sistema, uf, atual - anterior, blocos);
+				arquivos.add(arquivo);
+				blocos += arquivo.blocos();
+				anterior = atual;
+			}
+		}
+		return arquivos;
+	}
+
+	//Grava os blocos na ordem; os arquivos sem blocos ficam só com o cabeçalho
+	private static final class Gravacao implements Closeable {
+		private final Path dirEntrada;
+		private final List<Arquivo> arquivos;
+		private OutputStream out;
+		private int atual = -1;
+		private long bytes;
+
+		Gravacao(Path dirEntrada, List<Arquivo> arquivos) {
+			this.dirEntrada = dirEntrada;
+			this.arquivos = arquivos;
+		}
+
+		void grava(Bloco bloco) throws IOException {
+			abreAte(bloco.arquivo());
+			this.out.write(bloco.dados());
+			this.bytes += bloco.dados().length;
+		}
+
+		void abreAte(int arquivo) throws IOException {
+			while (this.atual < arquivo && this.atual + 1 < this.arquivos.size()) {
+				close();
+				this.atual++;
+				Arquivo proximo = this.arquivos.get(this.atual);
+				this.out = new BufferedOutputStream(Files.newOutputStream(proximo.caminho(this.dirEntrada)), 1 << 20);
+				byte[] cabecalho = (cabecalho(proximo.sistema()) + "\r\n").getBytes(Common.CHARSET);
+				this.out.write(cabecalho);
+				this.bytes += cabecalho.length;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (this.out != null) {
+				this.out.close();
+				this.out = null;
+			}
+		}
+	}
+
+	//Linhas de um bloco de um arquivo, sem o cabeçalho. As inscrições do bloco são numeradas a partir do primeiro número
+	//reservado ao bloco, e a última pode ficar com menos corresponsáveis para que o bloco tenha exatamente as linhas pedidas.
+	public byte[] bloco(Sistema sistema, int uf, int bloco, int linhas) {
+		SplittableRandom random = new SplittableRandom(this.populacao.hash(((long) sistema.ordinal() << 40) | ((long) uf << 32) | bloco, Populacao.BLOCO_PGFN));
+		StringBuilder local = new StringBuilder(128).append(Populacao.UFS[uf])
+				.append(";PROCURADORIA-REGIONAL DA FAZENDA NACIONAL DA ").append(Populacao.regiao(uf)).append("ª REGIÃO;");
+		if (sistema == Sistema.FGTS) {
+			local.append("CAIXA ECONÔMICA FEDERAL;SUPERINTENDÊNCIA REGIONAL ").append(Populacao.UFS[uf]).append(';');
+		}
+		StringBuilder sb = new StringBuilder(linhas * 240);
+		StringBuilder inscricao = new StringBuilder(160);
+		long sequencia = (long) bloco * LINHAS_BLOCO;
+		int n = 0;
+		while (n < linhas) {
+			inscricao.setLength(0);
+			inscricao(inscricao, sistema, uf, ++sequencia, random);
+			//Só as inscrições de pessoas jurídicas têm corresponsáveis: sócios pessoas físicas e empresas relacionadas
+			boolean juridica = random.nextInt(100) < 80;
+			int principal = juridica ? this.populacao.sorteiaEmpresa(random) : this.populacao.sorteiaPessoa(random);
+			linha(sb, juridica, principal, "PRINCIPAL", local, inscricao);
+			n++;
+			int corresponsaveis = juridica ? corresponsaveis(random) : 0;
+			for (int k = 0; k < corresponsaveis && n < linhas; k++, n++) {
+				String tipo = random.nextInt(10) < 7 ? "CORRESPONSAVEL" : "SOLIDARIO";
+				if (random.nextBoolean()) {
+					linha(sb, false, this.populacao.socio(principal, k % this.populacao.socios(principal)), tipo, local, inscricao);
+				} else {
+					linha(sb, true, this.populacao.relacionada(principal, k), tipo, local, inscricao);
+				}
+			}
+		}
+		return sb.toString().getBytes(Common.CHARSET);
+	}
+
+	//Três quartos das inscrições não têm corresponsáveis; nas demais a quantidade tem distribuição geométrica
+	private static int corresponsaveis(SplittableRandom random) {
+		if (random.nextInt(4) != 0) {
+			return 0;
+		}
+		return 1 + Integer.numberOfTrailingZeros(random.nextInt() | 0x40);
+	}
+
+	private void linha(StringBuilder sb, boolean juridica, int devedor, String tipo, CharSequence local, CharSequence inscricao) {
+		if (juridica) {
+			Populacao.cnpjFormatado(sb, Populacao.cnpj(devedor, 1));
+			sb.append(";Pessoa jurídica;").append(tipo).append(';').append(this.populacao.razaoSocial(devedor));
+		} else {
+			this.populacao.cpfMascarado(sb, devedor);
+			sb.append(";Pessoa física;").append(tipo).append(';').append(this.populacao.nomePessoa(devedor));
+		}
+		sb.append(';').append(local).append(inscricao);
+	}
+
+	//Colunas da inscrição, repetidas em todas as linhas dos seus devedores, a partir do número da inscrição
+	private static void inscricao(StringBuilder sb, Sistema sistema, int uf, long sequencia, SplittableRandom random) {
+		switch (sistema) {
+		case FGTS -> sb.append("FG").append(Populacao.UFS[uf]);
+		case PREVIDENCIARIO -> zeros(sb.append('6'), uf, 2);
+		case NAO_PREVIDENCIARIO -> zeros(sb.append("80"), uf, 2);
+		}
+		zeros(sb, sequencia, 10);
+		String[] situacao = SITUACOES[escolhePeso(random.nextInt(100), PESOS_SITUACAO)];
+		sb.append(';').append(situacao[0]).append(';').append(situacao[1]).append(';');
+		String[] receitas = switch (sistema) {
+		case FGTS -> RECEITAS_FGTS;
+		case PREVIDENCIARIO -> RECEITAS_PREVIDENCIARIAS;
+		case NAO_PREVIDENCIARIO -> TIPOS_CREDITO;
+		};
+		sb.append(receitas[random.nextInt(receitas.length)]).append(';');
+		//Inscrições mais recentes são mais frequentes
+		double u = random.nextDouble();
+		zeros(sb, 1 + random.nextInt(28), 2);
+		zeros(sb.append('/'), 1 + random.nextInt(12), 2);
+		sb.append('/').append(2023 - (int) (38 * u * u)).append(';');
+		boolean ajuizada = situacao[1].contains("AJUIZADA") && !situacao[1].contains("A SER AJUIZADA");
+		sb.append(ajuizada ? "SIM" : "NAO").append(';');
+		//Valores com distribuição log-normal, de alguns reais a bilhões
+		long centavos = Math.max(1, Math.min(500_000_000_000L, Math.round(Math.exp(8.5 + 2.0 * random.nextGaussian()) * 100)));
+		sb.append(centavos / 100).append('.');
+		zeros(sb, centavos % 100, 2);
+		sb.append("\r\n");
+	}
+
+	private static int escolhePeso(int v, int[] pesos) {
+		int i = 0;
+		while (v >= pesos[i]) {
+			v -= pesos[i++];
+		}
+		return i;
+	}
+
+	private static StringBuilder zeros(StringBuilder sb, long valor, int largura) {
+		for (long limite = 10, i = 1; i < largura; i++, limite *= 10) {
+			if (valor < limite) {
+				sb.append('0');
+			}
+		}
+		return sb.append(valor);
+	}
+}
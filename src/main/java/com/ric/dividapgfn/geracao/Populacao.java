@@ -0,0 +1,274 @@
+package com.ric.dividapgfn.geracao;
+
+import java.util.SplittableRandom;
+
+//Empresas e pessoas físicas dos dados sintéticos. Os atributos de cada uma (CNPJ, nome, natureza jurídica, CNAE, UF e
+//sócios) são funções do índice e da semente, e não de um gerador sequencial, para que os arquivos da PGFN e a base do
+//CNPJ, gerados em blocos paralelos e em qualquer ordem, concordem sobre cada devedor.
+public final class Populacao {
+	static final String[] UFS = { "SP", "MG", "RJ", "RS", "PR", "SC", "BA", "GO", "PE", "CE", "DF", "ES", "PA", "MT",
+			"MS", "AM", "MA", "PB", "RN", "AL", "PI", "SE", "RO", "TO", "AC", "AP", "RR" };
+	//Participação de cada UF, em milésimos
+	private static final int[] PESOS_UF = { 300, 105, 95, 65, 65, 50, 50, 30, 30, 28, 25, 20, 20, 18,
+			14, 13, 12, 10, 10, 8, 8, 7, 7, 5, 2, 2, 1 };
+	//Região da procuradoria responsável por cada UF
+	private static final int[] REGIOES_UF = { 3, 6, 2, 4, 4, 4, 1, 1, 5, 5, 1, 2, 1, 1,
+			3, 1, 1, 5, 5, 5, 1, 5, 1, 1, 1, 1, 1 };
+
+	static final String[][] NATUREZAS = {
+			{ "2062", "Sociedade Empresária Limitada" },
+			{ "2135", "Empresário (Individual)" },
+			{ "3999", "Associação Privada" },
+			{ "2240", "Sociedade Simples Limitada" },
+			{ "2305", "Empresa Individual de Responsabilidade Limitada (de Natureza Empresária)" },
+			{ "2054", "Sociedade Anônima Fechada" },
+			{ "2046", "Sociedade Anônima Aberta" } };
+	//Participação de cada natureza jurídica, em centésimos
+	private static final int[] PESOS_NATUREZA = { 45, 30, 10, 6, 4, 4, 1 };
+	private static final String ASSOCIACAO = "3999";
+	private static final String EMPRESARIO = "2135";
+
+	//Código, descrição e atividade usada na razão social; as associações usam as quatro últimas
+	static final String[][] CNAES = {
+			{ "4711302", "Comércio varejista de mercadorias em geral, com predominância de produtos alimentícios - supermercados", "SUPERMERCADO" },
+			{ "4120400", "Construção de edifícios", "CONSTRUTORA" },
+			{ "4930202", "Transporte rodoviário de carga, exceto produtos perigosos e mudanças, intermunicipal, interestadual e internacional", "TRANSPORTES" },
+			{ "5611201", "Restaurantes e similares", "RESTAURANTE" },
+			{ "4781400", "Comércio varejista de artigos do vestuário e acessórios", "CONFECÇÕES" },
+			{ "6201501", "Desenvolvimento de programas de computador sob encomenda", "SISTEMAS" },
+			{ "4530703", "Comércio a varejo de peças e acessórios novos para veículos automotores", "AUTO PEÇAS" },
+			{ "4744099", "Comércio varejista de materiais de construção em geral", "MATERIAIS DE CONSTRUÇÃO" },
+			{ "8630504", "Atividade odontológica", "CLÍNICA ODONTOLÓGICA" },
+			{ "1091101", "Fabricação de produtos de panificação industrial", "PANIFICADORA" },
+			{ "4639701", "Comércio atacadista de produtos alimentícios em geral", "DISTRIBUIDORA DE ALIMENTOS" },
+			{ "0151201", "Criação de bovinos para corte", "AGROPECUÁRIA" },
+			{ "2511000", "Fabricação de estruturas metálicas", "METALÚRGICA" },
+			{ "8211300", "Serviços combinados de escritório e apoio administrativo", "SERVIÇOS ADMINISTRATIVOS" },
+			{ "4399103", "Obras de alvenaria", "ENGENHARIA" },
+			{ "6911701", "Serviços advocatícios", "ADVOCACIA" },
+			{ "9312300", "Clubes sociais, esportivos e similares", "CLUBE" },
+			{ "9430800", "Atividades de associações de defesa de direitos sociais", "ASSOCIAÇÃO" },
+			{ "9491000", "Atividades de organizações religiosas ou filosóficas", "IGREJA" },
+			{ "9493600", "Atividades de organizações associativas ligadas à cultura e à arte", "SOCIEDADE CULTURAL" } };
+	static final int CNAES_ASSOCIACAO = 4;
+
+	private static final String[] NOMES = { "JOSÉ", "MARIA", "JOÃO", "ANA", "ANTÔNIO", "FRANCISCA", "CARLOS", "ANTÔNIA",
+			"PAULO", "ADRIANA", "PEDRO", "JULIANA", "LUCAS", "MÁRCIA", "LUIZ", "FERNANDA", "MARCOS", "PATRÍCIA", "RAFAEL",
+			"ALINE", "SEBASTIÃO", "CONCEIÇÃO", "RAIMUNDO", "LÚCIA", "FÁBIO", "SANDRA", "ROGÉRIO", "VÂNIA", "ANDRÉ", "HELENA" };
+	private static final String[] SOBRENOMES = { "DA SILVA", "DOS SANTOS", "OLIVEIRA", "SOUZA", "RODRIGUES", "FERREIRA",
+			"ALVES", "PEREIRA", "LIMA", "GOMES", "COSTA", "RIBEIRO", "MARTINS", "CARVALHO", "ARAÚJO", "MELO", "BARBOSA",
+			"CARDOSO", "ROCHA", "DIAS", "NASCIMENTO", "ANDRADE", "MOREIRA", "NUNES", "MARQUES", "MACHADO", "MENDES",
+			"FREITAS", "CONCEIÇÃO", "GONÇALVES" };
+	private static final String[] LOCAIS = { "SÃO JOSÉ", "VILA NOVA", "SANTA CRUZ", "BOA VISTA", "PALMEIRAS", "UNIÃO",
+			"JARDIM AMÉRICA", "SÃO CRISTÓVÃO", "IPIRANGA", "BELA VISTA", "SANTO ANTÔNIO", "PONTE PRETA", "FLORESTA",
+			"PRIMAVERA", "ESPERANÇA", "INDEPENDÊNCIA" };
+
+	//Campos dos hashes dos atributos
+	private static final int NATUREZA = 1;
+	private static final int CNAE = 2;
+	private static final int UF = 3;
+	private static final int NOME = 4;
+	private static final int SOCIOS = 5;
+	private static final int CPF = 6;
+	static final int BLOCO_PGFN = 7;
+	static final int BLOCO_CNPJ = 8;
+
+	private final int empresas;
+	private final int pessoas;
+	private final long semente;
+	private final double logEmpresas;
+
+	public Populacao(int empresas, int pessoas, long semente) {
+		this.empresas = empresas;
+		this.pessoas = pessoas;
+		this.semente = semente;
+		this.logEmpresas = Math.log(empresas);
+	}
+
+	public int empresas() {
+		return this.empresas;
+	}
+
+	public int pessoas() {
+		return this.pessoas;
+	}
+
+	//Finalizador do SplitMix64: espalha os bits de valores próximos
+	static long mistura(long x) {
+		x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+		x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+		return x ^ (x >>> 31);
+	}
+
+	long hash(long indice, int campo) {
+		return mistura(mistura(this.semente + campo * 0x9E3779B97F4A7C15L) ^ indice);
+	}
+
+	private static int escolhe(long hash, int n) {
+		return (int) Long.remainderUnsigned(hash, n);
+	}
+
+	//Escolha ponderada por pesos que somam total
+	private static int escolhePeso(long hash, int[] pesos, int total) {
+		int v = escolhe(hash, total);
+		int i = 0;
+		while (v >= pesos[i]) {
+			v -= pesos[i++];
+		}
+		return i;
+	}
+
+	//Raiz do CNPJ da empresa: a multiplicação por um número primo com 10 é uma bijeção módulo 10^8
+	public static int raiz(int empresa) {
+		return (int) ((empresa * 48271L + 12345) % 100_000_000L);
+	}
+
+	//CNPJ de 14 dígitos do estabelecimento de ordem dada (1 = matriz), com os dígitos verificadores
+	public static String cnpj(int empresa, int ordem) {
+		char[] c = new char[14];
+		digitos(c, 0, raiz(empresa), 8);
+		digitos(c, 8, ordem, 4);
+		c[12] = digitoVerificador(c, 12);
+		c[13] = digitoVerificador(c, 13);
+		return new String(c);
+	}
+
+	private static void digitos(char[] c, int inicio, long valor, int largura) {
+		for (int i = inicio + largura - 1; i >= inicio; i--) {
+			c[i] = (char) ('0' + valor % 10);
+			valor /= 10;
+		}
+	}
+
+	private static char digitoVerificador(char[] c, int n) {
+		int soma = 0;
+		int peso = n - 7;
+		for (int i = 0; i < n; i++) {
+			soma += (c[i] - '0') * peso;
+			peso = peso == 2 ? 9 : peso - 1;
+		}
+		int resto = soma % 11;
+		return (char) ('0' + (resto < 2 ? 0 : 11 - resto));
+	}
+
+	//CNPJ formatado como nos arquivos da PGFN (12.345.678/0001-95)
+	static void cnpjFormatado(StringBuilder sb, String cnpj) {
+		sb.append(cnpj, 0, 2).append('.').append(cnpj, 2, 5).append('.').append(cnpj, 5, 8).append('/')
+				.append(cnpj, 8, 12).append('-').append(cnpj, 12, 14);
+	}
+
+	//Seis dígitos centrais do CPF, os únicos divulgados
+	private String cpfCentral(int pessoa) {
+		return Integer.toString(1_000_000 + escolhe(hash(pessoa, CPF), 1_000_000)).substring(1);
+	}
+
+	//CPF mascarado como nos arquivos da PGFN (XXX.123.456-XX)
+	void cpfMascarado(StringBuilder sb, int pessoa) {
+		String central = cpfCentral(pessoa);
+		sb.append("XXX.").append(central, 0, 3).append('.').append(central, 3, 6).append("-XX");
+	}
+
+	//CPF mascarado como na base do CNPJ (***123456**)
+	String cpfSocio(int pessoa) {
+		return "***" + cpfCentral(pessoa) + "**";
+	}
+
+	//Devedor principal pessoa jurídica. Em 30% das inscrições o índice tem distribuição log-uniforme, o que concentra
+	//milhares de inscrições nos primeiros devedores; nas demais é uniforme, formando a cauda com uma ou duas inscrições.
+	int sorteiaEmpresa(SplittableRandom random) {
+		if (random.nextInt(10) < 3) {
+			return Math.min(this.empresas - 1, (int) Math.exp(random.nextDouble() * this.logEmpresas) - 1);
+		}
+		return random.nextInt(this.empresas);
+	}
+
+	int sorteiaPessoa(SplittableRandom random) {
+		return random.nextInt(this.pessoas);
+	}
+
+	int natureza(int empresa) {
+		return escolhePeso(hash(empresa, NATUREZA), PESOS_NATUREZA, 100);
+	}
+
+	String codigoNatureza(int empresa) {
+		return NATUREZAS[natureza(empresa)][0];
+	}
+
+	boolean associacao(int empresa) {
+		return codigoNatureza(empresa).equals(ASSOCIACAO);
+	}
+
+	//CNAE principal, coerente com a natureza jurídica e com a razão social
+	int cnae(int empresa) {
+		long h = hash(empresa, CNAE);
+		if (associacao(empresa)) {
+			return CNAES.length - CNAES_ASSOCIACAO + escolhe(h, CNAES_ASSOCIACAO);
+		}
+		return escolhe(h, CNAES.length - CNAES_ASSOCIACAO);
+	}
+
+	int uf(int empresa) {
+		return escolhePeso(hash(empresa, UF), PESOS_UF, 1000);
+	}
+
+	static int ufPonderada(SplittableRandom random) {
+		return escolhePeso(random.nextLong(), PESOS_UF, 1000);
+	}
+
+	static int pesoUF(int uf) {
+		return PESOS_UF[uf];
+	}
+
+	static int regiao(int uf) {
+		return REGIOES_UF[uf];
+	}
+
+	String razaoSocial(int empresa) {
+		long h = hash(empresa, NOME);
+		String natureza = codigoNatureza(empresa);
+		String atividade = CNAES[cnae(empresa)][2];
+		if (natureza.equals(EMPRESARIO)) {
+			StringBuilder sb = new StringBuilder(48);
+			String raiz = cnpj(empresa, 1);
+			sb.append(raiz, 0, 2).append('.').append(raiz, 2, 5).append('.').append(raiz, 5, 8).append(' ');
+			return sb.append(nomePessoa(socio(empresa, 0))).toString();
+		} else if (natureza.equals(ASSOCIACAO)) {
+			return atividade + " " + LOCAIS[escolhe(h, LOCAIS.length)];
+		}
+		String sufixo = switch (natureza) {
+		case "2240" -> " SOCIEDADE SIMPLES";
+		case "2305" -> " EIRELI";
+		case "2054", "2046" -> " S.A.";
+		default -> " LTDA";
+		};
+		return atividade + " " + SOBRENOMES[escolhe(h, SOBRENOMES.length)] + " " + SOBRENOMES[escolhe(h >>> 20, SOBRENOMES.length)] + sufixo;
+	}
+
+	String nomePessoa(int pessoa) {
+		long h = hash(pessoa, NOME);
+		return NOMES[escolhe(h, NOMES.length)] + " " + SOBRENOMES[escolhe(h >>> 20, SOBRENOMES.length)] + " " + SOBRENOMES[escolhe(h >>> 40, SOBRENOMES.length)];
+	}
+
+	//Sócios pessoas físicas da empresa: o empresário individual tem só o titular
+	int socios(int empresa) {
+		if (codigoNatureza(empresa).equals(EMPRESARIO)) {
+			return 1;
+		}
+		return 1 + escolhe(hash(empresa, SOCIOS), 3);
+	}
+
+	int socio(int empresa, int k) {
+		return (int) ((empresa * 7L + k) % this.pessoas);
+	}
+
+	//Empresa ligada à empresa dada, como corresponsável nas inscrições ou como sócia: as seguintes na ordem dos
+	//índices, o que forma cadeias de corresponsáveis que atravessam vários devedores
+	int relacionada(int empresa, int k) {
+		return (int) ((empresa + 1L + k) % this.empresas);
+	}
+
+	//Empresas que têm outra empresa como sócia, a mesma que aparece como primeira relacionada
+	boolean temSociaPJ(int empresa) {
+		return escolhe(hash(empresa, SOCIOS) >>> 32, 100) < 15;
+	}
+}
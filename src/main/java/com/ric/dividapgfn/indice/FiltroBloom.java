@@ -0,0 +1,203 @@
+package com.ric.dividapgfn.indice;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.sqlite.SQLiteConnection;
+
+import com.ric.dividapgfn.carga.Esquema;
+
+//Filtro de Bloom das raízes de CNPJ da base (arquivo pgfn_cnpj.bloom, gravado ao lado da base). Uma raiz ausente do filtro
+//certamente não tem inscrições; uma presente precisa ser confirmada na base. O filtro é dividido em blocos de 512 bits, do
+//tamanho de uma linha de cache, e os bits de cada raiz ficam todos no mesmo bloco: a consulta lê uma única linha de memória,
+//ao custo de uma taxa de falsos positivos um pouco maior que a de um filtro sem blocos do mesmo tamanho.
+//O arquivo guarda o tamanho e a data de modificação da base de origem, para que um filtro desatualizado seja recriado.
+public final class FiltroBloom {
+	public static final String ARQUIVO = "pgfn_cnpj.bloom";
+	private static final long MAGICO = 0x5047464E424C4D31L; //PGFNBLM1
+	private static final int VERSAO = 1;
+	private static final int CABECALHO = 48;
+	private static final int PALAVRAS_BLOCO = 8;
+	private static final int BITS_POR_SORTEIO = 9;
+	private static final int SORTEIOS_POR_HASH = 64 / BITS_POR_SORTEIO;
+	//Compensa a concentração dos bits em blocos, que aumenta os falsos positivos
+	private static final double FOLGA_BLOCOS = 1.2;
+
+	private final long[] bits;
+	private final int blocos;
+	private final int sorteios;
+	private final long chaves;
+
+	private FiltroBloom(long[] bits, int sorteios, long chaves) {
+		this.bits = bits;
+		this.blocos = bits.length / PALAVRAS_BLOCO;
+		this.sorteios = sorteios;
+		this.chaves = chaves;
+	}
+
+	//Dimensiona o filtro para a quantidade de chaves e a taxa de falsos positivos desejada
+	public FiltroBloom(long chaves, double taxaFalsosPositivos) {
+		this(new long[PALAVRAS_BLOCO * blocos(chaves, taxaFalsosPositivos)],
+				(int) Math.max(1, Math.min(16, Math.round(-Math.log(taxaFalsosPositivos) / Math.log(2)))),
+				0);
+	}
+
+	private static int blocos(long chaves, double taxaFalsosPositivos) {
+		double bitsPorChave = -Math.log(taxaFalsosPositivos) / (Math.log(2) * Math.log(2)) * FOLGA_BLOCOS;
+		long blocos = (long) Math.ceil(Math.max(1, chaves) * bitsPorChave / (PALAVRAS_BLOCO * 64));
+		if (blocos > Integer.MAX_VALUE / PALAVRAS_BLOCO) {
+			throw new IllegalArgumentException("Filtro de Bloom grande demais: " + chaves + " chaves");
+		}
+		return (int) Math.max(1, blocos);
+	}
+
+	public static Path arquivo(Path base) {
+		return base.toAbsolutePath().resolveSibling(ARQUIVO);
+	}
+
+	public static void remove(Path base) throws IOException {
+		Files.deleteIfExists(arquivo(base));
+	}
+
+	public void adiciona(long chave) {
+		long hash = mistura(chave);
+		int inicio = bloco(hash) * PALAVRAS_BLOCO;
+		long sorteio = mistura(hash + 0x9E3779B97F4A7C15L);
+		for (int i = 0; i < this.sorteios; i++) {
+			if (i > 0 && i % SORTEIOS_POR_HASH == 0) {
+				sorteio = mistura(sorteio);
+			}
+			int bit = (int) (sorteio >>> (BITS_POR_SORTEIO * (i % SORTEIOS_POR_HASH))) & 511;
+			this.bits[inicio + (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	//Falso apenas se a chave certamente não foi adicionada
+	public boolean podeConter(long chave) {
+		long hash = mistura(chave);
+		int inicio = bloco(hash) * PALAVRAS_BLOCO;
+		long sorteio = mistura(hash + 0x9E3779B97F4A7C15L);
+		for (int i = 0; i < this.sorteios; i++) {
+			if (i > 0 && i % SORTEIOS_POR_HASH == 0) {
+				sorteio = mistura(sorteio);
+			}
+			int bit = (int) (sorteio >>> (BITS_POR_SORTEIO * (i % SORTEIOS_POR_HASH))) & 511;
+			if ((this.bits[inicio + (bit >>> 6)] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public long chaves() {
+		return this.chaves;
+	}
+
+	public long bytes() {
+		return 8L * this.bits.length;
+	}
+
+	//Cria o filtro com as raízes de CNPJ da base e o grava ao lado dela; os CPFs, mascarados, não formam raízes
+	public static FiltroBloom cria(SQLiteConnection conn, Path base, double taxaFalsosPositivos) throws SQLException, IOException {
+		long[] raizes = new long[1024];
+		int quantidade = 0;
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("select distinct substr(cpf_cnpj,1,8) from pgfn_devedores")) {
+			while (rs.next()) {
+				long raiz = Esquema.cnpjBasico(rs.getString(1));
+				if (raiz >= 0) {
+					if (quantidade == raizes.length) {
+						raizes = Arrays.copyOf(raizes, raizes.length * 2);
+					}
+					raizes[quantidade++] = raiz;
+				}
+			}
+		}
+
+		FiltroBloom filtro = new FiltroBloom(quantidade, taxaFalsosPositivos);
+		for (int i = 0; i < quantidade; i++) {
+			filtro.adiciona(raizes[i]);
+		}
+		filtro = new FiltroBloom(filtro.bits, filtro.sorteios, quantidade);
+		filtro.grava(base);
+		return filtro;
+	}
+
+	//Filtro gravado para a base no estado atual, ou null se não existe ou está desatualizado
+	public static FiltroBloom carrega(Path base) throws IOException {
+		Path arquivo = arquivo(base);
+		if (Files.notExists(arquivo)) {
+			return null;
+		}
+		try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+			ByteBuffer cabecalho = ByteBuffer.allocate(CABECALHO);
+			while (cabecalho.hasRemaining() && canal.read(cabecalho) >= 0) { }
+			cabecalho.flip();
+			if (cabecalho.remaining() < CABECALHO || cabecalho.getLong(0) != MAGICO || cabecalho.getInt(8) != VERSAO) {
+				return null;
+			}
+			if (cabecalho.getLong(16) != Files.size(base) || cabecalho.getLong(24) != Files.getLastModifiedTime(base).toMillis()) {
+				return null;
+			}
+			int sorteios = cabecalho.getInt(12);
+			long chaves = cabecalho.getLong(32);
+			int palavras = cabecalho.getInt(40);
+
+			ByteBuffer dados = ByteBuffer.allocate(8 * palavras);
+			while (dados.hasRemaining() && canal.read(dados) >= 0) { }
+			if (dados.hasRemaining()) {
+				return null;
+			}
+			long[] bits = new long[palavras];
+			dados.flip().asLongBuffer().get(bits);
+			return new FiltroBloom(bits, sorteios, chaves);
+		}
+	}
+
+	//Gravado em um arquivo temporário, que substitui o anterior só depois de completo
+	private void grava(Path base) throws IOException {
+		Path arquivo = arquivo(base);
+		Path temporario = arquivo.resolveSibling(ARQUIVO + ".tmp");
+		ByteBuffer dados = ByteBuffer.allocate(CABECALHO + 8 * this.bits.length);
+		dados.putLong(MAGICO)
+				.putInt(VERSAO)
+				.putInt(this.sorteios)
+				.putLong(Files.size(base))
+				.putLong(Files.getLastModifiedTime(base).toMillis())
+				.putLong(this.chaves)
+				.putInt(this.bits.length)
+				.position(CABECALHO);
+		dados.asLongBuffer().put(this.bits);
+		dados.clear();
+		try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (dados.hasRemaining()) {
+				canal.write(dados);
+			}
+		}
+		Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	//Bloco escolhido pelos 32 bits altos do hash, sem divisão
+	private int bloco(long hash) {
+		return (int) (((hash >>> 32) * this.blocos) >>> 32);
+	}
+
+	//Finalizador do MurmurHash3: espalha os bits das raízes, que são números próximos entre si
+	private static long mistura(long x) {
+		x ^= x >>> 33;
+		x *= 0xFF51AFD7ED558CCDL;
+		x ^= x >>> 33;
+		x *= 0xC4CEB9FE1A85EC53L;
+		x ^= x >>> 33;
+		return x;
+	}
+}
@@ -0,0 +1,198 @@
+package com.ric.dividapgfn.indice;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sqlite.SQLiteConnection;
+
+import com.ric.dividapgfn.carga.Esquema;
+import com.ric.dividapgfn.util.Common;
+
+//Arquivo pgfn_cnpj.idx, gravado ao lado da base: as inscrições de pessoas jurídicas ordenadas pela raiz do CNPJ, em
+//registros de tamanho fixo, para consultas pontuais sem o SQLite (LeitorIndiceCNPJ). Os CPFs não entram no índice,
+//porque são publicados mascarados. Formato, com inteiros big-endian:
+//- cabeçalho de 64 bytes: mágico, versão, largura do número de inscrição, quantidade de raízes e de registros e a posição
+//  de cada seção;
+//- registros: número de inscrição completado com zeros, código do tipo de devedor (1 byte), código da situação (1 byte)
+//  e valor em centavos (8 bytes);
+//- raízes em ordem crescente (4 bytes cada) e, para cada raiz, o primeiro registro (4 bytes), mais o total de registros;
+//- textos dos códigos: quantidade e, para cada texto, tamanho (2 bytes) e bytes em UTF-8.
+public final class IndiceCNPJ {
+	public static final String ARQUIVO = "pgfn_cnpj.idx";
+	static final long MAGICO = 0x5047464E49445831L; //PGFNIDX1
+	static final int VERSAO = 1;
+	static final int CABECALHO = 64;
+	static final int CAMPOS_FIXOS = 10;
+
+	private IndiceCNPJ() { }
+
+	public static Path arquivo(Path base) {
+		return base.toAbsolutePath().resolveSibling(ARQUIVO);
+	}
+
+	//Um índice gravado antes de uma nova carga ficaria desatualizado
+	public static void remove(Path base) throws IOException {
+		Files.deleteIfExists(arquivo(base));
+	}
+
+	//Os registros são lidos na ordem da tabela e gravados em um arquivo auxiliar; as raízes, com a posição de cada registro,
+	//são ordenadas em memória e os registros copiados nessa ordem. A leitura pelo índice da base sobre substr(cpf_cnpj,1,8)
+	//já viria ordenada, mas com um acesso aleatório à tabela por linha. O índice é gravado em um arquivo temporário, que
+	//substitui o anterior só depois de completo. Retorna a quantidade de registros.
+	public static long cria(SQLiteConnection conn, Path base) throws SQLException, IOException {
+		boolean centavos = Esquema.da(conn).centavos();
+		int largura;
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("select max(length(numero_inscricao)) from pgfn_devedores where tipo_pessoa = 'PESSOA JURÍDICA'")) {
+			largura = rs.next() ? Math.max(1, rs.getInt(1)) : 1;
+		}
+		int tamanhoRegistro = largura + CAMPOS_FIXOS;
+
+		Path arquivo = arquivo(base);
+		Path temporario = arquivo.resolveSibling(ARQUIVO + ".tmp");
+		Path auxiliar = arquivo.resolveSibling(ARQUIVO + ".registros");
+		long[] chaves = new long[1024];
+		int registros = 0;
+		Map<String,Integer> codigos = new HashMap<>();
+		List<String> textos = new ArrayList<>();
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(auxiliar), 1 << 16));
+					Statement stmt = conn.createStatement();
+					ResultSet rs = stmt.executeQuery("""
+							select cpf_cnpj, numero_inscricao, tipo_devedor, situacao_inscricao, valor_consolidado
+							from pgfn_devedores
+							where tipo_pessoa = 'PESSOA JURÍDICA'""")) {
+				byte[] inscricao = new byte[largura];
+				while (rs.next()) {
+					long raiz = Esquema.cnpjBasico(rs.getString(1));
+					if (raiz < 0) {
+						continue;
+					}
+					if (registros == chaves.length) {
+						chaves = Arrays.copyOf(chaves, chaves.length * 2);
+					}
+					chaves[registros] = raiz << 32 | registros;
+
+					Arrays.fill(inscricao, (byte) 0);
+					String numero = rs.getString(2);
+					if (numero != null) {
+						byte[] bytes = numero.getBytes(Common.CHARSET);
+						System.arraycopy(bytes, 0, inscricao, 0, Math.min(bytes.length, largura));
+					}
+					out.write(inscricao);
+					out.writeByte(codigo(rs.getString(3), codigos, textos));
+					out.writeByte(codigo(rs.getString(4), codigos, textos));
+					out.writeLong(centavos ? rs.getLong(5) : Math.round(rs.getDouble(5) * 100));
+					if (++registros == Integer.MAX_VALUE) {
+						throw new IOException("Quantidade de registros acima do suportado pelo índice de CNPJ");
+					}
+				}
+			}
+			//O leitor mapeia o arquivo inteiro em um único buffer; cada registro ocupa no máximo mais 8 bytes de raiz e início
+			if (CABECALHO + (long) registros * (tamanhoRegistro + 8) > Integer.MAX_VALUE) {
+				throw new IOException("Índice de CNPJ maior que 2 GiB não suportado");
+			}
+			//Na mesma raiz, os registros mantêm a ordem da tabela
+			Arrays.parallelSort(chaves, 0, registros);
+
+			try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+					FileChannel canalAuxiliar = FileChannel.open(auxiliar, StandardOpenOption.READ)) {
+				MappedByteBuffer lidos = canalAuxiliar.map(FileChannel.MapMode.READ_ONLY, 0, canalAuxiliar.size());
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canal), 1 << 16));
+				out.write(new byte[CABECALHO]);
+				byte[] registro = new byte[tamanhoRegistro];
+				int[] raizes = new int[1024];
+				int[] inicios = new int[1025];
+				int quantidadeRaizes = 0;
+				for (int i = 0; i < registros; i++) {
+					int raiz = (int) (chaves[i] >>> 32);
+					if (quantidadeRaizes == 0 || raizes[quantidadeRaizes - 1] != raiz) {
+						if (quantidadeRaizes == raizes.length) {
+							raizes = Arrays.copyOf(raizes, raizes.length * 2);
+							inicios = Arrays.copyOf(inicios, raizes.length + 1);
+						}
+						raizes[quantidadeRaizes] = raiz;
+						inicios[quantidadeRaizes] = i;
+						quantidadeRaizes++;
+					}
+					lidos.get((int) chaves[i] * tamanhoRegistro, registro);
+					out.write(registro);
+				}
+				inicios[quantidadeRaizes] = registros;
+
+				long posicaoRaizes = CABECALHO + (long) registros * tamanhoRegistro;
+				for (int i = 0; i < quantidadeRaizes; i++) {
+					out.writeInt(raizes[i]);
+				}
+				long posicaoInicios = posicaoRaizes + 4L * quantidadeRaizes;
+				for (int i = 0; i <= quantidadeRaizes; i++) {
+					out.writeInt(inicios[i]);
+				}
+				long posicaoTextos = posicaoInicios + 4L * (quantidadeRaizes + 1);
+				out.writeInt(textos.size());
+				for (String texto : textos) {
+					byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+					out.writeShort(bytes.length);
+					out.write(bytes);
+				}
+				out.flush();
+				if (canal.size() > Integer.MAX_VALUE) {
+					throw new IOException("Índice de CNPJ maior que 2 GiB não suportado");
+				}
+
+				ByteBuffer cabecalho = ByteBuffer.allocate(CABECALHO);
+				cabecalho.putLong(MAGICO)
+						.putInt(VERSAO)
+						.putInt(largura)
+						.putInt(quantidadeRaizes)
+						.putInt(registros)
+						.putLong(CABECALHO)
+						.putLong(posicaoRaizes)
+						.putLong(posicaoInicios)
+						.putLong(posicaoTextos)
+						.clear();
+				canal.write(cabecalho, 0);
+			}
+		} catch (IOException | SQLException | RuntimeException e) {
+			Files.deleteIfExists(temporario);
+			throw e;
+		} finally {
+			Files.deleteIfExists(auxiliar);
+		}
+		Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return registros;
+	}
+
+	//Tipos de devedor e situações têm poucos valores distintos, gravados como código de 1 byte
+	private static int codigo(String texto, Map<String,Integer> codigos, List<String> textos) {
+		String valor = texto == null ? "" : texto;
+		Integer codigo = codigos.get(valor);
+		if (codigo == null) {
+			if (textos.size() > 255) {
+				throw new RuntimeException("Mais de 256 tipos de devedor e situações distintos no índice de CNPJ.");
+			}
+			codigo = textos.size();
+			codigos.put(valor, codigo);
+			textos.add(valor);
+		}
+		return codigo;
+	}
+}
@@ -0,0 +1,151 @@
+package com.ric.dividapgfn.indice;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.ric.dividapgfn.util.Common;
+
+//Leitura do índice de CNPJ (IndiceCNPJ) mapeado em memória. A busca é binária sobre as raízes e só lê o buffer com
+//acesso absoluto, sem alocação e sem estado de posição, de modo que a mesma instância atende várias threads.
+//Os registros de uma raiz são identificados pela posição no arquivo, entre inicio() e fim().
+public final class LeitorIndiceCNPJ {
+	private final MappedByteBuffer dados;
+	private final int largura;
+	private final int tamanhoRegistro;
+	private final int raizes;
+	private final int registros;
+	private final int posicaoRegistros;
+	private final int posicaoRaizes;
+	private final int posicaoInicios;
+	private final String[] textos;
+
+	private LeitorIndiceCNPJ(MappedByteBuffer dados) throws IOException {
+		this.dados = dados;
+		if (dados.capacity() < IndiceCNPJ.CABECALHO || dados.getLong(0) != IndiceCNPJ.MAGICO) {
+			throw new IOException("Arquivo não é um índice de CNPJ");
+		}
+		if (dados.getInt(8) != IndiceCNPJ.VERSAO) {
+			throw new IOException("Versão do índice de CNPJ não suportada: " + dados.getInt(8));
+		}
+		this.largura = dados.getInt(12);
+		this.tamanhoRegistro = this.largura + IndiceCNPJ.CAMPOS_FIXOS;
+		this.raizes = dados.getInt(16);
+		this.registros = dados.getInt(20);
+		this.posicaoRegistros = (int) dados.getLong(24);
+		this.posicaoRaizes = (int) dados.getLong(32);
+		this.posicaoInicios = (int) dados.getLong(40);
+
+		int posicao = (int) dados.getLong(48);
+		this.textos = new String[dados.getInt(posicao)];
+		posicao += 4;
+		for (int i = 0; i < this.textos.length; i++) {
+			byte[] bytes = new byte[dados.getShort(posicao)];
+			dados.get(posicao + 2, bytes);
+			this.textos[i] = new String(bytes, StandardCharsets.UTF_8);
+			posicao += 2 + bytes.length;
+		}
+	}
+
+	public static LeitorIndiceCNPJ abre(Path arquivo) throws IOException {
+		try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+			if (canal.size() > Integer.MAX_VALUE) {
+				throw new IOException("Índice de CNPJ maior que 2 GiB não suportado");
+			}
+			//O mapeamento continua válido depois de fechado o canal
+			return new LeitorIndiceCNPJ(canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size()));
+		}
+	}
+
+	public int raizes() {
+		return this.raizes;
+	}
+
+	public int registros() {
+		return this.registros;
+	}
+
+	//Posição da raiz do CNPJ no índice, ou -1 se a raiz não tem inscrições
+	public int busca(int cnpjBasico) {
+		int inicio = 0;
+		int fim = this.raizes - 1;
+		while (inicio <= fim) {
+			int meio = (inicio + fim) >>> 1;
+			int raiz = this.dados.getInt(this.posicaoRaizes + 4 * meio);
+			if (raiz < cnpjBasico) {
+				inicio = meio + 1;
+			} else if (raiz > cnpjBasico) {
+				fim = meio - 1;
+			} else {
+				return meio;
+			}
+		}
+		return -1;
+	}
+
+	//Primeiro registro da raiz na posição indicada
+	public int inicio(int posicao) {
+		return this.dados.getInt(this.posicaoInicios + 4 * posicao);
+	}
+
+	//Registro seguinte ao último da raiz na posição indicada
+	public int fim(int posicao) {
+		return this.dados.getInt(this.posicaoInicios + 4 * (posicao + 1));
+	}
+
+	public long centavos(int registro) {
+		return this.dados.getLong(deslocamento(registro) + this.largura + 2);
+	}
+
+	public String tipoDevedor(int registro) {
+		return this.textos[this.dados.get(deslocamento(registro) + this.largura) & 0xFF];
+	}
+
+	public String situacao(int registro) {
+		return this.textos[this.dados.get(deslocamento(registro) + this.largura + 1) & 0xFF];
+	}
+
+	//Copia o número de inscrição para o destino, com pelo menos largura() bytes, e retorna o seu tamanho
+	public int numeroInscricao(int registro, byte[] destino) {
+		int deslocamento = deslocamento(registro);
+		int tamanho = 0;
+		while (tamanho < this.largura && (destino[tamanho] = this.dados.get(deslocamento + tamanho)) != 0) {
+			tamanho++;
+		}
+		return tamanho;
+	}
+
+	public String numeroInscricao(int registro) {
+		byte[] destino = new byte[this.largura];
+		return new String(destino, 0, numeroInscricao(registro, destino), Common.CHARSET);
+	}
+
+	public int largura() {
+		return this.largura;
+	}
+
+	//Soma dos valores das inscrições da raiz, em centavos; zero se a raiz não tem inscrições
+	public long totalCentavos(int cnpjBasico) {
+		int posicao = busca(cnpjBasico);
+		if (posicao < 0) {
+			return 0;
+		}
+		long total = 0;
+		for (int registro = inicio(posicao), fim = fim(posicao); registro < fim; registro++) {
+			total += centavos(registro);
+		}
+		return total;
+	}
+
+	public int inscricoes(int cnpjBasico) {
+		int posicao = busca(cnpjBasico);
+		return posicao < 0 ? 0 : fim(posicao) - inicio(posicao);
+	}
+
+	private int deslocamento(int registro) {
+		return this.posicaoRegistros + registro * this.tamanhoRegistro;
+	}
+}
@@ -0,0 +1,36 @@
+package com.ric.dividapgfn.linha;
+
+import java.nio.charset.StandardCharsets;
+
+final class CacheTexto {
+	private static final int TAMANHO = 4096;
+
+	private final String[] valores = new String[TAMANHO];
+
+	String busca(byte[] bytes, int tamanho) {
+		int hash = 1;
+		for (int i=0; i<tamanho; ++i) {
+			hash = 31 * hash + bytes[i];
+		}
+		int posicao = (hash ^ (hash >>> 16)) & (TAMANHO - 1);
+
+		String valor = this.valores[posicao];
+		if (valor == null || !igual(valor, bytes, tamanho)) {
+			valor = new String(bytes, 0, tamanho, StandardCharsets.ISO_8859_1);
+			this.valores[posicao] = valor;
+		}
+		return valor;
+	}
+
+	private static boolean igual(String valor, byte[] bytes, int tamanho) {
+		if (valor.length() != tamanho) {
+			return false;
+		}
+		for (int i=0; i<tamanho; ++i) {
+			if (valor.charAt(i) != (bytes[i] & 0xFF)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
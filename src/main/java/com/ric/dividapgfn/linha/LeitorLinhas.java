@@ -0,0 +1,312 @@
+package com.ric.dividapgfn.linha;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+//Leitor dos arquivos CSV da PGFN (ISO-8859-1, separados por ';', sem aspas) que trabalha diretamente sobre os bytes lidos.
+//Os campos são delimitados no próprio buffer de leitura e só viram String quando solicitados.
+public final class LeitorLinhas implements Closeable {
+	private static final int TAMANHO_BUFFER = 1 << 20;
+	private static final int MAX_CAMPOS = 32;
+	private static final int MAX_DIGITOS_EXATOS = 15;
+
+	private final InputStream entrada;
+	private final CacheTexto cache = new CacheTexto();
+	private final int[] inicio = new int[MAX_CAMPOS];
+	private final int[] fim = new int[MAX_CAMPOS];
+	private byte[] buffer = new byte[TAMANHO_BUFFER];
+	private byte[] auxiliar = new byte[256];
+	private int posicao;
+	private int limite;
+	private boolean fimEntrada;
+	private boolean ignoraLF;
+	private int campos;
+
+	public LeitorLinhas(InputStream entrada) {
+		this.entrada = entrada;
+	}
+
+	public static <T> long le(InputStream entrada, Function<LeitorLinhas,T> mapeamento, Consumer<T> destino) throws IOException {
+		return le(entrada, 0, mapeamento, destino);
+	}
+
+	//As primeiras linhas após o cabeçalho, já carregadas, são apenas contadas; o total inclui essas linhas
+	public static <T> long le(InputStream entrada, long ignoradas, Function<LeitorLinhas,T> mapeamento, Consumer<T> destino) throws IOException {
+		long linhas = 0;
+		try (LeitorLinhas leitor = new LeitorLinhas(entrada)) {
+			if (leitor.proxima()) { //Cabeçalho
+				while (leitor.proxima()) {
+					if (linhas >= ignoradas) {
+						destino.accept(mapeamento.apply(leitor));
+					}
+					linhas += 1;
+				}
+			}
+		}
+		return linhas;
+	}
+
+	public boolean proxima() throws IOException {
+		while (true) {
+			if (this.ignoraLF) {
+				if (this.posicao == this.limite && !preenche()) {
+					return false;
+				}
+				if (this.buffer[this.posicao] == '\n') {
+					this.posicao += 1;
+				}
+				this.ignoraLF = false;
+			}
+
+			if (separaLinha()) {
+				return true;
+			}
+
+			if (this.fimEntrada) {
+				if (this.posicao == this.limite) {
+					return false;
+				}
+				//Última linha sem quebra de linha
+				separaCampos(this.posicao, this.limite);
+				this.posicao = this.limite;
+				return true;
+			}
+			preenche();
+		}
+	}
+
+	private boolean separaLinha() {
+		byte[] buf = this.buffer;
+		int n = 0;
+		int inicioCampo = this.posicao;
+		for (int i=this.posicao; i<this.limite; ++i) {
+			byte b = buf[i];
+			if (b == ';') {
+				if (n < MAX_CAMPOS) {
+					this.inicio[n] = inicioCampo;
+					this.fim[n] = i;
+				}
+				n += 1;
+				inicioCampo = i + 1;
+			} else if (b == '\n' || b == '\r') {
+				if (n < MAX_CAMPOS) {
+					this.inicio[n] = inicioCampo;
+					this.fim[n] = i;
+				}
+				this.campos = removeVaziosFinais(n + 1);
+				this.posicao = i + 1;
+				this.ignoraLF = b == '\r';
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void separaCampos(int de, int ate) {
+		int n = 0;
+		int inicioCampo = de;
+		for (int i=de; i<ate; ++i) {
+			if (this.buffer[i] == ';') {
+				if (n < MAX_CAMPOS) {
+					this.inicio[n] = inicioCampo;
+					this.fim[n] = i;
+				}
+				n += 1;
+				inicioCampo = i + 1;
+			}
+		}
+		if (n < MAX_CAMPOS) {
+			this.inicio[n] = inicioCampo;
+			this.fim[n] = ate;
+		}
+		this.campos = removeVaziosFinais(n + 1);
+	}
+
+	//Mesmo comportamento de String.split, que descarta os campos vazios no final da linha
+	private int removeVaziosFinais(int n) {
+		if (n > MAX_CAMPOS) {
+			return n;
+		}
+		while (n > 1 && this.inicio[n-1] == this.fim[n-1]) {
+			n -= 1;
+		}
+		return n;
+	}
+
+	private boolean preenche() throws IOException {
+		if (this.posicao > 0) {
+			System.arraycopy(this.buffer, this.posicao, this.buffer, 0, this.limite - this.posicao);
+			this.limite -= this.posicao;
+			this.posicao = 0;
+		} else if (this.limite == this.buffer.length) {
+			this.buffer = Arrays.copyOf(this.buffer, this.buffer.length * 2);
+		}
+
+		int lidos = this.entrada.readNBytes(this.buffer, this.limite, this.buffer.length - this.limite);
+		this.limite += lidos;
+		if (lidos == 0) {
+			this.fimEntrada = true;
+		}
+		return lidos > 0;
+	}
+
+	public int campos() {
+		return this.campos;
+	}
+
+	//Campo sem espaços nas extremidades, em maiúsculas
+	public String texto(int campo) {
+		int tamanho = copiaMaiusculas(campo, false);
+		if (tamanho < 0) {
+			return textoEspecial(campo);
+		}
+		return new String(this.auxiliar, 0, tamanho, StandardCharsets.ISO_8859_1);
+	}
+
+	//Igual a texto(int), mas reaproveita a String já criada para valores repetidos, como UF, situação ou tipo de devedor
+	public String textoRepetido(int campo) {
+		int tamanho = copiaMaiusculas(campo, false);
+		if (tamanho < 0) {
+			return textoEspecial(campo);
+		}
+		return this.cache.busca(this.auxiliar, tamanho);
+	}
+
+	//CPF ou CNPJ sem pontuação, sem espaços nas extremidades, em maiúsculas
+	public String documento(int campo) {
+		int tamanho = copiaMaiusculas(campo, true);
+		if (tamanho < 0) {
+			return textoEspecial(campo).replace(".", "").replace("/", "").replace("-", "").strip();
+		}
+		return new String(this.auxiliar, 0, tamanho, StandardCharsets.ISO_8859_1);
+	}
+
+	//Valor em centavos, lido direto dos bytes; valores com mais de duas casas são arredondados
+	public long centavos(int campo) {
+		long centavos = centavosExatos(campo);
+		if (centavos == Long.MIN_VALUE) {
+			//Formatos pouco usuais (expoente, mais de duas casas) seguem pelo caminho convencional, que também sinaliza valores inválidos
+			return decimal(campo).movePointRight(2).setScale(0, RoundingMode.HALF_EVEN).longValueExact();
+		}
+		return centavos;
+	}
+
+	//Valor exato do campo quando centavos(int) o arredonda, ou null quando os centavos são exatos
+	public BigDecimal valorExato(int campo) {
+		return centavosExatos(campo) == Long.MIN_VALUE ? decimal(campo) : null;
+	}
+
+	private BigDecimal decimal(int campo) {
+		return new BigDecimal(textoOriginal(campo).toUpperCase(Locale.ROOT));
+	}
+
+	//Centavos lidos dos bytes, ou Long.MIN_VALUE se o valor não é um decimal simples com até duas casas
+	private long centavosExatos(int campo) {
+		int i = this.inicio[campo];
+		int f = this.fim[campo];
+		boolean negativo = false;
+		if (i < f && (this.buffer[i] == '-' || this.buffer[i] == '+')) {
+			negativo = this.buffer[i] == '-';
+			i += 1;
+		}
+
+		long valor = 0;
+		int digitos = 0;
+		int casas = -1;
+		for (; i<f; ++i) {
+			byte b = this.buffer[i];
+			if (b >= '0' && b <= '9' && casas < 2) {
+				valor = valor * 10 + (b - '0');
+				digitos += 1;
+				if (casas >= 0) {
+					casas += 1;
+				}
+			} else if (b == '.' && casas < 0) {
+				casas = 0;
+			} else {
+				digitos = Integer.MAX_VALUE;
+				break;
+			}
+		}
+
+		if (digitos == 0 || digitos > MAX_DIGITOS_EXATOS) {
+			return Long.MIN_VALUE;
+		}
+		for (casas = Math.max(casas, 0); casas < 2; ++casas) {
+			valor *= 10;
+		}
+		return negativo ? -valor : valor;
+	}
+
+	//Copia o campo para o buffer auxiliar sem espaços nas extremidades e em maiúsculas.
+	//Retorna -1 quando o campo contém caracteres cuja versão maiúscula não existe em ISO-8859-1.
+	private int copiaMaiusculas(int campo, boolean documento) {
+		int i = this.inicio[campo];
+		int f = this.fim[campo];
+		byte[] buf = this.buffer;
+		if (documento) {
+			while (i < f && (branco(buf[i]) || pontuacao(buf[i]))) {
+				i += 1;
+			}
+			while (f > i && (branco(buf[f-1]) || pontuacao(buf[f-1]))) {
+				f -= 1;
+			}
+		} else {
+			while (i < f && branco(buf[i])) {
+				i += 1;
+			}
+			while (f > i && branco(buf[f-1])) {
+				f -= 1;
+			}
+		}
+
+		if (this.auxiliar.length < f - i) {
+			this.auxiliar = new byte[Math.max(f - i, this.auxiliar.length * 2)];
+		}
+
+		byte[] aux = this.auxiliar;
+		int n = 0;
+		for (; i<f; ++i) {
+			int c = buf[i] & 0xFF;
+			if (documento && pontuacao(buf[i])) {
+				continue;
+			}
+			if ((c >= 'a' && c <= 'z') || (c >= 0xE0 && c <= 0xFE && c != 0xF7)) {
+				c -= 32;
+			} else if (c == 0xB5 || c == 0xDF || c == 0xFF) {
+				return -1;
+			}
+			aux[n++] = (byte) c;
+		}
+		return n;
+	}
+
+	private String textoOriginal(int campo) {
+		return new String(this.buffer, this.inicio[campo], this.fim[campo] - this.inicio[campo], StandardCharsets.ISO_8859_1);
+	}
+
+	private String textoEspecial(int campo) {
+		return textoOriginal(campo).toUpperCase(Locale.ROOT).strip();
+	}
+
+	private static boolean branco(byte b) {
+		return b == ' ' || (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x1F);
+	}
+
+	private static boolean pontuacao(byte b) {
+		return b == '.' || b == '/' || b == '-';
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.entrada.close();
+	}
+}
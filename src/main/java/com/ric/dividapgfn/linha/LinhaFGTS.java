@@ -2,8 +2,9 @@ package com.ric.dividapgfn.linha;
 
 import java.math.BigDecimal;
 
+//valorExato é nulo quando valorCentavos representa o valor sem arredondamento
 public record LinhaFGTS(String cpfCnpj, String tipoPessoa, String tipoDevedor, String nomeDevedor,
 		String ufUnidadeResponsavel, String unidadeResponsavel, String entidadeResponsavel, String unidadeInscricao,
 		String numeroInscricao, String tipoSituacaoInscricao, String situacaoInscricao, String receitaPrincipal,
-		String dataInscricao, String indicadorAjuizado, BigDecimal valor) {
+		String dataInscricao, String indicadorAjuizado, long valorCentavos, BigDecimal valorExato) {
 }
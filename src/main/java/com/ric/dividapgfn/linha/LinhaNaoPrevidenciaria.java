@@ -2,7 +2,8 @@ package com.ric.dividapgfn.linha;
 
 import java.math.BigDecimal;
 
+//valorExato é nulo quando valorCentavos representa o valor sem arredondamento
 public record LinhaNaoPrevidenciaria(String cpfCnpj, String tipoPessoa, String tipoDevedor, String nomeDevedor,
 		String ufUnidadeResponsavel, String unidadeResponsavel, String numeroInscricao, String tipoSituacaoInscricao,
-		String situacaoInscricao, String tipoCredito, String dataInscricao, String indicadorAjuizado, BigDecimal valor) {
+		String situacaoInscricao, String tipoCredito, String dataInscricao, String indicadorAjuizado, long valorCentavos, BigDecimal valorExato) {
 }
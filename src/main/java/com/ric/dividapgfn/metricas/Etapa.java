@@ -0,0 +1,139 @@
+package com.ric.dividapgfn.metricas;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import com.ric.dividapgfn.util.Common;
+
+//Etapa em andamento na thread que a abriu. A alocação medida é a dessa thread, mais a informada pelas threads auxiliares;
+//as coletas de lixo são as do processo inteiro durante a etapa. Ao fechar, os bytes e os flushes somam-se aos da etapa que a
+//contém, aberta na mesma thread ou na que distribuiu o trabalho; as linhas não, porque cada etapa conta as suas.
+public final class Etapa implements AutoCloseable {
+	record Resultado(String nome, long inicio, long duracao, long linhas, long bytesLidos, long bytesGravados,
+			long bytesAlocados, long coletas, long tempoColetas, Histograma flush) {
+		long linhasPorSegundo() {
+			return this.duracao > 0 ? this.linhas * 1_000_000_000L / this.duracao : 0;
+		}
+	}
+
+	private final String nome;
+	private final Etapa pai;
+	private final Etapa anterior;
+	private final Thread thread = Thread.currentThread();
+	private final EventoEtapa evento = new EventoEtapa();
+	private final long inicio = System.nanoTime();
+	private final long alocadosInicio = Common.bytesAlocadosThread();
+	private final long coletasInicio = coletas();
+	private final long tempoColetasInicio = tempoColetas();
+	private long linhas;
+	private long bytesLidos;
+	private long bytesGravados;
+	private long alocadosOutrasThreads;
+	private Histograma flush;
+
+	Etapa(String nome, Etapa pai, Etapa anterior) {
+		this.nome = nome;
+		this.pai = pai;
+		this.anterior = anterior;
+		this.evento.begin();
+	}
+
+	String nome() {
+		return this.nome;
+	}
+
+	//Etapa em andamento na thread antes desta, que volta a ser a atual quando esta termina
+	Etapa anterior() {
+		return this.anterior;
+	}
+
+	public Etapa linhas(long quantidade) {
+		this.linhas += quantidade;
+		return this;
+	}
+
+	public Etapa bytesLidos(long bytes) {
+		this.bytesLidos += bytes;
+		return this;
+	}
+
+	public Etapa bytesGravados(long bytes) {
+		this.bytesGravados += bytes;
+		return this;
+	}
+
+	//Bytes alocados por outras threads a serviço da etapa, como as de leitura dos arquivos
+	public Etapa alocados(long bytes) {
+		this.alocadosOutrasThreads += bytes;
+		return this;
+	}
+
+	void flush(long nanos) {
+		if (this.flush == null) {
+			this.flush = new Histograma();
+		}
+		this.flush.registra(nanos);
+	}
+
+	@Override
+	public void close() {
+		long duracao = System.nanoTime() - this.inicio;
+		Resultado resultado = new Resultado(this.nome, this.inicio, duracao, this.linhas, this.bytesLidos, this.bytesGravados,
+				Common.bytesAlocadosThread() - this.alocadosInicio + this.alocadosOutrasThreads,
+				coletas() - this.coletasInicio, tempoColetas() - this.tempoColetasInicio, this.flush);
+
+		if (this.evento.shouldCommit()) {
+			this.evento.nome = this.nome;
+			this.evento.linhas = resultado.linhas();
+			this.evento.linhasPorSegundo = resultado.linhasPorSegundo();
+			this.evento.bytesLidos = resultado.bytesLidos();
+			this.evento.bytesGravados = resultado.bytesGravados();
+			this.evento.bytesAlocados = resultado.bytesAlocados();
+			this.evento.coletas = resultado.coletas();
+			this.evento.tempoColetas = resultado.tempoColetas();
+			if (this.flush != null) {
+				this.evento.flushes = this.flush.quantidade();
+				this.evento.flushP99 = this.flush.percentil(0.99);
+			}
+			this.evento.commit();
+		}
+
+		//Etapas de threads diferentes podem terminar ao mesmo tempo dentro da mesma etapa
+		if (this.pai != null) {
+			synchronized (this.pai) {
+				agrega(this.pai, resultado.bytesAlocados());
+			}
+		}
+		Metricas.conclui(this, resultado);
+	}
+
+	//Na mesma thread, a alocação desta etapa já está na medida da etapa que a contém; em outra thread, é somada a ela
+	private void agrega(Etapa pai, long bytesAlocados) {
+		pai.bytesLidos += this.bytesLidos;
+		pai.bytesGravados += this.bytesGravados;
+		pai.alocadosOutrasThreads += pai.thread == this.thread ? this.alocadosOutrasThreads : bytesAlocados;
+		if (this.flush != null) {
+			if (pai.flush == null) {
+				pai.flush = new Histograma();
+			}
+			pai.flush.agrega(this.flush);
+		}
+	}
+
+	private static long coletas() {
+		long total = 0;
+		for (GarbageCollectorMXBean coletor : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(0, coletor.getCollectionCount());
+		}
+		return total;
+	}
+
+	//Em milissegundos, a precisão informada pela JVM
+	private static long tempoColetas() {
+		long total = 0;
+		for (GarbageCollectorMXBean coletor : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(0, coletor.getCollectionTime());
+		}
+		return total;
+	}
+}
@@ -0,0 +1,49 @@
+package com.ric.dividapgfn.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("com.ric.dividapgfn.Etapa")
+@Label("Etapa")
+@Category("DividaPGFN")
+@Description("Etapa da carga ou do filtro, com linhas processadas, bytes, alocação e coletas de lixo")
+final class EventoEtapa extends jdk.jfr.Event {
+	@Label("Nome")
+	String nome;
+
+	@Label("Linhas")
+	long linhas;
+
+	@Label("Linhas por segundo")
+	long linhasPorSegundo;
+
+	@Label("Bytes lidos")
+	@DataAmount
+	long bytesLidos;
+
+	@Label("Bytes gravados")
+	@DataAmount
+	long bytesGravados;
+
+	@Label("Bytes alocados")
+	@DataAmount
+	long bytesAlocados;
+
+	@Label("Coletas de lixo")
+	long coletas;
+
+	@Label("Tempo de coleta de lixo")
+	@Timespan(Timespan.MILLISECONDS)
+	long tempoColetas;
+
+	@Label("Flushes")
+	long flushes;
+
+	@Label("Flush p99")
+	@Timespan
+	long flushP99;
+}
@@ -0,0 +1,16 @@
+package com.ric.dividapgfn.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+//Duração de um executeBatch da carga; com a gravação desligada, begin() e commit() não custam nada
+@Name("com.ric.dividapgfn.Flush")
+@Label("Flush")
+@Category("DividaPGFN")
+@Description("Execução de um lote de inserções na base da PGFN")
+public final class EventoFlush extends jdk.jfr.Event {
+	@Label("Linhas")
+	public int linhas;
+}
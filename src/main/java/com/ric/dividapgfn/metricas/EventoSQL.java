@@ -0,0 +1,18 @@
+package com.ric.dividapgfn.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.ric.dividapgfn.SQL")
+@Label("Comando SQL")
+@Category("DividaPGFN")
+@Description("Comando executado no SQLite por Common.executeUpdateStatement")
+public final class EventoSQL extends jdk.jfr.Event {
+	@Label("Comando")
+	public String sql;
+
+	@Label("Linhas alteradas")
+	public long linhas;
+}
@@ -0,0 +1,61 @@
+package com.ric.dividapgfn.metricas;
+
+//Distribuição de durações em faixas de potências de 2: a faixa i reúne as durações abaixo de 2^i microssegundos e acima da
+//faixa anterior. O registro tem custo constante e os percentis são o limite superior da faixa, no máximo a maior duração.
+final class Histograma {
+	static final int FAIXAS = 40;
+
+	private final long[] quantidades = new long[FAIXAS];
+	private long quantidade;
+	private long total;
+	private long maximo;
+
+	void registra(long nanos) {
+		int faixa = Math.min(FAIXAS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos) / 1000));
+		this.quantidades[faixa] += 1;
+		this.quantidade += 1;
+		this.total += nanos;
+		this.maximo = Math.max(this.maximo, nanos);
+	}
+
+	void agrega(Histograma outro) {
+		for (int i = 0; i < FAIXAS; i++) {
+			this.quantidades[i] += outro.quantidades[i];
+		}
+		this.quantidade += outro.quantidade;
+		this.total += outro.total;
+		this.maximo = Math.max(this.maximo, outro.maximo);
+	}
+
+	long quantidade() {
+		return this.quantidade;
+	}
+
+	long quantidade(int faixa) {
+		return this.quantidades[faixa];
+	}
+
+	static long limite(int faixa) {
+		return (1L << faixa) * 1000;
+	}
+
+	long media() {
+		return this.quantidade > 0 ? this.total / this.quantidade : 0;
+	}
+
+	long maximo() {
+		return this.maximo;
+	}
+
+	long percentil(double p) {
+		long alvo = (long) Math.ceil(p * this.quantidade);
+		long acumulado = 0;
+		for (int i = 0; i < FAIXAS; i++) {
+			acumulado += this.quantidades[i];
+			if (acumulado >= alvo && acumulado > 0) {
+				return Math.min(limite(i), this.maximo);
+			}
+		}
+		return this.maximo;
+	}
+}
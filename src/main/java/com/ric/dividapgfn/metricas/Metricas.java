@@ -0,0 +1,147 @@
+package com.ric.dividapgfn.metricas;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.tinylog.Logger;
+
+//Métricas da execução de um comando. Cada etapa é emitida como evento do JDK Flight Recorder quando há uma gravação;
+//depois de inicia(), as etapas concluídas e os tempos dos comandos SQL também são acumulados para o relatório JSON.
+//Sem execução iniciada, como no servidor, nada é acumulado.
+public final class Metricas {
+	//Os comandos são agrupados pelo início do texto, para que consultas longas não inflem o relatório
+	private static final int TAMANHO_CHAVE_SQL = 200;
+
+	private static final ThreadLocal<Etapa> ATUAL = new ThreadLocal<>();
+	private static volatile Execucao execucao;
+
+	static final class Execucao {
+		final String comando;
+		final Instant inicio = Instant.now();
+		final long nanosInicio = System.nanoTime();
+		final Map<String,long[]> coletasInicio = coletas();
+		final Queue<Etapa.Resultado> etapas = new ConcurrentLinkedQueue<>();
+		final Map<String,EstatisticaSQL> sql = new ConcurrentHashMap<>();
+
+		Execucao(String comando) {
+			this.comando = comando;
+		}
+	}
+
+	record EstatisticaSQL(long execucoes, long total, long maximo, long linhas) {
+		EstatisticaSQL soma(EstatisticaSQL outra) {
+			return new EstatisticaSQL(this.execucoes + outra.execucoes, this.total + outra.total, Math.max(this.maximo, outra.maximo), this.linhas + outra.linhas);
+		}
+	}
+
+	private Metricas() { }
+
+	public static void inicia(String comando) {
+		execucao = new Execucao(comando);
+	}
+
+	//A etapa aberta dentro de outra, na mesma thread, tem o nome prefixado pelo da etapa externa
+	public static Etapa etapa(String nome) {
+		return etapa(ATUAL.get(), nome);
+	}
+
+	//Etapa dentro de outra aberta na thread que distribuiu o trabalho, obtida por atual()
+	public static Etapa etapa(Etapa pai, String nome) {
+		Etapa etapa = new Etapa(pai == null ? nome : pai.nome() + "/" + nome, pai, ATUAL.get());
+		ATUAL.set(etapa);
+		return etapa;
+	}
+
+	public static Etapa atual() {
+		return ATUAL.get();
+	}
+
+	static void conclui(Etapa etapa, Etapa.Resultado resultado) {
+		if (ATUAL.get() == etapa) {
+			ATUAL.set(etapa.anterior());
+		}
+		Execucao atual = execucao;
+		if (atual != null) {
+			atual.etapas.add(resultado);
+		}
+	}
+
+	public static void alocados(long bytes) {
+		Etapa etapa = ATUAL.get();
+		if (etapa != null) {
+			etapa.alocados(bytes);
+		}
+	}
+
+	public static void linhas(long quantidade) {
+		Etapa etapa = ATUAL.get();
+		if (etapa != null) {
+			etapa.linhas(quantidade);
+		}
+	}
+
+	public static void bytesLidos(long bytes) {
+		Etapa etapa = ATUAL.get();
+		if (etapa != null) {
+			etapa.bytesLidos(bytes);
+		}
+	}
+
+	public static void bytesGravados(long bytes) {
+		Etapa etapa = ATUAL.get();
+		if (etapa != null) {
+			etapa.bytesGravados(bytes);
+		}
+	}
+
+	public static void registraFlush(long nanos) {
+		Etapa etapa = ATUAL.get();
+		if (etapa != null) {
+			etapa.flush(nanos);
+		}
+	}
+
+	public static void registraSQL(String sql, long nanos, long linhas) {
+		Execucao atual = execucao;
+		if (atual == null) {
+			return;
+		}
+		String chave = sql.strip().replaceAll("\\s+", " ");
+		if (chave.length() > TAMANHO_CHAVE_SQL) {
+			chave = chave.substring(0, TAMANHO_CHAVE_SQL) + "...";
+		}
+		atual.sql.merge(chave, new EstatisticaSQL(1, nanos, nanos, linhas), EstatisticaSQL::soma);
+	}
+
+	public static void gravaRelatorio(Path arquivo) throws IOException {
+		Execucao atual = execucao;
+		if (atual == null) {
+			return;
+		}
+		Path diretorio = arquivo.toAbsolutePath().getParent();
+		if (diretorio != null) {
+			Files.createDirectories(diretorio);
+		}
+		Files.writeString(arquivo, Relatorio.json(atual, System.nanoTime(), coletas()), StandardCharsets.UTF_8);
+		Logger.info("Relatório de métricas gravado em {}", arquivo.toAbsolutePath());
+	}
+
+	//Quantidade e tempo em milissegundos das coletas de cada coletor
+	static Map<String,long[]> coletas() {
+		Map<String,long[]> coletas = new LinkedHashMap<>();
+		for (GarbageCollectorMXBean coletor : ManagementFactory.getGarbageCollectorMXBeans()) {
+			coletas.put(coletor.getName(), new long[] { Math.max(0, coletor.getCollectionCount()), Math.max(0, coletor.getCollectionTime()) });
+		}
+		return coletas;
+	}
+}
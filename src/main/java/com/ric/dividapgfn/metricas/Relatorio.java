@@ -0,0 +1,166 @@
+package com.ric.dividapgfn.metricas;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+//Relatório JSON de uma execução, com durações em milissegundos, para comparar a vazão de cada etapa entre versões
+final class Relatorio {
+	private final StringBuilder json = new StringBuilder();
+	private int nivel;
+	private boolean primeiro = true;
+
+	private Relatorio() { }
+
+	static String json(Metricas.Execucao execucao, long nanosFim, Map<String,long[]> coletasFim) {
+		Relatorio r = new Relatorio();
+		r.abre(null, '{');
+		r.texto("comando", execucao.comando);
+		r.texto("inicio", execucao.inicio.toString());
+		r.milissegundos("duracao_ms", nanosFim - execucao.nanosInicio);
+
+		r.abre("jvm", '{');
+		r.texto("versao", Runtime.version().toString());
+		r.numero("processadores", Runtime.getRuntime().availableProcessors());
+		r.numero("heap_maximo", Runtime.getRuntime().maxMemory());
+		r.fecha('}');
+
+		r.abre("coletas", '[');
+		for (Map.Entry<String,long[]> coletor : coletasFim.entrySet()) {
+			long[] inicio = execucao.coletasInicio.getOrDefault(coletor.getKey(), new long[2]);
+			r.abre(null, '{');
+			r.texto("coletor", coletor.getKey());
+			r.numero("quantidade", coletor.getValue()[0] - inicio[0]);
+			r.numero("tempo_ms", coletor.getValue()[1] - inicio[1]);
+			r.fecha('}');
+		}
+		r.fecha(']');
+
+		List<Etapa.Resultado> etapas = new ArrayList<>(execucao.etapas);
+		etapas.sort(Comparator.comparingLong(Etapa.Resultado::inicio));
+		r.abre("etapas", '[');
+		for (Etapa.Resultado etapa : etapas) {
+			r.abre(null, '{');
+			r.texto("nome", etapa.nome());
+			r.milissegundos("inicio_ms", etapa.inicio() - execucao.nanosInicio);
+			r.milissegundos("duracao_ms", etapa.duracao());
+			r.numero("linhas", etapa.linhas());
+			r.numero("linhas_por_segundo", etapa.linhasPorSegundo());
+			r.numero("bytes_lidos", etapa.bytesLidos());
+			r.numero("bytes_gravados", etapa.bytesGravados());
+			r.numero("bytes_alocados", etapa.bytesAlocados());
+			r.numero("coletas", etapa.coletas());
+			r.numero("tempo_coletas_ms", etapa.tempoColetas());
+			if (etapa.flush() != null) {
+				r.histograma("flush", etapa.flush());
+			}
+			r.fecha('}');
+		}
+		r.fecha(']');
+
+		List<Map.Entry<String,Metricas.EstatisticaSQL>> comandos = new ArrayList<>(execucao.sql.entrySet());
+		comandos.sort(Comparator.comparingLong((Map.Entry<String,Metricas.EstatisticaSQL> comando) -> comando.getValue().total()).reversed());
+		r.abre("sql", '[');
+		for (Map.Entry<String,Metricas.EstatisticaSQL> comando : comandos) {
+			r.abre(null, '{');
+			r.texto("comando", comando.getKey());
+			r.numero("execucoes", comando.getValue().execucoes());
+			r.milissegundos("total_ms", comando.getValue().total());
+			r.milissegundos("maximo_ms", comando.getValue().maximo());
+			r.numero("linhas", comando.getValue().linhas());
+			r.fecha('}');
+		}
+		r.fecha(']');
+		r.fecha('}');
+		return r.json.append('\n').toString();
+	}
+
+	private void histograma(String nome, Histograma histograma) {
+		abre(nome, '{');
+		numero("quantidade", histograma.quantidade());
+		milissegundos("media_ms", histograma.media());
+		milissegundos("p50_ms", histograma.percentil(0.50));
+		milissegundos("p90_ms", histograma.percentil(0.90));
+		milissegundos("p99_ms", histograma.percentil(0.99));
+		milissegundos("maximo_ms", histograma.maximo());
+		abre("faixas", '[');
+		for (int i = 0; i < Histograma.FAIXAS; i++) {
+			if (histograma.quantidade(i) > 0) {
+				abre(null, '{');
+				milissegundos("ate_ms", Histograma.limite(i));
+				numero("quantidade", histograma.quantidade(i));
+				fecha('}');
+			}
+		}
+		fecha(']');
+		fecha('}');
+	}
+
+	private void abre(String nome, char delimitador) {
+		campo(nome);
+		this.json.append(delimitador);
+		this.nivel++;
+		this.primeiro = true;
+	}
+
+	private void fecha(char delimitador) {
+		this.nivel--;
+		if (!this.primeiro) {
+			quebra();
+		}
+		this.json.append(delimitador);
+		this.primeiro = false;
+	}
+
+	private void texto(String nome, String valor) {
+		campo(nome);
+		this.json.append('"');
+		for (int i = 0; i < valor.length(); i++) {
+			char c = valor.charAt(i);
+			switch (c) {
+				case '"' -> this.json.append("\\\"");
+				case '\\' -> this.json.append("\\\\");
+				case '\n' -> this.json.append("\\n");
+				case '\r' -> this.json.append("\\r");
+				case '\t' -> this.json.append("\\t");
+				default -> {
+					if (c < 0x20) {
+						this.json.append(String.format("\\u%04x", (int) c));
+					} else {
+						this.json.append(c);
+					}
+				}
+			}
+		}
+		this.json.append('"');
+	}
+
+	private void numero(String nome, long valor) {
+		campo(nome);
+		this.json.append(valor);
+	}
+
+	private void milissegundos(String nome, long nanos) {
+		campo(nome);
+		this.json.append(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+	}
+
+	private void campo(String nome) {
+		if (this.nivel > 0) {
+			if (!this.primeiro) {
+				this.json.append(',');
+			}
+			quebra();
+		}
+		this.primeiro = false;
+		if (nome != null) {
+			this.json.append('"').append(nome).append("\": ");
+		}
+	}
+
+	private void quebra() {
+		this.json.append('\n').append("  ".repeat(this.nivel));
+	}
+}
@@ -0,0 +1,154 @@
+package com.ric.dividapgfn.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.tinylog.Logger;
+
+//Cache em disco dos resultados da consulta do usuário na base do CNPJ, um arquivo texto por resultado, com um cnpj_basico
+//por linha. A chave é o SHA-256 da consulta normalizada e da identidade da base: tamanho, data de modificação e primeira
+//página do arquivo, cujo cabeçalho traz o contador de alterações do SQLite. A data de modificação de cada arquivo marca
+//o último uso, e os menos usados recentemente são removidos quando o total passa do limite.
+public final class CacheConsultas {
+	private static final String EXTENSAO = ".cnpj";
+	private static final int TAMANHO_CABECALHO = 4096;
+
+	private final Path diretorio;
+	private final long limiteBytes;
+
+	public CacheConsultas(Path diretorio, long limiteBytes) {
+		this.diretorio = diretorio;
+		this.limiteBytes = limiteBytes;
+	}
+
+	public static String chave(String consulta, Path baseCNPJ) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		digest.update(normaliza(consulta).getBytes(StandardCharsets.UTF_8));
+		digest.update((";" + Files.size(baseCNPJ) + ";" + Files.getLastModifiedTime(baseCNPJ).toMillis() + ";").getBytes(StandardCharsets.UTF_8));
+		try (InputStream in = Files.newInputStream(baseCNPJ)) {
+			digest.update(in.readNBytes(TAMANHO_CABECALHO));
+		}
+		return HexFormat.of().formatHex(digest.digest());
+	}
+
+	//Remove comentários, espaços repetidos e o ponto e vírgula final, preservando o conteúdo entre aspas
+	static String normaliza(String consulta) {
+		StringBuilder sb = new StringBuilder(consulta.length());
+		int n = consulta.length();
+		int i = 0;
+		while (i < n) {
+			char c = consulta.charAt(i);
+			if (c == '\'' || c == '"' || c == '`') {
+				int fim = consulta.indexOf(c, i + 1);
+				fim = fim < 0 ? n : fim + 1;
+				sb.append(consulta, i, fim);
+				i = fim;
+			} else if (consulta.startsWith("--", i)) {
+				int fim = consulta.indexOf('\n', i);
+				i = fim < 0 ? n : fim;
+			} else if (consulta.startsWith("/*", i)) {
+				int fim = consulta.indexOf("*/", i + 2);
+				i = fim < 0 ? n : fim + 2;
+				espaco(sb);
+			} else if (Character.isWhitespace(c)) {
+				espaco(sb);
+				i++;
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+		String normalizada = sb.toString().strip();
+		while (normalizada.endsWith(";")) {
+			normalizada = normalizada.substring(0, normalizada.length() - 1).strip();
+		}
+		return normalizada;
+	}
+
+	private static void espaco(StringBuilder sb) {
+		if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+			sb.append(' ');
+		}
+	}
+
+	//Arquivo com o resultado da chave, ou nulo. O uso é registrado na data de modificação do arquivo.
+	public Path busca(String chave) throws IOException {
+		Path arquivo = this.diretorio.resolve(chave + EXTENSAO);
+		if (Files.notExists(arquivo)) {
+			return null;
+		}
+		try {
+			Files.setLastModifiedTime(arquivo, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (NoSuchFileException e) {
+			//Removido por outra execução
+			return null;
+		}
+		return arquivo;
+	}
+
+	//Arquivo temporário a ser preenchido e depois passado para grava
+	public Path temporario(String chave) throws IOException {
+		Files.createDirectories(this.diretorio);
+		return Files.createTempFile(this.diretorio, chave, ".tmp");
+	}
+
+	//A troca do temporário pelo arquivo definitivo é atômica: outra execução simultânea nunca lê um resultado incompleto.
+	//Devolve falso se o resultado, sozinho, passa do limite e já foi removido.
+	public boolean grava(Path temporario, String chave) throws IOException {
+		Path arquivo = this.diretorio.resolve(chave + EXTENSAO);
+		Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		remove();
+		return Files.exists(arquivo);
+	}
+
+	//A data e o tamanho de cada arquivo são lidos uma única vez, e os arquivos que outra execução remove no meio do caminho
+	//são ignorados
+	private void remove() throws IOException {
+		List<Path> lista;
+		try (Stream<Path> arquivos = Files.list(this.diretorio)) {
+			lista = arquivos.filter(arquivo -> arquivo.getFileName().toString().endsWith(EXTENSAO)).toList();
+		}
+		List<Entrada> entradas = new ArrayList<>(lista.size());
+		long total = 0;
+		for (Path arquivo : lista) {
+			try {
+				BasicFileAttributes atributos = Files.readAttributes(arquivo, BasicFileAttributes.class);
+				entradas.add(new Entrada(arquivo, atributos.lastModifiedTime().toMillis(), atributos.size()));
+				total += atributos.size();
+			} catch (NoSuchFileException e) {
+				//Removido por outra execução
+			}
+		}
+		entradas.sort(Comparator.comparingLong(Entrada::modificacao));
+		for (Entrada entrada : entradas) {
+			if (total <= this.limiteBytes) {
+				break;
+			}
+			total -= entrada.tamanho();
+			if (Files.deleteIfExists(entrada.arquivo())) {
+				Logger.info("Resultado {} removido do cache", entrada.arquivo().getFileName());
+			}
+		}
+	}
+
+	private record Entrada(Path arquivo, long modificacao, long tamanho) { }
+}
@@ -1,5 +1,6 @@
 package com.ric.dividapgfn.util;
 
+import java.lang.management.ManagementFactory;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
@@ -8,24 +9,47 @@ import java.time.Duration;
 
 import org.sqlite.SQLiteConnection;
 
+import com.ric.dividapgfn.metricas.EventoSQL;
+import com.ric.dividapgfn.metricas.Metricas;
+
 public final class Common {
 	public static final Charset CHARSET = StandardCharsets.ISO_8859_1;
 
 	private Common() { }
 
 	public static int executeUpdateStatement(SQLiteConnection connection, String statement) throws SQLException {
+		EventoSQL evento = new EventoSQL();
+		evento.begin();
+		long t0 = System.nanoTime();
 		try (Statement stmt = connection.createStatement();) {
-			return stmt.executeUpdate(statement);
+			int linhas = stmt.executeUpdate(statement);
+			Metricas.registraSQL(statement, System.nanoTime()-t0, linhas);
+			if (evento.shouldCommit()) {
+				evento.sql = statement;
+				evento.linhas = linhas;
+				evento.commit();
+			}
+			return linhas;
 		}
 	}
 
+	public static long bytesAlocadosThread() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+
 	//Adaptado de https://stackoverflow.com/questions/266825/how-to-format-a-duration-in-java-e-g-format-hmmss
+	//As horas aparecem apenas a partir de uma hora; os segundos, com milissegundos
 	public static String formatDuration(long nanoseconds) {
 		Duration duration = Duration.ofNanos(nanoseconds);
 
-		long minutes = (duration.getSeconds() % 3600) / 60;
-		long seconds = duration.getSeconds() % 60;
+		long hours = duration.toHours();
+		long minutes = duration.toMinutesPart();
+		long seconds = duration.toSecondsPart();
+		long millis = duration.toMillisPart();
 
-		return String.format("%dm%02ds", minutes, seconds);
+		if (hours > 0) {
+			return String.format("%dh%02dm%02d.%03ds", hours, minutes, seconds, millis);
+		}
+		return String.format("%dm%02d.%03ds", minutes, seconds, millis);
 	}
 }
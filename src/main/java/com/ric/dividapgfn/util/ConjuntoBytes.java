@@ -0,0 +1,119 @@
+package com.ric.dividapgfn.util;
+
+import java.util.Arrays;
+
+//Conjunto de sequências de bytes (textos em UTF-8) com endereçamento aberto. Os elementos ficam copiados em um único
+//vetor de bytes, e a tabela guarda apenas o índice e o hash de cada um, sem objetos por elemento.
+public final class ConjuntoBytes {
+	private int[] tabela;
+	private int mascara;
+	private int[] inicios = new int[16];
+	private int[] hashes = new int[16];
+	private byte[] dados = new byte[1024];
+	private int tamanhoDados;
+	private int tamanho;
+
+	public ConjuntoBytes() {
+		this.tabela = new int[32];
+		this.mascara = this.tabela.length - 1;
+	}
+
+	public boolean adiciona(byte[] valor) {
+		int tamanhoAnterior = this.tamanho;
+		return adicionaIndice(valor) == tamanhoAnterior;
+	}
+
+	//Inclui o elemento, se ainda não estiver no conjunto, e devolve seu índice na ordem de inclusão
+	public int adicionaIndice(byte[] valor) {
+		int hash = hash(valor);
+		int i = hash & this.mascara;
+		int entrada;
+		while ((entrada = this.tabela[i]) != 0) {
+			if (this.hashes[entrada - 1] == hash && igual(entrada - 1, valor)) {
+				return entrada - 1;
+			}
+			i = (i + 1) & this.mascara;
+		}
+		if (this.tamanho == this.inicios.length) {
+			this.inicios = Arrays.copyOf(this.inicios, this.tamanho * 2);
+			this.hashes = Arrays.copyOf(this.hashes, this.tamanho * 2);
+		}
+		if (this.tamanhoDados + valor.length > this.dados.length) {
+			this.dados = Arrays.copyOf(this.dados, Math.max(this.dados.length * 2, this.tamanhoDados + valor.length));
+		}
+		System.arraycopy(valor, 0, this.dados, this.tamanhoDados, valor.length);
+		this.inicios[this.tamanho] = this.tamanhoDados;
+		this.hashes[this.tamanho] = hash;
+		this.tamanhoDados += valor.length;
+		int indice = this.tamanho++;
+		this.tabela[i] = this.tamanho;
+		if (this.tamanho * 2 > this.tabela.length) {
+			redimensiona();
+		}
+		return indice;
+	}
+
+	public boolean contem(byte[] valor) {
+		return indice(valor) >= 0;
+	}
+
+	//Índice do elemento na ordem de inclusão, ou -1 se não estiver no conjunto
+	public int indice(byte[] valor) {
+		int hash = hash(valor);
+		int i = hash & this.mascara;
+		int entrada;
+		while ((entrada = this.tabela[i]) != 0) {
+			if (this.hashes[entrada - 1] == hash && igual(entrada - 1, valor)) {
+				return entrada - 1;
+			}
+			i = (i + 1) & this.mascara;
+		}
+		return -1;
+	}
+
+	public byte[] elemento(int indice) {
+		int inicio = this.inicios[indice];
+		int fim = indice + 1 < this.tamanho ? this.inicios[indice + 1] : this.tamanhoDados;
+		return Arrays.copyOfRange(this.dados, inicio, fim);
+	}
+
+	public int tamanho() {
+		return this.tamanho;
+	}
+
+	public long bytes() {
+		return 4L * this.tabela.length + 4L * this.inicios.length + 4L * this.hashes.length + this.dados.length;
+	}
+
+	private boolean igual(int entrada, byte[] valor) {
+		int inicio = this.inicios[entrada];
+		int fim = entrada + 1 < this.tamanho ? this.inicios[entrada + 1] : this.tamanhoDados;
+		return Arrays.equals(this.dados, inicio, fim, valor, 0, valor.length);
+	}
+
+	private void redimensiona() {
+		this.tabela = new int[this.tabela.length * 2];
+		this.mascara = this.tabela.length - 1;
+		for (int entrada = 0; entrada < this.tamanho; entrada++) {
+			int i = this.hashes[entrada] & this.mascara;
+			while (this.tabela[i] != 0) {
+				i = (i + 1) & this.mascara;
+			}
+			this.tabela[i] = entrada + 1;
+		}
+	}
+
+	//FNV-1a com mistura final do murmur3, para espalhar bem os bits baixos usados pela máscara
+	private static int hash(byte[] valor) {
+		int h = 0x811C9DC5;
+		for (byte b : valor) {
+			h = (h ^ b) * 0x01000193;
+		}
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
@@ -0,0 +1,98 @@
+package com.ric.dividapgfn.util;
+
+//Conjunto de longs com endereçamento aberto e sondagem linear, sem objetos por elemento.
+//O zero marca posição vazia e, como valor, é guardado à parte.
+public final class ConjuntoLong {
+	private long[] chaves;
+	private int mascara;
+	private int tamanho;
+	private boolean temZero;
+
+	public ConjuntoLong() {
+		this(16);
+	}
+
+	public ConjuntoLong(int capacidadeInicial) {
+		int capacidade = Integer.highestOneBit(Math.max(16, capacidadeInicial * 2 - 1)) << 1;
+		this.chaves = new long[capacidade];
+		this.mascara = capacidade - 1;
+	}
+
+	public boolean adiciona(long valor) {
+		if (valor == 0) {
+			boolean novo = !this.temZero;
+			this.temZero = true;
+			return novo;
+		}
+		int i = posicao(valor, this.mascara);
+		while (this.chaves[i] != 0) {
+			if (this.chaves[i] == valor) {
+				return false;
+			}
+			i = (i + 1) & this.mascara;
+		}
+		this.chaves[i] = valor;
+		if (++this.tamanho * 2 > this.chaves.length) {
+			redimensiona();
+		}
+		return true;
+	}
+
+	public boolean contem(long valor) {
+		if (valor == 0) {
+			return this.temZero;
+		}
+		int i = posicao(valor, this.mascara);
+		long chave;
+		while ((chave = this.chaves[i]) != 0) {
+			if (chave == valor) {
+				return true;
+			}
+			i = (i + 1) & this.mascara;
+		}
+		return false;
+	}
+
+	public int tamanho() {
+		return this.tamanho + (this.temZero ? 1 : 0);
+	}
+
+	//Cópia dos elementos, em ordem arbitrária
+	public long[] elementos() {
+		long[] elementos = new long[tamanho()];
+		int n = 0;
+		if (this.temZero) {
+			elementos[n++] = 0;
+		}
+		for (long chave : this.chaves) {
+			if (chave != 0) {
+				elementos[n++] = chave;
+			}
+		}
+		return elementos;
+	}
+
+	public long bytes() {
+		return 8L * this.chaves.length;
+	}
+
+	private void redimensiona() {
+		long[] antigas = this.chaves;
+		this.chaves = new long[antigas.length * 2];
+		this.mascara = this.chaves.length - 1;
+		for (long chave : antigas) {
+			if (chave != 0) {
+				int i = posicao(chave, this.mascara);
+				while (this.chaves[i] != 0) {
+					i = (i + 1) & this.mascara;
+				}
+				this.chaves[i] = chave;
+			}
+		}
+	}
+
+	private static int posicao(long valor, int mascara) {
+		long h = valor * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mascara;
+	}
+}
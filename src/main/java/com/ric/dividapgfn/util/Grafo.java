@@ -0,0 +1,167 @@
+package com.ric.dividapgfn.util;
+
+import java.util.Arrays;
+
+//Grafo bipartido devedor ↔ inscrição em formato CSR (compressed sparse row), só com vetores de inteiros: para cada nó,
+//os vizinhos ficam contíguos em um único vetor, a partir do deslocamento do nó. As duas direções são guardadas.
+//Os devedores são identificados por uma chave inteira qualquer (a raiz do CNPJ), convertida em índice denso pela
+//ordem das chaves; as inscrições já chegam numeradas de 0 a n-1. Cada aresta ocupa 8 bytes, mais 4 bytes por nó.
+public final class Grafo {
+	private final int[] chaves;
+	private final int[] inicioDevedor;
+	private final int[] inscricoesDevedor;
+	private final int[] inicioInscricao;
+	private final int[] devedoresInscricao;
+
+	//Acumula as arestas antes da montagem do grafo; arestas repetidas são aceitas
+	public static final class Construtor {
+		private int[] devedores = new int[1024];
+		private int[] inscricoes = new int[1024];
+		private int arestas;
+		private int totalInscricoes;
+
+		public void adiciona(int chaveDevedor, int inscricao) {
+			if (this.arestas == this.devedores.length) {
+				int capacidade = (int) Math.min(Integer.MAX_VALUE - 8, this.arestas * 3L / 2);
+				this.devedores = Arrays.copyOf(this.devedores, capacidade);
+				this.inscricoes = Arrays.copyOf(this.inscricoes, capacidade);
+			}
+			this.devedores[this.arestas] = chaveDevedor;
+			this.inscricoes[this.arestas] = inscricao;
+			this.arestas++;
+			this.totalInscricoes = Math.max(this.totalInscricoes, inscricao + 1);
+		}
+
+		public Grafo constroi() {
+			return new Grafo(this);
+		}
+	}
+
+	private Grafo(Construtor construtor) {
+		int arestas = construtor.arestas;
+		int[] devedores = construtor.devedores;
+		int[] inscricoes = construtor.inscricoes;
+		construtor.devedores = null;
+		construtor.inscricoes = null;
+
+		int[] ordenadas = Arrays.copyOf(devedores, arestas);
+		Arrays.parallelSort(ordenadas);
+		int distintas = 0;
+		for (int i = 0; i < arestas; i++) {
+			if (i == 0 || ordenadas[i] != ordenadas[i - 1]) {
+				ordenadas[distintas++] = ordenadas[i];
+			}
+		}
+		this.chaves = Arrays.copyOf(ordenadas, distintas);
+		ordenadas = null;
+		//As chaves dão lugar aos índices densos, no próprio vetor das arestas
+		for (int i = 0; i < arestas; i++) {
+			devedores[i] = Arrays.binarySearch(this.chaves, devedores[i]);
+		}
+
+		this.inicioDevedor = new int[distintas + 1];
+		this.inscricoesDevedor = new int[arestas];
+		distribui(devedores, inscricoes, arestas, this.inicioDevedor, this.inscricoesDevedor);
+		this.inicioInscricao = new int[construtor.totalInscricoes + 1];
+		this.devedoresInscricao = new int[arestas];
+		distribui(inscricoes, devedores, arestas, this.inicioInscricao, this.devedoresInscricao);
+	}
+
+	//Ordenação por contagem das arestas pela origem
+	private static void distribui(int[] origens, int[] destinos, int arestas, int[] inicios, int[] vizinhos) {
+		for (int i = 0; i < arestas; i++) {
+			inicios[origens[i] + 1]++;
+		}
+		for (int no = 1; no < inicios.length; no++) {
+			inicios[no] += inicios[no - 1];
+		}
+		int[] proximo = Arrays.copyOf(inicios, inicios.length - 1);
+		for (int i = 0; i < arestas; i++) {
+			vizinhos[proximo[origens[i]]++] = destinos[i];
+		}
+	}
+
+	public int devedores() {
+		return this.chaves.length;
+	}
+
+	public int inscricoes() {
+		return this.inicioInscricao.length - 1;
+	}
+
+	public long arestas() {
+		return this.inscricoesDevedor.length;
+	}
+
+	public long bytes() {
+		return 4L * (this.chaves.length + this.inicioDevedor.length + this.inscricoesDevedor.length
+				+ this.inicioInscricao.length + this.devedoresInscricao.length);
+	}
+
+	//Índice denso do devedor, ou -1 se a chave não aparece em nenhuma inscrição
+	public int devedor(int chave) {
+		int indice = Arrays.binarySearch(this.chaves, chave);
+		return indice >= 0 ? indice : -1;
+	}
+
+	//Busca em largura a partir dos devedores iniciais. Cada nível acrescenta as inscrições dos devedores alcançados no nível
+	//anterior e os demais devedores dessas inscrições. Devolve o mapa de bits das inscrições alcançadas.
+	public long[] expande(int[] sementes, int profundidade, Nivel nivel) {
+		long[] devedoresVisitados = new long[(devedores() + 63) / 64];
+		long[] inscricoesVisitadas = new long[(inscricoes() + 63) / 64];
+		int[] fronteira = new int[sementes.length];
+		int tamanhoFronteira = 0;
+		for (int semente : sementes) {
+			if (marca(devedoresVisitados, semente)) {
+				fronteira[tamanhoFronteira++] = semente;
+			}
+		}
+		int[] proxima = new int[16];
+		for (int n = 1; n <= profundidade && tamanhoFronteira > 0; n++) {
+			int tamanhoProxima = 0;
+			int novasInscricoes = 0;
+			for (int f = 0; f < tamanhoFronteira; f++) {
+				int devedor = fronteira[f];
+				for (int a = this.inicioDevedor[devedor]; a < this.inicioDevedor[devedor + 1]; a++) {
+					int inscricao = this.inscricoesDevedor[a];
+					if (!marca(inscricoesVisitadas, inscricao)) {
+						continue;
+					}
+					novasInscricoes++;
+					for (int b = this.inicioInscricao[inscricao]; b < this.inicioInscricao[inscricao + 1]; b++) {
+						int vizinho = this.devedoresInscricao[b];
+						if (marca(devedoresVisitados, vizinho)) {
+							if (tamanhoProxima == proxima.length) {
+								proxima = Arrays.copyOf(proxima, tamanhoProxima * 2);
+							}
+							proxima[tamanhoProxima++] = vizinho;
+						}
+					}
+				}
+			}
+			nivel.concluido(n, tamanhoProxima, novasInscricoes);
+			int[] troca = fronteira;
+			fronteira = proxima;
+			proxima = troca.length > 0 ? troca : new int[16];
+			tamanhoFronteira = tamanhoProxima;
+		}
+		return inscricoesVisitadas;
+	}
+
+	public interface Nivel {
+		void concluido(int profundidade, int novosDevedores, int novasInscricoes);
+	}
+
+	public static boolean contem(long[] bits, int indice) {
+		return (bits[indice >>> 6] & (1L << indice)) != 0;
+	}
+
+	private static boolean marca(long[] bits, int indice) {
+		long mascara = 1L << indice;
+		if ((bits[indice >>> 6] & mascara) != 0) {
+			return false;
+		}
+		bits[indice >>> 6] |= mascara;
+		return true;
+	}
+}
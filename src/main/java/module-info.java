@@ -1,5 +1,8 @@
 module com.ric.dividapgfn {
 	requires java.sql;
+	requires jdk.httpserver;
+	requires jdk.jfr;
+	requires jdk.management;
 	requires info.picocli;
 	requires org.tinylog.api;
 	requires org.xerial.sqlitejdbc;